@@ -0,0 +1,109 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import java.util.concurrent.TimeUnit;
+
+import longbow.TransformationContext;
+import longbow.Workflow;
+import longbow.core.Workloads.Shape;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and latency of marks and sweeps of one workflow in several
+ * threads at the same time.
+ * 
+ * Only runners that allow concurrent marks and sweeps are measured. The
+ * {@link MarkAndSweepSupport} of {@link DefaultRunner} and its subclasses
+ * changes the state of a context with one compare-and-set, and a mark that
+ * overlaps a sweep of the same context makes the sweep fail to validate it.
+ * {@link PlanRunner} and {@link EarlyCutoffRunner} serialize all marks and
+ * sweeps; they are measured in {@link RunnerBenchmark}.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConcurrentRunnerBenchmark {
+
+	@Param( { "longbow.core.DefaultRunner", "longbow.core.IterativeRunner", "longbow.core.BitSetRunner" })
+	public String runner;
+
+	@Param( { "CHAIN", "DIAMOND", "FAN", "LAYERED" })
+	public Shape shape;
+
+	@Param( { "100", "1000" })
+	public int size;
+
+	private Workflow workflow;
+
+	private TransformationContext[] sources;
+
+	private TransformationContext[] sinks;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		workflow = Workloads.createWorkflow(runner);
+		final int[][] precursors = Workloads.precursors(shape, size);
+		final TransformationContext[] contexts = Workloads.build(workflow, precursors);
+		sources = Workloads.sources(precursors, contexts);
+		sinks = Workloads.sinks(precursors, contexts);
+		if (!workflow.execute()) {
+			throw new IllegalStateException("Can't execute workflow");
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		workflow.terminate();
+	}
+
+	/**
+	 * Every thread invalidates the whole workflow and executes it again.
+	 */
+	@Benchmark
+	public void markAndSweep() {
+		for (final TransformationContext source : sources) {
+			source.mark();
+		}
+		for (final TransformationContext sink : sinks) {
+			sink.sweep();
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import java.util.concurrent.TimeUnit;
+
+import longbow.DataNode;
+import longbow.DataWrapper;
+import longbow.Metadata;
+import longbow.Runner;
+import longbow.TransformationContext;
+import longbow.Workflow;
+import longbow.metadata.MedalMetadata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creation of Longbow objects by the {@link DefaultLongbowFactory}.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactoryBenchmark {
+
+	private final Metadata metadata = MedalMetadata.acceptAll();
+
+	private DefaultLongbowFactory factory;
+
+	private Workflow workflow;
+
+	@Setup
+	public void setUp() {
+		factory = new DefaultLongbowFactory();
+		workflow = factory.createWorkflow();
+	}
+
+	@Benchmark
+	public Workflow createWorkflow() {
+		return factory.createWorkflow();
+	}
+
+	@Benchmark
+	public Runner createRunner() {
+		return factory.createRunner(workflow);
+	}
+
+	@Benchmark
+	public TransformationContext createTransformationContext() {
+		return factory.createTransformationContext(workflow);
+	}
+
+	/**
+	 * Like {@link #createTransformationContext()}, in several threads at the
+	 * same time.
+	 */
+	@Benchmark
+	@Threads(4)
+	public TransformationContext createTransformationContextContended() {
+		return factory.createTransformationContext(workflow);
+	}
+
+	@Benchmark
+	public DataWrapper createDataWrapper() {
+		return factory.createDataWrapper();
+	}
+
+	@Benchmark
+	public DataNode createDataNode() {
+		return factory.createDataNode(metadata);
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import longbow.core.Workloads.Shape;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Building, querying and iterating a {@link PartialOrderImpl}, for every
+ * workload shape.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartialOrderBenchmark {
+
+	private static final int QUERIES = 1024;
+
+	@Param( { "CHAIN", "DIAMOND", "FAN", "LAYERED" })
+	public Shape shape;
+
+	@Param( { "100", "1000", "10000" })
+	public int size;
+
+	/**
+	 * elements in the order they are added, which is not their partial order
+	 */
+	private Integer[] elements;
+
+	/**
+	 * connections in the order they are made
+	 */
+	private int[][] connections;
+
+	private int[][] queries;
+
+	private PartialOrderImpl<Integer> porder;
+
+	@Setup
+	public void setUp() {
+		final Random random = new Random(Workloads.SEED);
+		final int[][] precursors = Workloads.precursors(shape, size);
+		final List<Integer> shuffled = new ArrayList<Integer>(size);
+		final List<int[]> edges = new ArrayList<int[]>();
+		for (int i = 0; i < size; i++) {
+			shuffled.add(i);
+			for (final int precursor : precursors[i]) {
+				edges.add(new int[] { precursor, i });
+			}
+		}
+		Collections.shuffle(shuffled, random);
+		Collections.shuffle(edges, random);
+		elements = shuffled.toArray(new Integer[size]);
+		connections = edges.toArray(new int[edges.size()][]);
+		queries = new int[QUERIES][];
+		for (int i = 0; i < QUERIES; i++) {
+			queries[i] = new int[] { random.nextInt(size), random.nextInt(size) };
+		}
+		porder = build();
+	}
+
+	/**
+	 * Adds all elements and connects them, in random order.
+	 */
+	@Benchmark
+	public PartialOrderImpl<Integer> build() {
+		final PartialOrderImpl<Integer> p = new PartialOrderImpl<Integer>();
+		for (final Integer element : elements) {
+			p.add(element);
+		}
+		for (final int[] connection : connections) {
+			p.connect(connection[0], connection[1]);
+		}
+		return p;
+	}
+
+	/**
+	 * Checks {@value #QUERIES} random pairs of elements.
+	 */
+	@Benchmark
+	public void follows(final Blackhole blackhole) {
+		for (final int[] query : queries) {
+			blackhole.consume(porder.follows(query[0], query[1]));
+		}
+	}
+
+	/**
+	 * Iterates over all elements in partial order.
+	 */
+	@Benchmark
+	public void iterate(final Blackhole blackhole) {
+		for (final Integer element : porder) {
+			blackhole.consume(element);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import java.util.concurrent.TimeUnit;
+
+import longbow.TransformationContext;
+import longbow.Workflow;
+import longbow.core.Workloads.Shape;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput and latency of marks and sweeps in a single thread, for every
+ * runner and workload shape.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RunnerBenchmark {
+
+	@Param( { "longbow.core.DefaultRunner", "longbow.core.IterativeRunner", "longbow.core.BitSetRunner", "longbow.core.PlanRunner", "longbow.core.EarlyCutoffRunner" })
+	public String runner;
+
+	@Param( { "CHAIN", "DIAMOND", "FAN", "LAYERED" })
+	public Shape shape;
+
+	@Param( { "100", "1000" })
+	public int size;
+
+	private Workflow workflow;
+
+	private TransformationContext[] sources;
+
+	private TransformationContext[] sinks;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		workflow = Workloads.createWorkflow(runner);
+		final int[][] precursors = Workloads.precursors(shape, size);
+		final TransformationContext[] contexts = Workloads.build(workflow, precursors);
+		sources = Workloads.sources(precursors, contexts);
+		sinks = Workloads.sinks(precursors, contexts);
+		if (!workflow.execute()) {
+			throw new IllegalStateException("Can't execute workflow");
+		}
+		sweep();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		workflow.terminate();
+	}
+
+	/**
+	 * Invalidates the whole workflow and executes it again.
+	 */
+	@Benchmark
+	public void markAndSweep() {
+		mark();
+		sweep();
+	}
+
+	/**
+	 * Sweeps a valid workflow, that doesn't execute anything.
+	 */
+	@Benchmark
+	public void sweepValid() {
+		sweep();
+	}
+
+	private void mark() {
+		for (final TransformationContext source : sources) {
+			source.mark();
+		}
+	}
+
+	private void sweep() {
+		for (final TransformationContext sink : sinks) {
+			sink.sweep();
+		}
+	}
+}
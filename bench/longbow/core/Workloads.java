@@ -0,0 +1,212 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import java.util.Arrays;
+import java.util.Random;
+
+import longbow.TransformationContext;
+import longbow.Workflow;
+
+/**
+ * Synthetic directed acyclic graphs for the benchmarks. A graph is described
+ * by the precursors of each node, and nodes are numbered in partial order:
+ * precursors always have a smaller number.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public final class Workloads {
+
+	/**
+	 * Seed for random graphs, so that every run measures the same graph
+	 */
+	public static final long SEED = 2008L;
+
+	public enum Shape {
+		/**
+		 * Every node has the previous node as its only precursor.
+		 */
+		CHAIN,
+		/**
+		 * A stack of diamonds: every diamond splits in two and joins again.
+		 */
+		DIAMOND,
+		/**
+		 * One source, all other nodes but one follow the source, and the last
+		 * node follows all of them.
+		 */
+		FAN,
+		/**
+		 * Layers of about the square root of the size, where every node has
+		 * one to three random precursors in the previous layer.
+		 */
+		LAYERED
+	}
+
+	private Workloads() {
+	}
+
+	/**
+	 * @param shape
+	 *            the shape of the graph
+	 * @param size
+	 *            the number of nodes
+	 * @return the precursors of each node
+	 */
+	public static int[][] precursors(final Shape shape, final int size) {
+		final int[][] precursors = new int[size][];
+		final Random random = new Random(SEED);
+		final int width = Math.max(1, (int) Math.sqrt(size));
+		for (int i = 0; i < size; i++) {
+			switch (shape) {
+			case CHAIN:
+				precursors[i] = i == 0 ? new int[0] : new int[] { i - 1 };
+				break;
+			case DIAMOND:
+				if (i == 0) {
+					precursors[i] = new int[0];
+				} else if (i % 3 == 0) {
+					// bottom of a diamond, or the last nodes of an incomplete one
+					precursors[i] = new int[] { i - 2, i - 1 };
+				} else {
+					// both sides of a diamond follow its top
+					precursors[i] = new int[] { i - i % 3 };
+				}
+				break;
+			case FAN:
+				if (i == 0) {
+					precursors[i] = new int[0];
+				} else if (i < size - 1) {
+					precursors[i] = new int[] { 0 };
+				} else {
+					precursors[i] = new int[size - 2];
+					for (int j = 0; j < size - 2; j++) {
+						precursors[i][j] = j + 1;
+					}
+				}
+				break;
+			case LAYERED:
+				final int layer = i / width;
+				if (layer == 0) {
+					precursors[i] = new int[0];
+				} else {
+					final int first = (layer - 1) * width;
+					final int count = Math.min(width, 1 + random.nextInt(3));
+					precursors[i] = new int[count];
+					for (int j = 0; j < count; j++) {
+						int precursor;
+						do {
+							precursor = first + random.nextInt(width);
+						} while (contains(precursors[i], j, precursor));
+						precursors[i][j] = precursor;
+					}
+				}
+				break;
+			}
+		}
+		return precursors;
+	}
+
+	/**
+	 * Builds a {@link Workflow} of {@link CountingTransformation}s with the
+	 * given precursors.
+	 * 
+	 * @return the contexts of the workflow, in the order of the precursors
+	 */
+	public static TransformationContext[] build(final Workflow workflow, final int[][] precursors) {
+		final boolean[] hasFollowers = new boolean[precursors.length];
+		for (final int[] p : precursors) {
+			for (final int precursor : p) {
+				hasFollowers[precursor] = true;
+			}
+		}
+		final TransformationContext[] contexts = new TransformationContext[precursors.length];
+		for (int i = 0; i < precursors.length; i++) {
+			contexts[i] = workflow.add(new CountingTransformation(precursors[i].length, hasFollowers[i]));
+			for (int j = 0; j < precursors[i].length; j++) {
+				final TransformationContext precursor = contexts[precursors[i][j]];
+				if (!workflow.connect(precursor, CountingTransformation.OUT, contexts[i], CountingTransformation.in(j))) {
+					throw new IllegalStateException("Can't connect " + precursors[i][j] + " to " + i);
+				}
+			}
+		}
+		return contexts;
+	}
+
+	/**
+	 * Creates and builds a {@link Workflow} with the given runner.
+	 */
+	public static Workflow createWorkflow(final String runnerClass) {
+		final DefaultLongbowFactory factory = new DefaultLongbowFactory();
+		factory.setRunnerClass(runnerClass);
+		return factory.createWorkflow();
+	}
+
+	/**
+	 * @return the nodes without precursors
+	 */
+	public static <T> T[] sources(final int[][] precursors, final T[] nodes) {
+		final boolean[] selected = new boolean[precursors.length];
+		for (int i = 0; i < precursors.length; i++) {
+			selected[i] = precursors[i].length == 0;
+		}
+		return select(nodes, selected);
+	}
+
+	/**
+	 * @return the nodes without followers
+	 */
+	public static <T> T[] sinks(final int[][] precursors, final T[] nodes) {
+		final boolean[] selected = new boolean[precursors.length];
+		Arrays.fill(selected, true);
+		for (final int[] p : precursors) {
+			for (final int precursor : p) {
+				selected[precursor] = false;
+			}
+		}
+		return select(nodes, selected);
+	}
+
+	private static <T> T[] select(final T[] nodes, final boolean[] selected) {
+		int count = 0;
+		for (final boolean s : selected) {
+			if (s) {
+				count++;
+			}
+		}
+		final T[] result = Arrays.copyOf(nodes, count);
+		int j = 0;
+		for (int i = 0; i < nodes.length; i++) {
+			if (selected[i]) {
+				result[j++] = nodes[i];
+			}
+		}
+		return result;
+	}
+
+	private static boolean contains(final int[] values, final int length, final int value) {
+		for (int i = 0; i < length; i++) {
+			if (values[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.metadata;
+
+
+import java.util.concurrent.TimeUnit;
+
+import longbow.Metadata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Checking data and metadata against {@link MedalMetadata}, and parsing it,
+ * with and without compiling it.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MedalMetadataBenchmark {
+
+	private static final Object[] DATA = { null, "data", Integer.valueOf(1), Double.valueOf(2.0), new Object() };
+
+	@Param( { "is not null", "class is java.lang.String and not null", "(class is java.lang.String) xor (type is java.lang.Number)" })
+	public String medal;
+
+	/**
+	 * metadata of an output that is connected to an input with
+	 * {@link #medal}
+	 */
+	@Param( { "type is java.lang.Integer" })
+	public String output;
+
+	/**
+	 * whether the metadata is compiled, or checked by a workflow
+	 */
+	@Param( { "false", "true" })
+	public boolean compiled;
+
+	private Metadata metadata;
+
+	private Metadata outputMetadata;
+
+	@Setup
+	public void setUp() {
+		metadata = compiled ? MedalMetadata.compile(medal) : MedalMetadata.parse(medal);
+		outputMetadata = compiled ? MedalMetadata.compile(output) : MedalMetadata.parse(output);
+	}
+
+	/**
+	 * Checks a few values of different classes, and {@code null}.
+	 */
+	@Benchmark
+	public void acceptsData(final Blackhole blackhole) {
+		for (final Object data : DATA) {
+			blackhole.consume(metadata.acceptsData(data));
+		}
+	}
+
+	@Benchmark
+	public boolean acceptsMetadata() {
+		return metadata.acceptsMetadata(outputMetadata);
+	}
+
+	@Benchmark
+	public Metadata parse() {
+		return compiled ? MedalMetadata.compile(medal) : MedalMetadata.parse(medal);
+	}
+}
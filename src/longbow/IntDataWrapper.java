@@ -0,0 +1,45 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow;
+
+
+/**
+ * A {@link DataWrapper} for {@code int} values, that doesn't box them.
+ * 
+ * {@link #getData()} and {@link #setData(Object)} still work, with
+ * {@link Integer} objects or {@code null}.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public interface IntDataWrapper extends DataWrapper {
+
+	/**
+	 * @return the value contained in this wrapper
+	 * @throws NullPointerException
+	 *             if the wrapper contains {@code null}
+	 */
+	int getInt();
+
+	/**
+	 * Unconditionally sets the value of this
+	 * 
+	 * @param value
+	 */
+	void setInt(int value);
+}
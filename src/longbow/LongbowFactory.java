@@ -29,6 +29,14 @@ public interface LongbowFactory {
 
 	DataWrapper createDataWrapper();
 
+	/**
+	 * @param metadata
+	 *            the metadata of the data node that will contain the wrapper
+	 * @return a {@link DataWrapper} that is suitable for the data that is
+	 *         accepted by {@code metadata}.
+	 */
+	DataWrapper createDataWrapper(Metadata metadata);
+
 	Input createInput(TransformationContext context, Metadata metadata);
 
 	Output createOutput(TransformationContext context, Metadata metadata);
@@ -37,6 +45,26 @@ public interface LongbowFactory {
 
 	TransformationContext createTransformationContext(Workflow workflow);
 
+	/**
+	 * Creates many contexts at once, for workflows that are built in bulk.
+	 * 
+	 * @param workflow
+	 *            the workflow that will contain the contexts
+	 * @param count
+	 *            the number of contexts to create
+	 * @return the new contexts
+	 */
+	TransformationContext[] createTransformationContexts(Workflow workflow, int count);
+
 	Workflow createWorkflow();
 
+	/**
+	 * @param metadata
+	 *            the metadata of a data node, which is the metadata of the
+	 *            output that produces its data
+	 * @return which values written to a data node with that metadata are
+	 *         checked against it
+	 */
+	Validation getValidation(Metadata metadata);
+
 }
@@ -21,6 +21,8 @@ package longbow;
 import java.util.EventObject;
 
 /**
+ * An event of the mark and sweep state of a {@link TransformationContext}.
+ * Every context reuses one event for all its mark and sweep events.
  * 
  * @author Philip van Oosten
  * 
@@ -29,13 +31,13 @@ public class MarkAndSweepEvent extends EventObject {
 
 	private static final long serialVersionUID = -2629671958611530814L;
 
-	public MarkAndSweepEvent(final Object source) {
+	public MarkAndSweepEvent(final TransformationContext source) {
 		super(source);
 	}
 
 	@Override
 	public TransformationContext getSource() {
-		return getSource();
+		return (TransformationContext) super.getSource();
 	}
 
 }
@@ -19,6 +19,10 @@ package longbow;
 
 
 /**
+ * Describes which data is allowed at a {@link Port}.
+ * 
+ * Metadata must be immutable: the results of
+ * {@link #acceptsMetadata(Metadata)} are cached by workflows.
  * 
  * @author Philip van Oosten
  * 
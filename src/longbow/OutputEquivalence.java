@@ -0,0 +1,47 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow;
+
+
+/**
+ * A {@link Transformation} that implements {@link OutputEquivalence} decides
+ * itself whether a new value of one of its outputs is equivalent to the
+ * previous one. If all outputs are equivalent after an execution, a runner
+ * with early cutoff does not execute the followers of the transformation
+ * again.
+ * 
+ * @see longbow.core.EarlyCutoffRunner
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public interface OutputEquivalence {
+
+	/**
+	 * @param slot
+	 *            the slot of the output, see
+	 *            {@link TransformationContext#getOutputSlot(String)}
+	 * @param previous
+	 *            the value that was exported by the previous execution
+	 * @param current
+	 *            the value that was exported by the last execution
+	 * @return whether followers that read {@code previous} would compute the
+	 *         same result from {@code current}
+	 */
+	boolean isEquivalent(int slot, Object previous, Object current);
+}
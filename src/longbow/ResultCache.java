@@ -0,0 +1,48 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow;
+
+
+import java.util.List;
+
+/**
+ * Memoizes the values a {@link Transformation} exports for the values of its
+ * inputs.
+ * 
+ * @see TransformationContext#setResultCache(ResultCache)
+ * @author Philip van Oosten
+ * 
+ */
+public interface ResultCache {
+
+	/**
+	 * @param inputs
+	 *            the values of the inputs, in slot order
+	 * @return the values of the outputs in slot order, or {@code null} if
+	 *         they are not in the cache
+	 */
+	Object[] get(List<Object> inputs);
+
+	/**
+	 * @param inputs
+	 *            the values of the inputs, in slot order
+	 * @param outputs
+	 *            the values of the outputs, in slot order
+	 */
+	void put(List<Object> inputs, Object[] outputs);
+}
@@ -18,6 +18,9 @@
 package longbow;
 
 
+import java.util.Collection;
+import java.util.concurrent.Executor;
+
 /**
  * A {@link Runner} is used to execute a {@link Workflow}. Deployers should
  * choose which {@link Runner} should be used for which {@link Workflow}.
@@ -29,6 +32,14 @@ package longbow;
  */
 public interface Runner {
 
+	/**
+	 * The {@link Executor} that sweeps on behalf of callers that don't want to
+	 * wait, like {@link longbow.transformations.Getter#extractAsync()}.
+	 * 
+	 * @return the executor for asynchronous sweeps
+	 */
+	Executor getExecutor();
+
 	/**
 	 * Mark a {@link TransformationContext}. The order in which marks and
 	 * sweeps are performed in this {@link Runner} can be preserved. Wait if
@@ -38,6 +49,16 @@ public interface Runner {
 	 */
 	void mark(TransformationContext context);
 
+	/**
+	 * Mark several {@link TransformationContext}s at once. The result is the
+	 * same as marking them one by one, but a follower that several of them
+	 * have in common is only invalidated once.
+	 * 
+	 * @param contexts
+	 *            the contexts to mark
+	 */
+	void markAll(Collection<? extends TransformationContext> contexts);
+
 	/**
 	 * Prepare all {@link TransformationContext}s to run and start accepting
 	 * marks and sweeps from them.
@@ -94,6 +94,30 @@ public interface TransformationContext {
 	 */
 	DataWrapper getInputWrapper(String inputid);
 
+	/**
+	 * Resolves the id of an input to a slot. Slots are dense, starting from
+	 * {@code 0}, and don't change while the containing {@link Workflow} runs.
+	 * They are only available after the workflow has started running.
+	 * 
+	 * @param inputid
+	 *            The identification of the input
+	 * @return the slot of the input, or {@code -1} if there is no such input
+	 *         or if the workflow is not running.
+	 * @see #getInputWrapper(int)
+	 */
+	int getInputSlot(String inputid);
+
+	/**
+	 * 
+	 * @param slot
+	 *            The slot of the input, as returned by
+	 *            {@link #getInputSlot(String)}
+	 * @return The {@link DataWrapper} contained in the {@link DataNode}
+	 *         connected to the input, or {@code null} if the input is not
+	 *         connected
+	 */
+	DataWrapper getInputWrapper(int slot);
+
 	/**
 	 * 
 	 * @param outputid
@@ -105,6 +129,40 @@ public interface TransformationContext {
 
 	DataWrapper getOutputWrapper(String outputid);
 
+	/**
+	 * @param outputid
+	 *            The identification of the output
+	 * @return the slot of the output, or {@code -1} if there is no such
+	 *         output or if the workflow is not running.
+	 * @see #getInputSlot(String)
+	 */
+	int getOutputSlot(String outputid);
+
+	/**
+	 * 
+	 * @param slot
+	 *            The slot of the output, as returned by
+	 *            {@link #getOutputSlot(String)}
+	 * @return The {@link DataWrapper} contained in the {@link DataNode}
+	 *         connected to the output, or {@code null} if the output is not
+	 *         connected
+	 */
+	DataWrapper getOutputWrapper(int slot);
+
+	/**
+	 * @return the cache that memoizes the results of the transformation, or
+	 *         {@code null} if results are not memoized
+	 * @see #setResultCache(ResultCache)
+	 */
+	ResultCache getResultCache();
+
+	/**
+	 * @return the {@link Runner} that executes this context, or {@code null}
+	 *         if the {@link Workflow} is not running
+	 * @see #setRunner(Runner)
+	 */
+	Runner getRunner();
+
 	/**
 	 * 
 	 * @return The {@link Workflow} that contains this
@@ -185,6 +243,26 @@ public interface TransformationContext {
 	 */
 	void setRunner(Runner runner);
 
+	/**
+	 * Memoizes the results of the transformation. Before the transformation is
+	 * executed, the values of the inputs are looked up in the cache. On a hit,
+	 * the cached values are written to the outputs and the transformation is
+	 * not executed at all. On a miss, the transformation is executed and the
+	 * exported values are cached.
+	 * 
+	 * Only use this for a {@link Transformation} that always exports the same
+	 * values for the same input values, and does nothing else. The input
+	 * values are kept in the cache, so they must not be modified afterwards.
+	 * 
+	 * The cache can only be set in {@link Mode#DESIGN} mode. One cache must
+	 * not be shared by several contexts.
+	 * 
+	 * @param cache
+	 *            the cache for the results, keyed by the input values in slot
+	 *            order, or {@code null} to stop memoizing
+	 */
+	void setResultCache(ResultCache cache);
+
 	/**
 	 * Associates a {@link Transformation} with this
 	 * {@link TransformationContext}.
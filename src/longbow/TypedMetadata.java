@@ -0,0 +1,37 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow;
+
+
+/**
+ * {@link Metadata} that accepts no other data than instances of one class or
+ * its subclasses, and possibly {@code null}.
+ * 
+ * A {@link LongbowFactory} can use the class to create a specialized
+ * {@link DataWrapper}, like an {@link IntDataWrapper} for {@link Integer}s.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public interface TypedMetadata extends Metadata {
+
+	/**
+	 * @return the class of all data that is accepted
+	 */
+	Class<?> getDataClass();
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow;
+
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which values written to a {@link DataNode} or injected in a
+ * workflow are checked against their {@link Metadata}.
+ * 
+ * Connections are only made if the {@link Metadata} of the input accepts the
+ * metadata of the output. Checking every value again is redundant for
+ * producers that are trusted to respect the metadata of their outputs.
+ * <ul>
+ * <li>{@link #ALWAYS} checks every value. This is the default.</li>
+ * <li>{@link #TRUSTED} checks no values at all.</li>
+ * <li>{@link #sampled(int)} checks one value in every {@code n}, counted by
+ * the caller or at random.</li>
+ * </ul>
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public final class Validation {
+
+	public static final Validation ALWAYS = new Validation(1);
+
+	public static final Validation TRUSTED = new Validation(0);
+
+	/**
+	 * The number of writes for each check, or {@code 0} if nothing is
+	 * checked.
+	 */
+	private final int interval;
+
+	private Validation(final int interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * @return the number of writes for each check, or {@code 0} if nothing
+	 *         is checked.
+	 */
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * @param write
+	 *            the number of the write, counted by the caller
+	 * @return whether the value of that write must be checked.
+	 */
+	public boolean validates(final int write) {
+		switch (interval) {
+		case 0:
+			return false;
+		case 1:
+			return true;
+		default:
+			return write % interval == 0;
+		}
+	}
+
+	/**
+	 * Decides without a count of writes. A sampled validation checks a write
+	 * at random, with a chance of one in its interval.
+	 * 
+	 * @return whether the value of a write must be checked.
+	 */
+	public boolean validates() {
+		switch (interval) {
+		case 0:
+			return false;
+		case 1:
+			return true;
+		default:
+			return ThreadLocalRandom.current().nextInt(interval) == 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		switch (interval) {
+		case 0:
+			return "TRUSTED";
+		case 1:
+			return "ALWAYS";
+		default:
+			return "SAMPLED(" + interval + ")";
+		}
+	}
+
+	/**
+	 * @param interval
+	 *            the number of writes for each check
+	 * @return a validation that checks one value in every {@code interval}
+	 *         values.
+	 */
+	public static Validation sampled(final int interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("interval must be positive");
+		}
+		return interval == 1 ? ALWAYS : new Validation(interval);
+	}
+}
@@ -19,6 +19,8 @@ package longbow;
 
 
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
 
 /**
  * A workflow is what designers work with. It contains transformations that can
@@ -69,6 +71,43 @@ public interface Workflow extends PartialOrder<TransformationContext> {
 	 */
 	void addContextListener(ContextListener listener, TransformationContext transformation);
 
+	/**
+	 * Adds a number of {@link Transformation}s in one batch, see
+	 * {@link #beginBatch()}. Every transformation is wrapped in its own
+	 * {@link TransformationContext}.
+	 * 
+	 * Adding transformations is only possible in {@link longbow.Mode#DESIGN}
+	 * mode.
+	 * 
+	 * @param toAdd
+	 *            The transformations to add to the workflow
+	 * @return The contexts that wrap the added transformations, in the order
+	 *         of {@code toAdd}, or an empty list if nothing could be added.
+	 */
+	List<TransformationContext> addTransformations(Collection<? extends Transformation> toAdd);
+
+	/**
+	 * Opens a batch of design edits. Until the matching {@link #endBatch()},
+	 * the {@link ContextListener}s of this {@link Workflow} and of its
+	 * {@link TransformationContext}s are not notified of every single edit.
+	 * The {@link Transformation}s themselves still are, so they can react to
+	 * being added to a context.
+	 * 
+	 * Batches can be nested. Only the outermost {@link #endBatch()} notifies
+	 * the listeners.
+	 */
+	void beginBatch();
+
+	/**
+	 * Starts writing injected data. The generation becomes odd, so that
+	 * readers that don't lock, like
+	 * {@link longbow.transformations.Extraction#extract()}, know that they
+	 * may see a part of the injected data. The caller must hold the write lock
+	 * of {@link #getInjectionLock()} until the matching
+	 * {@link #endInjection()}.
+	 */
+	void beginInjection();
+
 	/**
 	 * Attempts to connect two transformations.
 	 * 
@@ -92,6 +131,27 @@ public interface Workflow extends PartialOrder<TransformationContext> {
 	 */
 	boolean connect(TransformationContext from, String outputid, TransformationContext to, String inputid);
 
+	/**
+	 * Connects a number of outputs of one {@link TransformationContext} to the
+	 * inputs of another one in one batch, see {@link #beginBatch()}. The
+	 * output at a position in {@code outputids} is connected to the input at
+	 * the same position in {@code inputids}.
+	 * 
+	 * Connections that could be established are not undone when another one
+	 * fails.
+	 * 
+	 * @param from
+	 *            the {@link TransformationContext} to connect from
+	 * @param outputids
+	 *            the identifications of the {@link Output}s of {@code from}
+	 * @param to
+	 *            the {@link TransformationContext} to connect to
+	 * @param inputids
+	 *            the identifications of the {@link Input}s of {@code to}
+	 * @return whether all connections have been established
+	 */
+	boolean connectAll(TransformationContext from, String[] outputids, TransformationContext to, String[] inputids);
+
 	/**
 	 * Disconnects a connection from an {@link Output} of a
 	 * {@link TransformationContext} to an {@link Input} of another
@@ -109,6 +169,26 @@ public interface Workflow extends PartialOrder<TransformationContext> {
 	 */
 	boolean disconnect(TransformationContext from, String outputid, TransformationContext to, String inputid);
 
+	/**
+	 * Closes a batch of design edits that was opened with
+	 * {@link #beginBatch()}. When the outermost batch is closed, the
+	 * {@link ContextListener}s are notified once for every
+	 * {@link TransformationContext} that was added, changed or removed during
+	 * the batch. A context that was added and removed again within the batch
+	 * is not reported at all.
+	 * 
+	 * @throws IllegalStateException
+	 *             if no batch is open
+	 */
+	void endBatch();
+
+	/**
+	 * Ends writing injected data that was started with
+	 * {@link #beginInjection()}, after the changed contexts have been marked.
+	 * The generation becomes even again.
+	 */
+	void endInjection();
+
 	/**
 	 * Attempts to execute this {@link Workflow}. If successful, the execution
 	 * mode will be changed to {@link longbow.Mode#RUN}. The {@link Workflow}
@@ -156,6 +236,30 @@ public interface Workflow extends PartialOrder<TransformationContext> {
 	 */
 	Mode getMode();
 
+	/**
+	 * The generation of the injected data. It is odd while data is injected,
+	 * and it changes with every injection, so a reader that sees the same even
+	 * generation before and after it sweeps and reads has seen one consistent
+	 * state of the {@link Workflow}.
+	 * 
+	 * @return the generation of the injected data
+	 */
+	long getGeneration();
+
+	/**
+	 * The lock that makes a batch of injections atomic for readers. Writers,
+	 * like {@link longbow.transformations.Injection#commit()}, hold the write
+	 * lock only while they inject data and mark the changed contexts, between
+	 * {@link #beginInjection()} and {@link #endInjection()}. Readers, like
+	 * {@link longbow.transformations.Getter#extract()}, never hold it while
+	 * they sweep. They compare the {@link #getGeneration()} before and after,
+	 * and only take the read lock for a moment to wait until an injection in
+	 * progress has ended.
+	 * 
+	 * @return the lock for injections
+	 */
+	ReadWriteLock getInjectionLock();
+
 	/**
 	 * @return an unmodifiable collection that contains all the
 	 *         {@link TransformationContext}s in this workflow.
@@ -168,8 +272,24 @@ public interface Workflow extends PartialOrder<TransformationContext> {
 	 */
 	boolean isExecutable();
 
+	/**
+	 * @return whether a batch of design edits is open, see
+	 *         {@link #beginBatch()}
+	 */
+	boolean isBatching();
+
 	void linkBack(TransformationContext from, String outputid, TransformationContext to, String inputid);
 
+	/**
+	 * Marks several {@link TransformationContext}s in one pass, see
+	 * {@link Runner#markAll(Collection)}. Only has an effect in
+	 * {@link Mode#RUN} mode.
+	 * 
+	 * @param contexts
+	 *            the contexts to mark
+	 */
+	void markAll(Collection<? extends TransformationContext> contexts);
+
 	/**
 	 * Removes a {@link TransformationContext} from this {@link Workflow}.
 	 * 
@@ -18,8 +18,11 @@
 package longbow.core;
 
 
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import longbow.Runner;
 import longbow.TransformationContext;
@@ -68,6 +71,24 @@ abstract public class AbstractRunner implements Runner {
 		return running;
 	}
 
+	/**
+	 * Sweeps asynchronously in the common {@link ForkJoinPool}. Runners that
+	 * have a pool of their own override this.
+	 */
+	public Executor getExecutor() {
+		return ForkJoinPool.commonPool();
+	}
+
+	/**
+	 * Marks the contexts one by one. Runners that can walk the followers of
+	 * all contexts in one pass override this.
+	 */
+	public void markAll(final Collection<? extends TransformationContext> contexts) {
+		for (final TransformationContext context : contexts) {
+			mark(context);
+		}
+	}
+
 	public final void stop() {
 		if (!running) {
 			throw new IllegalStateException("Runner has already stopped or is not running");
@@ -20,13 +20,21 @@ package longbow.core;
 
 import static longbow.Mode.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import longbow.*;
+import longbow.metadata.CompatibilityCache;
 
 /**
  * A default implementation for practically all designer actions.
@@ -56,6 +64,39 @@ public abstract class AbstractWorkflow implements Workflow {
 	 */
 	protected final PartialOrder<TransformationContext> transformations;
 
+	private static final int ADDED = 1;
+
+	private static final int CHANGED = 2;
+
+	private static final int REMOVED = 4;
+
+	/**
+	 * The number of open batches
+	 */
+	private int batches;
+
+	/**
+	 * The contexts with events that are held back until the outermost batch is
+	 * closed, in the order of their first event, with the kinds of their
+	 * events.
+	 */
+	private final Map<TransformationContext, Integer> pending;
+
+	/**
+	 * Held by injectors while the generation is odd
+	 */
+	private final ReadWriteLock injectionLock;
+
+	/**
+	 * Counts injections like a sequence lock: odd while data is injected
+	 */
+	private final AtomicLong generation;
+
+	/**
+	 * results of the metadata checks of connections
+	 */
+	private final CompatibilityCache compatibility;
+
 	/**
 	 * 
 	 * @param factory
@@ -66,6 +107,10 @@ public abstract class AbstractWorkflow implements Workflow {
 		this.factory = factory;
 		contextListeners = new WeakHashMap<ContextListener, Object>();
 		transformations = new PartialOrderImpl<TransformationContext>();
+		pending = new LinkedHashMap<TransformationContext, Integer>();
+		injectionLock = new ReentrantReadWriteLock();
+		generation = new AtomicLong();
+		compatibility = new CompatibilityCache(CompatibilityCache.DEFAULT_CAPACITY);
 	}
 
 	public TransformationContext add(final Transformation toAdd) {
@@ -80,13 +125,23 @@ public abstract class AbstractWorkflow implements Workflow {
 	}
 
 	/**
-	 * This optional operation is not supported in this implementation
+	 * Adds all contexts in one batch.
 	 * 
 	 * @param c
-	 * @return nothing, throws {@link UnsupportedOperationException}
+	 *            the contexts to add
+	 * @return whether any context was added
 	 */
 	public boolean addAll(final Collection<? extends TransformationContext> c) {
-		throw new UnsupportedOperationException();
+		boolean changed = false;
+		beginBatch();
+		try {
+			for (final TransformationContext context : c) {
+				changed |= add(context);
+			}
+		} finally {
+			endBatch();
+		}
+		return changed;
 	}
 
 	public void addContextListener(final ContextListener listener) {
@@ -103,6 +158,33 @@ public abstract class AbstractWorkflow implements Workflow {
 		}
 	}
 
+	public List<TransformationContext> addTransformations(final Collection<? extends Transformation> toAdd) {
+		if (mode != DESIGN || toAdd.isEmpty()) {
+			return Collections.emptyList();
+		}
+		final TransformationContext[] contexts = factory.createTransformationContexts(this, toAdd.size());
+		beginBatch();
+		try {
+			int i = 0;
+			for (final Transformation transformation : toAdd) {
+				final TransformationContext context = contexts[i++];
+				transformations.add(context);
+				context.setTransformation(transformation);
+			}
+		} finally {
+			endBatch();
+		}
+		return Arrays.asList(contexts);
+	}
+
+	public void beginBatch() {
+		batches++;
+	}
+
+	public void beginInjection() {
+		generation.incrementAndGet();
+	}
+
 	public void clear() {
 		transformations.clear();
 	}
@@ -115,7 +197,7 @@ public abstract class AbstractWorkflow implements Workflow {
 		final Output fromOutput = fromContext.getOutput(outputid);
 		final Input toInput = toContext.getInput(inputid);
 
-		if (fromOutput != null && toInput != null && !toInput.isConnected() && toInput.getMetadata().acceptsMetadata(fromOutput.getMetadata()) && transformations.connect(fromContext, toContext)) {
+		if (fromOutput != null && toInput != null && !toInput.isConnected() && compatibility.accepts(toInput.getMetadata(), fromOutput.getMetadata()) && transformations.connect(fromContext, toContext)) {
 			linkData(fromOutput, toInput);
 			return true;
 		}
@@ -129,6 +211,22 @@ public abstract class AbstractWorkflow implements Workflow {
 		return transformations.connect(from, to);
 	}
 
+	public boolean connectAll(final TransformationContext from, final String[] outputids, final TransformationContext to, final String[] inputids) {
+		if (outputids.length != inputids.length) {
+			throw new IllegalArgumentException("Every output needs an input");
+		}
+		boolean connected = true;
+		beginBatch();
+		try {
+			for (int i = 0; i < outputids.length; i++) {
+				connected &= connect(from, outputids[i], to, inputids[i]);
+			}
+		} finally {
+			endBatch();
+		}
+		return connected;
+	}
+
 	public boolean contains(final Object object) {
 		return transformations.contains(object);
 	}
@@ -173,7 +271,45 @@ public abstract class AbstractWorkflow implements Workflow {
 		return transformations.disconnect(from, to);
 	}
 
+	public void endBatch() {
+		if (batches == 0) {
+			throw new IllegalStateException("No batch is open");
+		}
+		if (--batches > 0 || pending.isEmpty()) {
+			return;
+		}
+		// listeners may edit the workflow again, so take the events first
+		final List<Map.Entry<TransformationContext, Integer>> events = new ArrayList<Map.Entry<TransformationContext, Integer>>(pending.entrySet());
+		pending.clear();
+		for (final Map.Entry<TransformationContext, Integer> entry : events) {
+			final TransformationContext context = entry.getKey();
+			final int kinds = entry.getValue();
+			final ContextEvent event = new ContextEvent(context);
+			if ((kinds & REMOVED) != 0) {
+				// a context that never showed up is not reported
+				if ((kinds & ADDED) == 0) {
+					notifyRemoved(context, event);
+				}
+				continue;
+			}
+			if ((kinds & ADDED) != 0) {
+				notifyAddToContext(context, event);
+			}
+			if ((kinds & CHANGED) != 0) {
+				notifyContextChanged(context, event);
+			}
+		}
+	}
+
+	public void endInjection() {
+		generation.incrementAndGet();
+	}
+
 	public final void fireAddToContext(final ContextEvent event) {
+		if (batches > 0) {
+			hold(event.getSource(), ADDED);
+			return;
+		}
 		for (final ContextListener listener : contextListeners.keySet()) {
 			if (!event.getSource().hasListener(listener)) {
 				listener.addToContext(event);
@@ -182,6 +318,10 @@ public abstract class AbstractWorkflow implements Workflow {
 	}
 
 	public final void fireContextChanged(final ContextEvent event) {
+		if (batches > 0) {
+			hold(event.getSource(), CHANGED);
+			return;
+		}
 		for (final ContextListener listener : contextListeners.keySet()) {
 			if (!event.getSource().hasListener(listener)) {
 				listener.contextChange(event);
@@ -190,6 +330,10 @@ public abstract class AbstractWorkflow implements Workflow {
 	}
 
 	public final void fireRemoved(final ContextEvent event) {
+		if (batches > 0) {
+			hold(event.getSource(), REMOVED);
+			return;
+		}
 		for (final ContextListener listener : contextListeners.keySet()) {
 			if (!event.getSource().hasListener(listener)) {
 				listener.contextRemoved(event);
@@ -201,10 +345,26 @@ public abstract class AbstractWorkflow implements Workflow {
 		return transformations.follows(first, last);
 	}
 
+	/**
+	 * @return the cache of the metadata checks of the connections of this
+	 *         workflow
+	 */
+	public CompatibilityCache getCompatibilityCache() {
+		return compatibility;
+	}
+
 	public List<TransformationContext> getFollowers(final TransformationContext key) {
 		return transformations.getFollowers(key);
 	}
 
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	public ReadWriteLock getInjectionLock() {
+		return injectionLock;
+	}
+
 	public Mode getMode() {
 		return mode;
 	}
@@ -217,6 +377,10 @@ public abstract class AbstractWorkflow implements Workflow {
 		return Collections.unmodifiableCollection(transformations);
 	}
 
+	public boolean isBatching() {
+		return batches > 0;
+	}
+
 	public boolean isEmpty() {
 		return transformations.isEmpty();
 	}
@@ -292,6 +456,32 @@ public abstract class AbstractWorkflow implements Workflow {
 		return transformations.toArray(a);
 	}
 
+	private void hold(final TransformationContext context, final int kind) {
+		final Integer kinds = pending.get(context);
+		pending.put(context, kinds == null ? kind : kinds | kind);
+	}
+
+	private void notifyAddToContext(final TransformationContext context, final ContextEvent event) {
+		if (context instanceof DefaultTransformationContext) {
+			((DefaultTransformationContext) context).notifyAddToContext(event);
+		}
+		fireAddToContext(event);
+	}
+
+	private void notifyContextChanged(final TransformationContext context, final ContextEvent event) {
+		if (context instanceof DefaultTransformationContext) {
+			((DefaultTransformationContext) context).notifyContextChanged(event);
+		}
+		fireContextChanged(event);
+	}
+
+	private void notifyRemoved(final TransformationContext context, final ContextEvent event) {
+		if (context instanceof DefaultTransformationContext) {
+			((DefaultTransformationContext) context).notifyRemoved(event);
+		}
+		fireRemoved(event);
+	}
+
 	private void linkData(final Output fromOutput, final Input toInput) {
 		final boolean outputChanged = !fromOutput.isConnected();
 
@@ -18,67 +18,130 @@
 package longbow.core;
 
 
+import static longbow.Mode.*;
+import gnu.trove.TIntArrayList;
 import gnu.trove.TObjectIntHashMap;
 
-import java.util.BitSet;
+import java.util.List;
 
+import longbow.LongbowException;
 import longbow.TransformationContext;
 import longbow.Workflow;
+import longbow.util.AtomicBitSet;
+import longbow.util.SparseBitSet;
+
+import org.apache.log4j.Logger;
 
 /**
+ * A {@link longbow.Runner} that keeps track of invalid
+ * {@link TransformationContext}s in a single bit set.
+ * 
+ * Contexts are numbered in partial order when the runner starts, and the
+ * transitive closures of the precursors and followers of every context are
+ * computed once. A mark then adds the context and all of its followers to the
+ * invalid set in one word-parallel operation. A sweep executes the invalid
+ * part of the closure of the precursors, and the context itself, by ascending
+ * index.
+ * 
+ * The closures are stored in {@link SparseBitSet}s, so that the closures of
+ * long chains and other mostly consecutively numbered graphs stay small.
+ * 
+ * Marks and sweeps don't share a lock. The invalid contexts are kept in an
+ * {@link AtomicBitSet}, that a mark changes one word at a time. A sweep only
+ * locks the contexts it executes, one at a time, so disjoint parts of a
+ * workflow can be marked and swept concurrently. A context is removed from
+ * the invalid set right before it is executed, so that a mark that arrives
+ * during the execution is not lost. To keep other sweeps from taking the
+ * results of that context for valid too early, it stays in a second set of
+ * executing contexts until the execution is finished. A context is only
+ * executed if its direct precursors are valid, so that a mark that overtakes
+ * the sweep, or a precursor that failed, doesn't leave it valid with stale
+ * inputs.
  * 
  * @author Philip van Oosten
  * 
  */
 public class BitSetRunner extends AbstractRunner {
 
-	private BitSet[] followers;
+	private static final Logger logger = Logger.getLogger(BitSetRunner.class);
+
+	private SparseBitSet[] followers;
+
+	private SparseBitSet[] precursors;
+
+	/**
+	 * direct precursors of each context
+	 */
+	private int[][] directPrecursors;
+
+	private AtomicBitSet invalid;
 
-	private BitSet[] precursors;
+	/**
+	 * contexts that are being executed. Is set before the context is removed
+	 * from {@link #invalid} and cleared after the execution.
+	 */
+	private AtomicBitSet executing;
 
-	private BitSet invalid;
+	/**
+	 * lock for each context, held while the context is executed
+	 */
+	private Object[] locks;
 
 	private TObjectIntHashMap<TransformationContext> indices;
 
 	private TransformationContext[] contexts;
 
+	/**
+	 * direct followers of each context, only while starting
+	 */
+	private TIntArrayList[] directFollowers;
+
 	public BitSetRunner(final Workflow workflow) {
 		super(workflow);
 	}
 
 	public void mark(final TransformationContext context) {
-		if (!running) {
+		if (!running || workflow.getMode() != RUN) {
 			return;
 		}
 		final int index = indices.get(context);
-		synchronized (invalid) {
-			invalid.and(followers[index]);
-		}
+		invalid.set(index);
+		invalid.or(followers[index]);
 	}
 
 	public void sweep(final TransformationContext context) {
-		if (!running) {
+		if (!running || workflow.getMode() != RUN) {
 			return;
 		}
 		final int index = indices.get(context);
-		synchronized (invalid) {
-			final BitSet set = (BitSet) invalid.clone();
-			set.and(followers[index]);
-			for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
-				contexts[i].executeTransformation();
+		if (isSwept(index)) {
+			return;
+		}
+		// indices are in partial order: precursors come first
+		final SparseBitSet p = precursors[index];
+		for (int i = p.nextSetBit(0); i >= 0; i = p.nextSetBit(i)) {
+			final int w = i >>> 6;
+			long word = p.getWord(w) & (invalid.getWord(w) | executing.getWord(w));
+			while (word != 0) {
+				execute((w << 6) + Long.numberOfTrailingZeros(word));
+				word &= word - 1;
 			}
-			invalid.andNot(followers[index]);
+			i = w + 1 << 6;
 		}
-
+		execute(index);
 	}
 
 	@Override
 	protected boolean doStart() {
 		final int size = workflow.size();
-		followers = new BitSet[size];
-		precursors = new BitSet[size];
-		invalid = new BitSet(size);
-		invalid.set(0, size);
+		followers = new SparseBitSet[size];
+		precursors = new SparseBitSet[size];
+		directPrecursors = new int[size][];
+		directFollowers = new TIntArrayList[size];
+		invalid = new AtomicBitSet(size);
+		invalid.setAll();
+		executing = new AtomicBitSet(size);
+		locks = new Object[size];
 		indices = new TObjectIntHashMap<TransformationContext>(size);
 		contexts = new TransformationContext[size];
 		return true;
@@ -88,41 +151,35 @@ public class BitSetRunner extends AbstractRunner {
 	protected boolean doStart(final TransformationContext context, final int index) {
 		contexts[index] = context;
 		indices.put(context, index);
-		final int size = workflow.size();
-		precursors[index] = new BitSet(size);
-		followers[index] = new BitSet(size);
+		locks[index] = new Object();
+		precursors[index] = new SparseBitSet();
+		directFollowers[index] = new TIntArrayList();
 
 		// this method is executed in partial order,
-		// so the index of precursors is already known.
-
-		// Also, each context is follower of its precursors
-		// and there are no other followers than those
-		// that have precursors.
-
-		for (final TransformationContext precursor : workflow.getPrecursors(context)) {
-			final int preIndex = indices.get(precursor);
+		// so the index and the closure of all precursors are already known.
+		final List<TransformationContext> direct = workflow.getPrecursors(context);
+		directPrecursors[index] = new int[direct.size()];
+		for (int i = 0; i < directPrecursors[index].length; i++) {
+			final int preIndex = indices.get(direct.get(i));
+			directPrecursors[index][i] = preIndex;
 			precursors[index].set(preIndex);
-			followers[preIndex].set(index);
+			precursors[index].or(precursors[preIndex]);
+			directFollowers[preIndex].add(index);
 		}
 
-		// Transitive closures
-		if (index == size - 1) {
-			for (int i = 0; i < size; i++) {
-				final BitSet p = precursors[i];
-				for (int j = p.nextSetBit(0); j >= 0; j = p.nextSetBit(j + 1)) {
-					// First create transitive closure for precursors of j
-					// There is nothing to do for that (go figure)!
-					p.and(precursors[j]);
-				}
-			}
-			for (int i = size - 1; i >= 0; i--) {
-				final BitSet f = followers[i];
-				for (int j = f.nextSetBit(0); j >= 0; j = f.nextSetBit(j + 1)) {
-					f.and(followers[j]);
+		// the closure of the followers is built in reverse order,
+		// once all contexts are known.
+		if (index == contexts.length - 1) {
+			for (int i = contexts.length - 1; i >= 0; i--) {
+				final SparseBitSet f = new SparseBitSet();
+				for (final int follower : directFollowers[i].toNativeArray()) {
+					f.set(follower);
+					f.or(followers[follower]);
 				}
+				followers[i] = f;
 			}
+			directFollowers = null;
 		}
-
 		return true;
 	}
 
@@ -130,7 +187,11 @@ public class BitSetRunner extends AbstractRunner {
 	protected void doStop() {
 		followers = null;
 		precursors = null;
+		directPrecursors = null;
+		directFollowers = null;
 		invalid = null;
+		executing = null;
+		locks = null;
 		indices = null;
 		contexts = null;
 	}
@@ -139,4 +200,56 @@ public class BitSetRunner extends AbstractRunner {
 	protected void doStop(final TransformationContext context) {
 	}
 
+	/**
+	 * Checks without locking if a context is valid and not executing.
+	 */
+	private boolean isSwept(final int index) {
+		// executing is set before invalid is cleared, so read in reverse order
+		return !invalid.get(index) && !executing.get(index);
+	}
+
+	/**
+	 * Checks if the direct precursors of a context are valid. A mark sets the
+	 * bits of a context before those of its followers, so an invalid
+	 * precursor further up shows in a direct precursor.
+	 */
+	private boolean isPrecursorsSwept(final int index) {
+		for (final int precursor : directPrecursors[index]) {
+			if (!isSwept(precursor)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void execute(final int index) {
+		synchronized (locks[index]) {
+			// executing can only be set while holding the lock
+			if (!invalid.get(index)) {
+				return;
+			}
+			executing.set(index);
+			invalid.clear(index);
+			boolean executed = false;
+			try {
+				// a mark that invalidated a precursor after the sweep read the
+				// invalid set has invalidated this context too, but that bit
+				// has just been cleared. So have a failed precursor.
+				if (isPrecursorsSwept(index)) {
+					contexts[index].executeTransformation();
+					executed = true;
+				}
+			} catch (final LongbowException e) {
+				final String msg = "Error while sweeping";
+				logger.error(msg, e);
+			} finally {
+				if (!executed) {
+					// the context stays invalid and is executed again by the
+					// next sweep
+					invalid.set(index);
+				}
+				executing.clear(index);
+			}
+		}
+	}
 }
@@ -43,6 +43,8 @@ public class DefaultDataNode implements DataNode {
 
 	private final LongbowFactory factory;
 
+	private Validation validation;
+
 	/**
 	 * Creates a new {@link DefaultDataNode}.
 	 * 
@@ -71,7 +73,8 @@ public class DefaultDataNode implements DataNode {
 	 */
 	public DataWrapper getDataWrapper() {
 		if (dataWrapper == null) {
-			dataWrapper = factory.createDataWrapper();
+			dataWrapper = factory.createDataWrapper(metadata);
+			validation = factory.getValidation(metadata);
 		}
 		return dataWrapper;
 	}
@@ -114,7 +117,8 @@ public class DefaultDataNode implements DataNode {
 
 	/**
 	 * Set the data for this {@link DataNode}, while checking the
-	 * {@link Metadata}.
+	 * {@link Metadata}, unless the {@link Validation} of the factory says
+	 * otherwise.
 	 * 
 	 * @param data
 	 *            The data to set
@@ -124,7 +128,7 @@ public class DefaultDataNode implements DataNode {
 		if (dataWrapper.getData() == data) {
 			return true;
 		}
-		final boolean accept = metadata.acceptsData(data);
+		final boolean accept = !validation.validates() || metadata.acceptsData(data);
 		if (accept) {
 			dataWrapper.setData(data);
 		}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import longbow.DoubleDataWrapper;
+import longbow.LongbowException;
+
+/**
+ * Like {@link DefaultIntDataWrapper}, for {@code double} values.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class DefaultDoubleDataWrapper implements DoubleDataWrapper {
+
+	private double value;
+
+	/**
+	 * the boxed value, or {@code null} if it has not been boxed yet
+	 */
+	private Double boxed;
+
+	/**
+	 * whether the wrapper contains {@code null}
+	 */
+	private boolean empty;
+
+	public DefaultDoubleDataWrapper() {
+		empty = true;
+	}
+
+	public Object getData() {
+		if (empty) {
+			return null;
+		}
+		if (boxed == null) {
+			boxed = Double.valueOf(value);
+		}
+		return boxed;
+	}
+
+	public double getDouble() {
+		if (empty) {
+			throw new NullPointerException();
+		}
+		return value;
+	}
+
+	public void setData(final Object data) {
+		if (data == null) {
+			empty = true;
+			value = 0.0;
+			boxed = null;
+		} else if (data instanceof Double) {
+			boxed = (Double) data;
+			value = boxed.doubleValue();
+			empty = false;
+		} else {
+			throw new LongbowException("Can't wrap " + data.getClass().getName() + " as double");
+		}
+	}
+
+	public void setDouble(final double value) {
+		if (empty || Double.doubleToLongBits(value) != Double.doubleToLongBits(this.value)) {
+			// the same value keeps the same boxed object
+			boxed = null;
+		}
+		this.value = value;
+		empty = false;
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import longbow.LongDataWrapper;
+import longbow.LongbowException;
+
+/**
+ * Like {@link DefaultIntDataWrapper}, for {@code long} values.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class DefaultLongDataWrapper implements LongDataWrapper {
+
+	private long value;
+
+	/**
+	 * the boxed value, or {@code null} if it has not been boxed yet
+	 */
+	private Long boxed;
+
+	/**
+	 * whether the wrapper contains {@code null}
+	 */
+	private boolean empty;
+
+	public DefaultLongDataWrapper() {
+		empty = true;
+	}
+
+	public Object getData() {
+		if (empty) {
+			return null;
+		}
+		if (boxed == null) {
+			boxed = Long.valueOf(value);
+		}
+		return boxed;
+	}
+
+	public long getLong() {
+		if (empty) {
+			throw new NullPointerException();
+		}
+		return value;
+	}
+
+	public void setData(final Object data) {
+		if (data == null) {
+			empty = true;
+			value = 0L;
+			boxed = null;
+		} else if (data instanceof Long) {
+			boxed = (Long) data;
+			value = boxed.longValue();
+			empty = false;
+		} else {
+			throw new LongbowException("Can't wrap " + data.getClass().getName() + " as long");
+		}
+	}
+
+	public void setLong(final long value) {
+		if (empty || value != this.value) {
+			// the same value keeps the same boxed object
+			boxed = null;
+		}
+		this.value = value;
+		empty = false;
+	}
+
+}
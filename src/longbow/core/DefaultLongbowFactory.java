@@ -18,186 +18,275 @@
 package longbow.core;
 
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+
 import longbow.*;
 
 /**
+ * Creates the default implementations of the Longbow interfaces, or the
+ * classes that are configured instead.
+ * 
+ * The constructor of a configured class is looked up once, when the class is
+ * configured. Creating an instance only invokes a {@link MethodHandle}, and
+ * doesn't need a lock.
  * 
  * @author Philip van Oosten
  * 
  */
 public class DefaultLongbowFactory implements LongbowFactory {
 
-	private Class<? extends DataNode> dataNodeClass = DefaultDataNode.class;
+	private volatile Creator<DataNode> dataNode = new Creator<DataNode>(DataNode.class, DefaultDataNode.class, Metadata.class, LongbowFactory.class);
 
-	private Class<? extends DataWrapper> dataWrapperClass = DefaultDataWrapper.class;
+	private volatile Creator<DataWrapper> dataWrapper = new Creator<DataWrapper>(DataWrapper.class, DefaultDataWrapper.class);
 
-	private Class<? extends Input> inputClass = DefaultInput.class;
+	private volatile Creator<Input> input = new Creator<Input>(Input.class, DefaultInput.class, TransformationContext.class, Metadata.class);
 
-	private Class<? extends Output> outputClass = DefaultOutput.class;
+	private volatile Creator<Output> output = new Creator<Output>(Output.class, DefaultOutput.class, TransformationContext.class, Metadata.class);
 
-	private Class<? extends Runner> runnerClass = DefaultRunner.class;
+	private volatile Creator<Runner> runner = new Creator<Runner>(Runner.class, DefaultRunner.class, Workflow.class);
 
-	private Class<? extends TransformationContext> transformationContextClass = DefaultTransformationContext.class;
+	private volatile Creator<TransformationContext> transformationContext = new Creator<TransformationContext>(TransformationContext.class, DefaultTransformationContext.class, Workflow.class, LongbowFactory.class);
 
-	private Class<? extends Workflow> workflowClass = DefaultWorkflow.class;
+	private volatile Creator<Workflow> workflow = new Creator<Workflow>(Workflow.class, DefaultWorkflow.class, LongbowFactory.class);
+
+	private volatile Validation validation = Validation.ALWAYS;
 
 	public DataNode createDataNode(final Metadata metadata) {
-		try {
-			synchronized (dataNodeClass) {
-				return dataNodeClass.getConstructor(Metadata.class, LongbowFactory.class).newInstance(metadata, this);
-			}
-		} catch (final Exception e) {
-			final String msg = "Error creating data node";
-			throw new LongbowException(msg, e);
-		}
+		return dataNode.create(metadata, this);
 	}
 
 	public DataWrapper createDataWrapper() {
-		try {
-			synchronized (dataWrapperClass) {
-				return dataWrapperClass.newInstance();
+		return dataWrapper.create();
+	}
+
+	/**
+	 * Creates a primitive wrapper for {@link TypedMetadata} of {@link Integer},
+	 * {@link Long}, {@link Double} or {@link Boolean}, and an instance of the
+	 * data wrapper class for any other metadata. If another data wrapper class
+	 * has been configured, it is used for all metadata.
+	 * 
+	 * @see #setDataWrapperClass(String)
+	 */
+	public DataWrapper createDataWrapper(final Metadata metadata) {
+		final Creator<DataWrapper> creator = dataWrapper;
+		if (creator.getType() == DefaultDataWrapper.class && metadata instanceof TypedMetadata) {
+			final Class<?> dataClass = ((TypedMetadata) metadata).getDataClass();
+			if (dataClass == Integer.class) {
+				return new DefaultIntDataWrapper();
+			} else if (dataClass == Long.class) {
+				return new DefaultLongDataWrapper();
+			} else if (dataClass == Double.class) {
+				return new DefaultDoubleDataWrapper();
+			} else if (dataClass == Boolean.class) {
+				return new DefaultBooleanDataWrapper();
 			}
-		} catch (final Exception e) {
-			final String msg = "Error creating data wrapper";
-			throw new LongbowException(msg, e);
 		}
+		return creator.create();
 	}
 
 	public Input createInput(final TransformationContext context, final Metadata metadata) {
-		try {
-			synchronized (inputClass) {
-				return inputClass.getConstructor(TransformationContext.class, Metadata.class).newInstance(context, metadata);
-			}
-		} catch (final Exception e) {
-			final String msg = "Error creating input";
-			throw new LongbowException(msg, e);
-		}
+		return input.create(context, metadata);
 	}
 
 	public Output createOutput(final TransformationContext context, final Metadata metadata) {
-		try {
-			synchronized (outputClass) {
-				return outputClass.getConstructor(TransformationContext.class, Metadata.class).newInstance(context, metadata);
-			}
-		} catch (final Exception e) {
-			final String msg = "Error creating output";
-			throw new LongbowException(msg, e);
-		}
+		return output.create(context, metadata);
 	}
 
 	public Runner createRunner(final Workflow workflow) {
-		try {
-			synchronized (runnerClass) {
-				return runnerClass.getConstructor(Workflow.class).newInstance(workflow);
-			}
-		} catch (final Exception e) {
-			final String msg = "Error creating runner";
-			throw new LongbowException(msg, e);
-		}
+		return runner.create(workflow);
 	}
 
 	public TransformationContext createTransformationContext(final Workflow workflow) {
-		try {
-			synchronized (transformationContextClass) {
-				return transformationContextClass.getConstructor(Workflow.class, LongbowFactory.class).newInstance(workflow, this);
-			}
-		} catch (final Exception e) {
-			final String msg = "Error creating transformation context";
-			throw new LongbowException(msg, e);
+		return transformationContext.create(workflow, this);
+	}
+
+	public TransformationContext[] createTransformationContexts(final Workflow workflow, final int count) {
+		final Creator<TransformationContext> creator = transformationContext;
+		final TransformationContext[] contexts = new TransformationContext[count];
+		for (int i = 0; i < count; i++) {
+			contexts[i] = creator.create(workflow, this);
 		}
+		return contexts;
 	}
 
 	public Workflow createWorkflow() {
-		try {
-			synchronized (workflowClass) {
-				return workflowClass.getConstructor(LongbowFactory.class).newInstance(this);
-			}
-		} catch (final Exception e) {
-			final String msg = "Error creating workflow";
-			throw new LongbowException(msg, e);
-		}
+		return workflow.create(this);
 	}
 
 	public String getDataNodeClass() {
-		return dataNodeClass.getCanonicalName();
+		return dataNode.getClassName();
 	}
 
 	public String getDataWrapperClass() {
-		return dataWrapperClass.getCanonicalName();
+		return dataWrapper.getClassName();
 	}
 
 	public String getInputClass() {
-		return inputClass.getCanonicalName();
+		return input.getClassName();
 	}
 
 	public String getOutputClass() {
-		return outputClass.getCanonicalName();
+		return output.getClassName();
 	}
 
 	public String getRunnerClass() {
-		return runnerClass.getCanonicalName();
+		return runner.getClassName();
 	}
 
 	public String getTransformationContextClass() {
-		return transformationContextClass.getCanonicalName();
+		return transformationContext.getClassName();
+	}
+
+	/**
+	 * @return the validation of data written by statically typed producers
+	 */
+	public Validation getValidation() {
+		return validation;
+	}
+
+	/**
+	 * Statically typed producers, with {@link TypedMetadata} on their output,
+	 * are trusted to the configured validation. Values of other producers are
+	 * always checked.
+	 * 
+	 * @see #setValidation(Validation)
+	 */
+	public Validation getValidation(final Metadata metadata) {
+		return metadata instanceof TypedMetadata ? validation : Validation.ALWAYS;
 	}
 
 	public String getWorkflowClass() {
-		return workflowClass.getCanonicalName();
+		return workflow.getClassName();
 	}
 
 	public void setDataNodeClass(final String dataNodeClass) {
-		synchronized (this.dataNodeClass) {
-			this.dataNodeClass = classForName(DataNode.class, dataNodeClass);
-		}
+		dataNode = dataNode.forClass(dataNodeClass);
 	}
 
 	public void setDataWrapperClass(final String dataWrapperClass) {
-		synchronized (this.dataWrapperClass) {
-			this.dataWrapperClass = classForName(DataWrapper.class, dataWrapperClass);
-		}
+		dataWrapper = dataWrapper.forClass(dataWrapperClass);
 	}
 
 	public void setInputClass(final String inputClass) {
-		synchronized (this.inputClass) {
-			this.inputClass = classForName(Input.class, inputClass);
-		}
+		input = input.forClass(inputClass);
 	}
 
 	public void setOutputClass(final String outputClass) {
-		synchronized (this.outputClass) {
-			this.outputClass = classForName(Output.class, outputClass);
-		}
+		output = output.forClass(outputClass);
 	}
 
 	public void setRunnerClass(final String runnerClass) {
-		synchronized (this.runnerClass) {
-			this.runnerClass = classForName(Runner.class, runnerClass);
-		}
+		runner = runner.forClass(runnerClass);
 	}
 
 	public void setTransformationContextClass(final String transformationContextClass) {
-		synchronized (this.transformationContextClass) {
-			this.transformationContextClass = classForName(TransformationContext.class, transformationContextClass);
+		transformationContext = transformationContext.forClass(transformationContextClass);
+	}
+
+	/**
+	 * @param validation
+	 *            the validation of data written by statically typed producers
+	 *            to data nodes created from now on
+	 */
+	public void setValidation(final Validation validation) {
+		if (validation == null) {
+			throw new NullPointerException();
 		}
+		this.validation = validation;
 	}
 
 	public void setWorkflowClass(final String workflowClass) {
-		synchronized (this.workflowClass) {
-			this.workflowClass = classForName(Workflow.class, workflowClass);
-		}
+		workflow = workflow.forClass(workflowClass);
 	}
 
-	private <T> Class<? extends T> classForName(final Class<T> superClass, final String className) {
-		try {
-			final Class<?> cls = Class.forName(className);
-			return cls.asSubclass(superClass);
-		} catch (final ClassNotFoundException e) {
-			throw new LongbowException(e);
-		} catch (final ClassCastException e) {
-			final String msg = className + " is not a subclass of " + superClass.getCanonicalName();
-			throw new LongbowException(msg, e);
+	/**
+	 * The constructor of a configured class, resolved to a
+	 * {@link MethodHandle} that takes and returns {@link Object}s. Creators are
+	 * immutable, so a new class can be configured while other threads create
+	 * instances.
+	 */
+	private static final class Creator<T> {
+
+		private final Class<T> superClass;
+
+		private final Class<? extends T> type;
+
+		private final Class<?>[] parameterTypes;
+
+		private final MethodHandle constructor;
+
+		Creator(final Class<T> superClass, final Class<? extends T> type, final Class<?>... parameterTypes) {
+			this.superClass = superClass;
+			this.type = type;
+			this.parameterTypes = parameterTypes;
+			if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+				throw new LongbowException(type.getName() + " can't be instantiated");
+			}
+			try {
+				constructor = MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class, parameterTypes)).asType(MethodType.genericMethodType(parameterTypes.length));
+			} catch (final NoSuchMethodException e) {
+				throw new LongbowException(type.getName() + " has no suitable public constructor", e);
+			} catch (final IllegalAccessException e) {
+				throw new LongbowException(type.getName() + " has no suitable public constructor", e);
+			}
+		}
+
+		T create() {
+			try {
+				return superClass.cast(constructor.invokeExact());
+			} catch (final Throwable e) {
+				throw failed(e);
+			}
+		}
+
+		T create(final Object argument) {
+			try {
+				return superClass.cast(constructor.invokeExact(argument));
+			} catch (final Throwable e) {
+				throw failed(e);
+			}
+		}
+
+		T create(final Object first, final Object second) {
+			try {
+				return superClass.cast(constructor.invokeExact(first, second));
+			} catch (final Throwable e) {
+				throw failed(e);
+			}
+		}
+
+		/**
+		 * @return a creator for the same kind of objects, of another class
+		 */
+		Creator<T> forClass(final String className) {
+			try {
+				final Class<?> cls = Class.forName(className);
+				return new Creator<T>(superClass, cls.asSubclass(superClass), parameterTypes);
+			} catch (final ClassNotFoundException e) {
+				throw new LongbowException(e);
+			} catch (final ClassCastException e) {
+				final String msg = className + " is not a subclass of " + superClass.getCanonicalName();
+				throw new LongbowException(msg, e);
+			}
 		}
-	}
 
+		String getClassName() {
+			return type.getCanonicalName();
+		}
+
+		Class<? extends T> getType() {
+			return type;
+		}
+
+		private RuntimeException failed(final Throwable e) {
+			if (e instanceof Error) {
+				throw (Error) e;
+			}
+			final String msg = "Error creating " + superClass.getSimpleName() + " " + type.getName();
+			return new LongbowException(msg, e);
+		}
+	}
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import java.util.List;
+
+import longbow.ResultCache;
+import longbow.util.LruCache;
+
+/**
+ * A {@link ResultCache} that evicts the least recently used results.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class DefaultResultCache extends LruCache<List<Object>, Object[]> implements ResultCache {
+
+	/**
+	 * @param capacity
+	 *            the maximum number of results in the cache
+	 */
+	public DefaultResultCache(final int capacity) {
+		super(capacity);
+	}
+
+	/**
+	 * @param budget
+	 *            the maximum total weight of the results in the cache
+	 * @param weigher
+	 *            computes the weight of every result
+	 */
+	public DefaultResultCache(final long budget, final Weigher<? super List<Object>, ? super Object[]> weigher) {
+		super(budget, weigher);
+	}
+}
@@ -21,6 +21,7 @@ package longbow.core;
 import static longbow.Mode.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import longbow.LongbowException;
@@ -50,12 +51,19 @@ public class DefaultRunner extends AbstractRunner {
 		}
 		final MarkAndSweepSupport marksweep = markAndSweeps.get(tcontext);
 		if (workflow.getMode() == RUN) {
-			marksweep.fireMarking();
+			if (!marksweep.isValid() && !marksweep.isValidating()) {
+				// already invalid, and so are all of its followers: a sweep
+				// never validates a context whose precursors are invalid.
+				// Without this, a mark visits every path instead of every
+				// connection, which is exponential in stacked diamonds.
+				return;
+			}
+			final long epoch = marksweep.beginMark();
 			for (final TransformationContext context : workflow.getFollowers(tcontext)) {
 				context.mark();
 			}
 
-			marksweep.fireMarked();
+			marksweep.endMark(epoch);
 		}
 	}
 
@@ -63,33 +71,51 @@ public class DefaultRunner extends AbstractRunner {
 		if (!running) {
 			return;
 		}
-		// MarkAndSweepSupport.lastEvent is declared volatile for this purpose
 		final MarkAndSweepSupport marksweep = markAndSweeps.get(tcontext);
-		if (workflow.getMode() == RUN && !marksweep.isValid()) {
-			synchronized (marksweep) {
-				if (!marksweep.isValidating() && !marksweep.isValid()) {
-					marksweep.fireSweeping();
-					// prepare a soft landing in case all hell breaks loose
-					try {
-						for (final TransformationContext context : workflow.getPrecursors(tcontext)) {
-							context.sweep();
-						}
-
-						tcontext.executeTransformation();
-
-						if (!marksweep.isValid()) {
-							marksweep.fireSwept();
-						}
-					} catch (final LongbowException e) {
-						// easy now, we don't want this runner to become inconsistent.
-						// Make sure everybody agrees about validity
-						//						marksweep.fireSweepInterrupted();
-						// TODO: Observer pattern for exception handlers
-						// Don't throw anything that might not get caught.
-						final String msg = "Error while sweeping";
-						logger.error(msg, e);
-					}
+		if (workflow.getMode() != RUN || marksweep.isValid()) {
+			return;
+		}
+		long epoch = MarkAndSweepSupport.NOT_CLAIMED;
+		// prepare a soft landing in case all hell breaks loose
+		try {
+			// claim the context before its precursors are swept, so that a mark
+			// in between can't validate it with stale inputs
+			epoch = marksweep.tryClaim();
+			while (epoch == MarkAndSweepSupport.NOT_CLAIMED) {
+				if (marksweep.isValid()) {
+					return;
 				}
+				// another thread executes the context: help with its
+				// precursors instead of blocking, then wait for it to finish
+				sweepPrecursors(tcontext);
+				marksweep.awaitSweep();
+				epoch = marksweep.tryClaim();
+			}
+			sweepPrecursors(tcontext);
+			if (!isSwept(workflow.getPrecursors(tcontext))) {
+				// a precursor failed or has been marked again. Executing now
+				// would validate this context with stale inputs.
+				return;
+			}
+
+			execute(tcontext);
+
+			final long claimed = epoch;
+			epoch = MarkAndSweepSupport.NOT_CLAIMED;
+			if (!marksweep.swept(claimed) && logger.isTraceEnabled()) {
+				logger.trace("A mark overtook the sweep of " + tcontext);
+			}
+		} catch (final LongbowException e) {
+			// TODO: Observer pattern for exception handlers
+			// Don't throw anything that might not get caught.
+			final String msg = "Error while sweeping";
+			logger.error(msg, e);
+		} finally {
+			// easy now, we don't want this runner to become inconsistent.
+			// Whatever went wrong, give up the claim, so that the context
+			// stays invalid and the next sweep retries it.
+			if (epoch != MarkAndSweepSupport.NOT_CLAIMED) {
+				marksweep.abandon(epoch);
 			}
 		}
 	}
@@ -115,4 +141,39 @@ public class DefaultRunner extends AbstractRunner {
 	@Override
 	protected void doStop(final TransformationContext context) {
 	}
+
+	/**
+	 * Executes a context that has been claimed for a sweep, after its
+	 * precursors have been swept.
+	 * 
+	 * @param tcontext
+	 *            the context to execute
+	 */
+	protected void execute(final TransformationContext tcontext) {
+		tcontext.executeTransformation();
+	}
+
+	/**
+	 * Sweeps the direct precursors of a context one after the other.
+	 * 
+	 * @param tcontext
+	 *            the context of which the precursors are swept
+	 */
+	protected void sweepPrecursors(final TransformationContext tcontext) {
+		for (final TransformationContext context : workflow.getPrecursors(tcontext)) {
+			context.sweep();
+		}
+	}
+
+	/**
+	 * @return whether all of the contexts are valid
+	 */
+	private boolean isSwept(final List<TransformationContext> contexts) {
+		for (final TransformationContext context : contexts) {
+			if (!markAndSweeps.get(context).isValid()) {
+				return false;
+			}
+		}
+		return true;
+	}
 }
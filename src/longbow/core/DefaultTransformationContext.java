@@ -19,12 +19,13 @@ package longbow.core;
 
 
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
 
 import longbow.*;
-import longbow.util.CompositeIterable;
 
 /**
  * 
@@ -50,6 +51,33 @@ public class DefaultTransformationContext implements TransformationContext {
 
 	private final LongbowFactory factory;
 
+	/**
+	 * The index of this context in the {@link ExecutionPlan} of its workflow,
+	 * or {@code -1}.
+	 */
+	int planIndex = -1;
+
+	/**
+	 * All inputs and outputs, or {@code null} if the ports have changed.
+	 */
+	private Port[] ports;
+
+	/**
+	 * The ids of the inputs, sorted. The index of an id is its slot.
+	 */
+	private String[] inputSlots;
+
+	private DataWrapper[] inputWrappers;
+
+	/**
+	 * The ids of the outputs, sorted. The index of an id is its slot.
+	 */
+	private String[] outputSlots;
+
+	private DataWrapper[] outputWrappers;
+
+	private volatile ResultCache resultCache;
+
 	public DefaultTransformationContext(final Workflow workflow, final LongbowFactory factory) {
 		this.factory = factory;
 		contextListeners = new WeakHashMap<ContextListener, Object>();
@@ -70,6 +98,7 @@ public class DefaultTransformationContext implements TransformationContext {
 		}
 		if (inputid != null && metadata != null && !inputs.containsKey(inputid)) {
 			inputs.put(inputid, factory.createInput(this, metadata));
+			ports = null;
 			fireContextChanged();
 		}
 
@@ -81,6 +110,7 @@ public class DefaultTransformationContext implements TransformationContext {
 		}
 		if (outputid != null && metadata != null && !outputs.containsKey(outputid)) {
 			outputs.put(outputid, factory.createOutput(this, metadata));
+			ports = null;
 			fireContextChanged();
 		}
 	}
@@ -90,32 +120,39 @@ public class DefaultTransformationContext implements TransformationContext {
 			return;
 		}
 		synchronized (transformation) {
-			transformation.importData();
-			transformation.processData();
-			transformation.exportData();
+			transform(transformation);
 		}
 	}
 
+	/**
+	 * Executes the transformation without checking the mode of the workflow
+	 * and without locking it. Only for runners that already guarantee that
+	 * the workflow is running and that the transformation is not executed
+	 * concurrently.
+	 */
+	void runTransformation() {
+		transform(transformation);
+	}
+
 	public void fireContextChanged() {
 		final ContextEvent event = new ContextEvent(this);
 		transformation.contextChange(event);
-		for (final ContextListener listener : contextListeners.keySet()) {
-			if (listener != transformation) {
-				listener.contextChange(event);
-			}
+		final Workflow wf = getWorkflow();
+		// in a batch, the workflow notifies the listeners when it is closed
+		if (!wf.isBatching()) {
+			notifyContextChanged(event);
 		}
-		getWorkflow().fireContextChanged(event);
+		wf.fireContextChanged(event);
 	}
 
 	public void fireRemoved() {
 		final ContextEvent event = new ContextEvent(this);
 		transformation.contextRemoved(event);
-		for (final ContextListener listener : contextListeners.keySet()) {
-			if (listener != transformation) {
-				listener.contextRemoved(event);
-			}
+		final Workflow wf = getWorkflow();
+		if (!wf.isBatching()) {
+			notifyRemoved(event);
 		}
-		getWorkflow().fireRemoved(event);
+		wf.fireRemoved(event);
 	}
 
 	public Input getInput(final String inputid) {
@@ -132,6 +169,19 @@ public class DefaultTransformationContext implements TransformationContext {
 		return inputs.get(inputid).getConnection().getDataWrapper();
 	}
 
+	public int getInputSlot(final String inputid) {
+		final String[] slots = inputSlots;
+		if (slots == null || inputid == null) {
+			return -1;
+		}
+		final int slot = Arrays.binarySearch(slots, inputid);
+		return slot < 0 ? -1 : slot;
+	}
+
+	public DataWrapper getInputWrapper(final int slot) {
+		return inputWrappers[slot];
+	}
+
 	public Output getOutput(final String outputid) {
 		if (!designMode()) {
 			return null;
@@ -150,6 +200,42 @@ public class DefaultTransformationContext implements TransformationContext {
 		return outputs.get(outputid).getConnection().getDataWrapper();
 	}
 
+	public int getOutputSlot(final String outputid) {
+		final String[] slots = outputSlots;
+		if (slots == null || outputid == null) {
+			return -1;
+		}
+		final int slot = Arrays.binarySearch(slots, outputid);
+		return slot < 0 ? -1 : slot;
+	}
+
+	public DataWrapper getOutputWrapper(final int slot) {
+		return outputWrappers[slot];
+	}
+
+	/**
+	 * @return the number of output slots, or {@code 0} if the context is not
+	 *         executing
+	 */
+	int getOutputSlotCount() {
+		return outputWrappers == null ? 0 : outputWrappers.length;
+	}
+
+	public ResultCache getResultCache() {
+		return resultCache;
+	}
+
+	public Runner getRunner() {
+		return runner;
+	}
+
+	/**
+	 * @return the transformation in this context
+	 */
+	Transformation getTransformation() {
+		return transformation;
+	}
+
 	public Workflow getWorkflow() {
 		return workflow.get();
 	}
@@ -166,13 +252,23 @@ public class DefaultTransformationContext implements TransformationContext {
 		return outputs.containsKey(outputid);
 	}
 
-	@SuppressWarnings("unchecked")
 	public boolean isExecutable() {
 		// the contained transformation must be executable
 		boolean executable = transformation.isExecutable();
 		// only optional ports can be unconnected
 		if (executable) {
-			final Iterable<Port> ports = new CompositeIterable<Port>(inputs.values(), outputs.values());
+			Port[] ports = this.ports;
+			if (ports == null) {
+				ports = new Port[inputs.size() + outputs.size()];
+				int i = 0;
+				for (final Port port : inputs.values()) {
+					ports[i++] = port;
+				}
+				for (final Port port : outputs.values()) {
+					ports[i++] = port;
+				}
+				this.ports = ports;
+			}
 			for (final Port port : ports) {
 				if (!port.isOptional() && !port.isConnected()) {
 					executable = false;
@@ -200,6 +296,7 @@ public class DefaultTransformationContext implements TransformationContext {
 			return;
 		}
 		inputs.remove(inputid);
+		ports = null;
 	}
 
 	public void removeOutput(final String outputid) {
@@ -207,6 +304,7 @@ public class DefaultTransformationContext implements TransformationContext {
 			return;
 		}
 		outputs.remove(outputid);
+		ports = null;
 	}
 
 	public void setRunner(final Runner runner) {
@@ -216,12 +314,20 @@ public class DefaultTransformationContext implements TransformationContext {
 		this.runner = runner;
 	}
 
+	public void setResultCache(final ResultCache cache) {
+		if (!designMode()) {
+			return;
+		}
+		resultCache = cache;
+	}
+
 	public void setTransformation(final Transformation transformation) {
 		if (!designMode()) {
 			return;
 		}
 		inputs.clear();
 		outputs.clear();
+		ports = null;
 		this.transformation = transformation;
 		fireAddToContext();
 	}
@@ -230,6 +336,21 @@ public class DefaultTransformationContext implements TransformationContext {
 		if (runMode() || designMode()) {
 			return;
 		}
+		// resolve the ports to slots once, before the transformation needs them
+		inputSlots = inputs.keySet().toArray(new String[inputs.size()]);
+		Arrays.sort(inputSlots);
+		inputWrappers = new DataWrapper[inputSlots.length];
+		for (int i = 0; i < inputSlots.length; i++) {
+			final DataNode node = inputs.get(inputSlots[i]).getConnection();
+			inputWrappers[i] = node == null ? null : node.getDataWrapper();
+		}
+		outputSlots = outputs.keySet().toArray(new String[outputs.size()]);
+		Arrays.sort(outputSlots);
+		outputWrappers = new DataWrapper[outputSlots.length];
+		for (int i = 0; i < outputSlots.length; i++) {
+			final DataNode node = outputs.get(outputSlots[i]).getConnection();
+			outputWrappers[i] = node == null ? null : node.getDataWrapper();
+		}
 		transformation.startExecution(this);
 	}
 
@@ -238,6 +359,10 @@ public class DefaultTransformationContext implements TransformationContext {
 			return;
 		}
 		transformation.stopExecution();
+		inputSlots = null;
+		inputWrappers = null;
+		outputSlots = null;
+		outputWrappers = null;
 	}
 
 	public void sweep() {
@@ -260,12 +385,81 @@ public class DefaultTransformationContext implements TransformationContext {
 	private void fireAddToContext() {
 		final ContextEvent event = new ContextEvent(this);
 		transformation.addToContext(event);
+		final Workflow wf = getWorkflow();
+		if (!wf.isBatching()) {
+			notifyAddToContext(event);
+		}
+		wf.fireAddToContext(event);
+	}
+
+	/**
+	 * Notifies the listeners of this context, except the transformation.
+	 */
+	void notifyAddToContext(final ContextEvent event) {
 		for (final ContextListener listener : contextListeners.keySet()) {
 			if (listener != transformation) {
 				listener.addToContext(event);
 			}
 		}
-		getWorkflow().fireAddToContext(event);
+	}
+
+	/**
+	 * Notifies the listeners of this context, except the transformation.
+	 */
+	void notifyContextChanged(final ContextEvent event) {
+		for (final ContextListener listener : contextListeners.keySet()) {
+			if (listener != transformation) {
+				listener.contextChange(event);
+			}
+		}
+	}
+
+	/**
+	 * Notifies the listeners of this context, except the transformation.
+	 */
+	void notifyRemoved(final ContextEvent event) {
+		for (final ContextListener listener : contextListeners.keySet()) {
+			if (listener != transformation) {
+				listener.contextRemoved(event);
+			}
+		}
+	}
+
+	/**
+	 * Executes the transformation, or takes its results from the result cache.
+	 */
+	private void transform(final Transformation t) {
+		final ResultCache cache = resultCache;
+		final DataWrapper[] in = inputWrappers;
+		final DataWrapper[] out = outputWrappers;
+		if (cache == null || in == null) {
+			t.importData();
+			t.processData();
+			t.exportData();
+			return;
+		}
+		final Object[] values = new Object[in.length];
+		for (int i = 0; i < in.length; i++) {
+			values[i] = in[i] == null ? null : in[i].getData();
+		}
+		final List<Object> key = Arrays.asList(values);
+		final Object[] results = cache.get(key);
+		if (results != null) {
+			for (int i = 0; i < out.length; i++) {
+				if (out[i] != null) {
+					out[i].setData(results[i]);
+				}
+			}
+			return;
+		}
+		t.importData();
+		t.processData();
+		t.exportData();
+		final Object[] exported = new Object[out.length];
+		for (int i = 0; i < out.length; i++) {
+			exported[i] = out[i] == null ? null : out[i].getData();
+		}
+		cache.put(key, exported);
 	}
 
 	private boolean runMode() {
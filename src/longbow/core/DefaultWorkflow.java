@@ -19,6 +19,9 @@ package longbow.core;
 
 
 import static longbow.Mode.*;
+
+import java.util.Collection;
+
 import longbow.LongbowFactory;
 import longbow.Mode;
 import longbow.Runner;
@@ -40,6 +43,12 @@ public class DefaultWorkflow extends AbstractWorkflow {
 	 */
 	private Runner runner;
 
+	/**
+	 * The compiled graph of this {@link Workflow}, once a runner asked for it
+	 * while it is running.
+	 */
+	private ExecutionPlan plan;
+
 	public DefaultWorkflow() {
 		this(new DefaultLongbowFactory());
 	}
@@ -63,6 +72,24 @@ public class DefaultWorkflow extends AbstractWorkflow {
 		return false;
 	}
 
+	/**
+	 * The plan is compiled the first time it is asked for after the workflow
+	 * started running, so runners that don't need it don't pay for it. The
+	 * graph can't change anymore until the workflow is terminated.
+	 * 
+	 * @return the {@link ExecutionPlan} of this running workflow, or
+	 *         {@code null} in design mode.
+	 */
+	public synchronized ExecutionPlan getExecutionPlan() {
+		if (mode == DESIGN) {
+			return null;
+		}
+		if (plan == null) {
+			plan = ExecutionPlan.compile(this);
+		}
+		return plan;
+	}
+
 	public boolean isExecutable() {
 		boolean executable = !transformations.isEmpty();
 		if (executable) {
@@ -76,10 +103,19 @@ public class DefaultWorkflow extends AbstractWorkflow {
 		return executable;
 	}
 
+	public void markAll(final Collection<? extends TransformationContext> contexts) {
+		if (mode == RUN) {
+			runner.markAll(contexts);
+		}
+	}
+
 	public void terminate() {
 		mode = Mode.END_RUN;
 		runner.stop();
-		mode = DESIGN;
+		synchronized (this) {
+			plan = null;
+			mode = DESIGN;
+		}
 	}
 
 }
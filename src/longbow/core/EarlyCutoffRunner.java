@@ -0,0 +1,253 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import java.util.Arrays;
+
+import longbow.DataWrapper;
+import longbow.OutputEquivalence;
+import longbow.Transformation;
+import longbow.TransformationContext;
+import longbow.Workflow;
+
+/**
+ * A {@link PlanRunner} with early cutoff: a context that exports the same
+ * values as before does not cause its followers to be executed again.
+ * 
+ * A mark makes the marked context dirty, and its followers only possibly
+ * invalid. A sweep executes dirty contexts. A possibly invalid context is only
+ * executed if one of its precursors has exported changed values since it was
+ * last validated. Otherwise it becomes valid without executing it.
+ * 
+ * Whether a value has changed is decided by the {@link Cutoff} of the runner,
+ * unless the {@link Transformation} implements {@link OutputEquivalence}.
+ * Values are compared with what the context exported the previous time, so
+ * transformations that modify an exported object in place must implement
+ * {@link OutputEquivalence} to report the change. Contexts that are not a
+ * {@link DefaultTransformationContext} always count as changed.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class EarlyCutoffRunner extends PlanRunner {
+
+	/**
+	 * How exported values are compared with the previous ones.
+	 */
+	public enum Cutoff {
+		/**
+		 * Only the same object is the same value.
+		 */
+		IDENTITY,
+		/**
+		 * Equal objects are the same value.
+		 */
+		EQUALS;
+	}
+
+	/**
+	 * The previous value of an output that has never been exported
+	 */
+	private static final Object NONE = new Object();
+
+	private volatile Cutoff cutoff = Cutoff.EQUALS;
+
+	/**
+	 * for each context, the values it exported the last time
+	 */
+	private Object[][] exported;
+
+	/**
+	 * for each context, the revision at which its exported values last changed
+	 */
+	private long[] changed;
+
+	/**
+	 * for each context, the revision at which it was last validated
+	 */
+	private long[] verified;
+
+	private long revision;
+
+	private long executions;
+
+	private long cutoffs;
+
+	public EarlyCutoffRunner(final Workflow workflow) {
+		super(workflow);
+	}
+
+	/**
+	 * @param cutoff
+	 *            how exported values are compared
+	 */
+	public EarlyCutoffRunner(final Workflow workflow, final Cutoff cutoff) {
+		super(workflow);
+		if (cutoff == null) {
+			throw new IllegalArgumentException("cutoff must not be null");
+		}
+		this.cutoff = cutoff;
+	}
+
+	/**
+	 * @return how exported values are compared
+	 */
+	public Cutoff getCutoff() {
+		return cutoff;
+	}
+
+	/**
+	 * @param cutoff
+	 *            how exported values are compared from now on
+	 */
+	public void setCutoff(final Cutoff cutoff) {
+		if (cutoff == null) {
+			throw new IllegalArgumentException("cutoff must not be null");
+		}
+		this.cutoff = cutoff;
+	}
+
+	/**
+	 * @return the number of transformations executed since the runner started
+	 */
+	public synchronized long getExecutions() {
+		return executions;
+	}
+
+	/**
+	 * @return the number of possibly invalid contexts that were validated
+	 *         without executing them, since the runner started
+	 */
+	public synchronized long getCutoffs() {
+		return cutoffs;
+	}
+
+	/**
+	 * Executes a dirty context, or a possibly invalid context of which a
+	 * precursor has changed. Other contexts become valid without executing
+	 * them.
+	 */
+	@Override
+	protected void validate(final int index) {
+		if (states[index] == DIRTY || precursorChanged(index)) {
+			execute(index);
+		} else {
+			states[index] = VALID;
+			verified[index] = revision;
+			cutoffs++;
+		}
+	}
+
+	@Override
+	protected boolean execute(final int index) {
+		if (!super.execute(index)) {
+			return false;
+		}
+		executions++;
+		if (exportChanged(index, getExecutionPlan().contexts[index])) {
+			changed[index] = ++revision;
+		}
+		verified[index] = revision;
+		return true;
+	}
+
+	@Override
+	protected boolean doStart() {
+		if (!super.doStart()) {
+			return false;
+		}
+		final int size = getExecutionPlan().size();
+		exported = new Object[size][];
+		changed = new long[size];
+		verified = new long[size];
+		revision = 0L;
+		executions = 0L;
+		cutoffs = 0L;
+		return true;
+	}
+
+	@Override
+	protected boolean doStart(final TransformationContext context, final int index) {
+		if (!super.doStart(context, index)) {
+			return false;
+		}
+		// the context has already started executing, so its slots are known
+		if (context instanceof DefaultTransformationContext) {
+			final Object[] values = new Object[((DefaultTransformationContext) context).getOutputSlotCount()];
+			Arrays.fill(values, NONE);
+			exported[index] = values;
+		}
+		return true;
+	}
+
+	@Override
+	protected void doStop() {
+		super.doStop();
+		exported = null;
+		changed = null;
+		verified = null;
+	}
+
+	private boolean precursorChanged(final int index) {
+		final long since = verified[index];
+		for (final int precursor : getExecutionPlan().precursors[index]) {
+			if (changed[precursor] > since) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Compares the exported values with the previous ones and remembers them.
+	 */
+	private boolean exportChanged(final int index, final TransformationContext context) {
+		final Object[] previous = exported[index];
+		if (previous == null) {
+			// not a default context
+			return true;
+		}
+		final Transformation transformation = ((DefaultTransformationContext) context).getTransformation();
+		final OutputEquivalence equivalence = transformation instanceof OutputEquivalence ? (OutputEquivalence) transformation : null;
+		final boolean equals = cutoff == Cutoff.EQUALS;
+		boolean result = false;
+		for (int slot = 0; slot < previous.length; slot++) {
+			final DataWrapper wrapper = context.getOutputWrapper(slot);
+			if (wrapper == null) {
+				// nothing can read an unconnected output
+				continue;
+			}
+			final Object value = wrapper.getData();
+			final Object old = previous[slot];
+			final boolean same;
+			if (old == NONE) {
+				same = false;
+			} else if (equivalence != null) {
+				same = equivalence.isEquivalent(slot, old, value);
+			} else {
+				same = old == value || equals && value != null && value.equals(old);
+			}
+			if (!same) {
+				previous[slot] = value;
+				result = true;
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import gnu.trove.TIntArrayList;
+import gnu.trove.TObjectIntHashMap;
+
+import java.util.List;
+
+import longbow.TransformationContext;
+import longbow.Workflow;
+
+/**
+ * A flat, immutable image of the graph of a {@link Workflow}, for runners that
+ * execute it.
+ * 
+ * The contexts of the workflow are numbered in partial order, so precursors
+ * always have a smaller index than their followers. Precursors and followers
+ * are stored as arrays of indices. A runner can keep the state of every
+ * context in primitive arrays with the same indices, and doesn't need to
+ * look anything up in a map while marking and sweeping.
+ * 
+ * A plan is only valid for the graph it was compiled from. It is compiled
+ * when a {@link DefaultWorkflow} starts running, when its graph can't change
+ * anymore.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public final class ExecutionPlan {
+
+	final TransformationContext[] contexts;
+
+	final int[][] precursors;
+
+	final int[][] followers;
+
+	private final TObjectIntHashMap<TransformationContext> indices;
+
+	private ExecutionPlan(final TransformationContext[] contexts, final int[][] precursors, final int[][] followers, final TObjectIntHashMap<TransformationContext> indices) {
+		this.contexts = contexts;
+		this.precursors = precursors;
+		this.followers = followers;
+		this.indices = indices;
+	}
+
+	/**
+	 * @return the number of contexts in the plan
+	 */
+	public int size() {
+		return contexts.length;
+	}
+
+	/**
+	 * @param index
+	 *            the index of a context
+	 * @return the context with the given index
+	 */
+	public TransformationContext getContext(final int index) {
+		return contexts[index];
+	}
+
+	/**
+	 * Finds the index of a context. For a {@link DefaultTransformationContext},
+	 * this doesn't need a lookup.
+	 * 
+	 * @param context
+	 *            a context
+	 * @return the index of the context, or {@code -1} if it is not in the
+	 *         plan.
+	 */
+	public int indexOf(final TransformationContext context) {
+		if (context instanceof DefaultTransformationContext) {
+			final int index = ((DefaultTransformationContext) context).planIndex;
+			if (index >= 0 && index < contexts.length && contexts[index] == context) {
+				return index;
+			}
+		}
+		return indices.containsKey(context) ? indices.get(context) : -1;
+	}
+
+	/**
+	 * @param index
+	 *            the index of a context
+	 * @return the indices of the direct precursors of the context
+	 */
+	public int[] getPrecursors(final int index) {
+		return precursors[index].clone();
+	}
+
+	/**
+	 * @param index
+	 *            the index of a context
+	 * @return the indices of the direct followers of the context
+	 */
+	public int[] getFollowers(final int index) {
+		return followers[index].clone();
+	}
+
+	/**
+	 * Compiles the current graph of a workflow.
+	 * 
+	 * @param workflow
+	 *            the workflow to compile
+	 * @return the plan
+	 */
+	public static ExecutionPlan compile(final Workflow workflow) {
+		final int size = workflow.size();
+		final TransformationContext[] contexts = new TransformationContext[size];
+		final TObjectIntHashMap<TransformationContext> indices = new TObjectIntHashMap<TransformationContext>(size);
+		int index = 0;
+		for (final TransformationContext context : workflow) {
+			contexts[index] = context;
+			indices.put(context, index);
+			if (context instanceof DefaultTransformationContext) {
+				((DefaultTransformationContext) context).planIndex = index;
+			}
+			index++;
+		}
+		final int[][] precursors = new int[size][];
+		final TIntArrayList[] followerLists = new TIntArrayList[size];
+		for (int i = 0; i < size; i++) {
+			followerLists[i] = new TIntArrayList();
+		}
+		for (int i = 0; i < size; i++) {
+			final List<TransformationContext> p = workflow.getPrecursors(contexts[i]);
+			precursors[i] = new int[p.size()];
+			int j = 0;
+			for (final TransformationContext precursor : p) {
+				final int preIndex = indices.get(precursor);
+				precursors[i][j++] = preIndex;
+				followerLists[preIndex].add(i);
+			}
+		}
+		final int[][] followers = new int[size][];
+		for (int i = 0; i < size; i++) {
+			followers[i] = followerLists[i].toNativeArray();
+		}
+		return new ExecutionPlan(contexts, precursors, followers, indices);
+	}
+}
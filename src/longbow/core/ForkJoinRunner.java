@@ -0,0 +1,263 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import static longbow.Mode.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import longbow.LongbowException;
+import longbow.TransformationContext;
+import longbow.Workflow;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link DefaultRunner} that sweeps independent precursors of a
+ * {@link TransformationContext} in parallel on a {@link ForkJoinPool}.
+ * 
+ * Marks are handled exactly like in {@link DefaultRunner}. A sweep forks one
+ * task for every invalid precursor and joins them before the context itself is
+ * executed. Each context has at most one sweep task per sweep epoch: other
+ * sweeps that need the same context join the task that is already running
+ * instead of executing the transformation a second time.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class ForkJoinRunner extends DefaultRunner {
+
+	private static final Logger logger = Logger.getLogger(ForkJoinRunner.class);
+
+	private final ForkJoinPool pool;
+
+	private Map<TransformationContext, SweepNode> nodes;
+
+	public ForkJoinRunner(final Workflow workflow) {
+		this(workflow, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * @param workflow
+	 *            the {@link Workflow} to run
+	 * @param pool
+	 *            the pool that executes the sweep tasks
+	 */
+	public ForkJoinRunner(final Workflow workflow, final ForkJoinPool pool) {
+		super(workflow);
+		this.pool = pool;
+	}
+
+	@Override
+	public Executor getExecutor() {
+		return pool;
+	}
+
+	@Override
+	public void sweep(final TransformationContext tcontext) {
+		if (!running || workflow.getMode() != RUN) {
+			return;
+		}
+		final SweepNode node = nodes.get(tcontext);
+		final SweepTask task = node.claim();
+		if (task == null) {
+			return;
+		}
+		if (task.start()) {
+			pool.invoke(task);
+		} else {
+			task.join();
+		}
+	}
+
+	@Override
+	protected boolean doStart() {
+		nodes = new HashMap<TransformationContext, SweepNode>();
+		return super.doStart();
+	}
+
+	@Override
+	protected boolean doStart(final TransformationContext context, final int index) {
+		if (!super.doStart(context, index)) {
+			return false;
+		}
+		// contexts are started in partial order, so all precursors are known
+		final List<TransformationContext> precursors = workflow.getPrecursors(context);
+		final SweepNode[] precursorNodes = new SweepNode[precursors.size()];
+		int i = 0;
+		for (final TransformationContext precursor : precursors) {
+			precursorNodes[i++] = nodes.get(precursor);
+		}
+		nodes.put(context, new SweepNode(context, markAndSweeps.get(context), precursorNodes));
+		return true;
+	}
+
+	@Override
+	protected void doStop() {
+		super.doStop();
+		nodes.clear();
+		nodes = null;
+	}
+
+	/**
+	 * The sweep state of one {@link TransformationContext}: its
+	 * {@link MarkAndSweepSupport}, its direct precursors and the sweep task of
+	 * the current epoch, if any.
+	 */
+	private static final class SweepNode {
+
+		final TransformationContext context;
+
+		final MarkAndSweepSupport marksweep;
+
+		final SweepNode[] precursors;
+
+		/**
+		 * Guarded by {@link #marksweep}.
+		 */
+		private SweepTask task;
+
+		SweepNode(final TransformationContext context, final MarkAndSweepSupport marksweep, final SweepNode[] precursors) {
+			this.context = context;
+			this.marksweep = marksweep;
+			this.precursors = precursors;
+		}
+
+		/**
+		 * @return the sweep task of the current epoch, or {@code null} if the
+		 *         context is valid and does not need to be swept.
+		 */
+		SweepTask claim() {
+			synchronized (marksweep) {
+				if (task == null) {
+					// without a task, nobody executes the context
+					final long epoch = marksweep.tryClaim();
+					if (epoch == MarkAndSweepSupport.NOT_CLAIMED) {
+						return null;
+					}
+					task = new SweepTask(this, epoch);
+				}
+				return task;
+			}
+		}
+
+		void release(final SweepTask finished) {
+			synchronized (marksweep) {
+				// a mark may have overtaken this sweep; then stay invalid
+				marksweep.swept(finished.epoch);
+				if (task == finished) {
+					task = null;
+				}
+			}
+		}
+
+		/**
+		 * @return whether all direct precursors are valid
+		 */
+		boolean isPrecursorsValid() {
+			for (final SweepNode precursor : precursors) {
+				if (!precursor.marksweep.isValid()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		void abandon(final SweepTask failed) {
+			synchronized (marksweep) {
+				// mark the context again, just like DefaultRunner does
+				marksweep.abandon(failed.epoch);
+				if (task == failed) {
+					task = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sweeps the precursors of a context in parallel, then executes the
+	 * context.
+	 */
+	private static final class SweepTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 4409046127712815309L;
+
+		private final transient SweepNode node;
+
+		private final long epoch;
+
+		private final AtomicBoolean started;
+
+		SweepTask(final SweepNode node, final long epoch) {
+			this.node = node;
+			this.epoch = epoch;
+			started = new AtomicBoolean(false);
+		}
+
+		/**
+		 * @return {@code true} for exactly one caller, which must fork or
+		 *         invoke this task. Others can only join it.
+		 */
+		boolean start() {
+			return started.compareAndSet(false, true);
+		}
+
+		@Override
+		protected void compute() {
+			boolean released = false;
+			try {
+				final List<SweepTask> forked = new ArrayList<SweepTask>(node.precursors.length);
+				for (final SweepNode precursor : node.precursors) {
+					final SweepTask task = precursor.claim();
+					if (task != null) {
+						if (task.start()) {
+							task.fork();
+						}
+						forked.add(task);
+					}
+				}
+				for (final SweepTask task : forked) {
+					task.join();
+				}
+				if (!node.isPrecursorsValid()) {
+					// a precursor failed or has been marked again, so the
+					// inputs are stale
+					return;
+				}
+				node.context.executeTransformation();
+				node.release(this);
+				released = true;
+			} catch (final LongbowException e) {
+				final String msg = "Error while sweeping";
+				logger.error(msg, e);
+			} finally {
+				if (!released) {
+					node.abandon(this);
+				}
+			}
+		}
+	}
+}
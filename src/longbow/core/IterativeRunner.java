@@ -0,0 +1,337 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import static longbow.Mode.*;
+import gnu.trove.TIntArrayList;
+import gnu.trove.TObjectIntHashMap;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import longbow.LongbowException;
+import longbow.TransformationContext;
+import longbow.Workflow;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link longbow.Runner} with the same semantics as {@link DefaultRunner},
+ * that does not recurse through {@link TransformationContext#mark()} and
+ * {@link TransformationContext#sweep()}.
+ * 
+ * Contexts are numbered in partial order when the runner starts. A mark walks
+ * the followers with an explicit work list, a sweep collects the invalid
+ * precursors the same way and then executes them by ascending index, which
+ * guarantees that precursors are executed before their followers. The depth
+ * of a {@link Workflow} is therefore only limited by the heap, not by the
+ * thread stack.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class IterativeRunner extends AbstractRunner {
+
+	private static final Logger logger = Logger.getLogger(IterativeRunner.class);
+
+	private TObjectIntHashMap<TransformationContext> indices;
+
+	private TransformationContext[] contexts;
+
+	private MarkAndSweepSupport[] markAndSweeps;
+
+	private int[][] precursors;
+
+	private int[][] followers;
+
+	private TIntArrayList[] followerLists;
+
+	/**
+	 * the work lists of each thread
+	 */
+	private ThreadLocal<Scratch> scratches;
+
+	public IterativeRunner(final Workflow workflow) {
+		super(workflow);
+	}
+
+	public void mark(final TransformationContext context) {
+		if (!running || workflow.getMode() != RUN) {
+			return;
+		}
+		final Scratch scratch = acquire();
+		try {
+			final int number = scratch.next();
+			final int start = indices.get(context);
+			scratch.stamps[start] = number;
+			scratch.work[0] = start;
+			mark(scratch, 1);
+		} finally {
+			scratch.busy = false;
+		}
+	}
+
+	public void markAll(final Collection<? extends TransformationContext> marks) {
+		if (!running || workflow.getMode() != RUN) {
+			return;
+		}
+		final Scratch scratch = acquire();
+		try {
+			final int number = scratch.next();
+			int size = 0;
+			for (final TransformationContext context : marks) {
+				final int start = indices.get(context);
+				if (scratch.stamps[start] != number) {
+					scratch.stamps[start] = number;
+					scratch.work[size++] = start;
+				}
+			}
+			mark(scratch, size);
+		} finally {
+			scratch.busy = false;
+		}
+	}
+
+	public void sweep(final TransformationContext context) {
+		if (!running || workflow.getMode() != RUN) {
+			return;
+		}
+		final int start = indices.get(context);
+		if (markAndSweeps[start].isValid()) {
+			return;
+		}
+		final Scratch scratch = acquire();
+		try {
+			// collect everything that has to be executed
+			final int[] stamps = scratch.stamps;
+			final int[] work = scratch.work;
+			final int[] collected = scratch.collected;
+			final int number = scratch.next();
+			int size = 0;
+			int count = 0;
+			stamps[start] = number;
+			work[size++] = start;
+			while (size > 0) {
+				final int index = work[--size];
+				collected[count++] = index;
+				for (final int precursor : precursors[index]) {
+					if (stamps[precursor] != number && !markAndSweeps[precursor].isValid()) {
+						stamps[precursor] = number;
+						work[size++] = precursor;
+					}
+				}
+			}
+			// indices are in partial order: precursors come first
+			Arrays.sort(collected, 0, count);
+			for (int i = 0; i < count; i++) {
+				execute(collected[i]);
+			}
+		} finally {
+			scratch.busy = false;
+		}
+	}
+
+	@Override
+	protected boolean doStart() {
+		final int size = workflow.size();
+		indices = new TObjectIntHashMap<TransformationContext>(size);
+		contexts = new TransformationContext[size];
+		markAndSweeps = new MarkAndSweepSupport[size];
+		precursors = new int[size][];
+		followers = new int[size][];
+		followerLists = new TIntArrayList[size];
+		scratches = new ScratchPerThread(size);
+		return true;
+	}
+
+	@Override
+	protected boolean doStart(final TransformationContext context, final int index) {
+		contexts[index] = context;
+		indices.put(context, index);
+		markAndSweeps[index] = new MarkAndSweepSupport(context);
+		followerLists[index] = new TIntArrayList();
+
+		// this method is executed in partial order,
+		// so the index of precursors is already known.
+		final TIntArrayList p = new TIntArrayList();
+		for (final TransformationContext precursor : workflow.getPrecursors(context)) {
+			final int preIndex = indices.get(precursor);
+			p.add(preIndex);
+			followerLists[preIndex].add(index);
+		}
+		precursors[index] = p.toNativeArray();
+
+		if (index == contexts.length - 1) {
+			for (int i = 0; i < contexts.length; i++) {
+				followers[i] = followerLists[i].toNativeArray();
+			}
+			followerLists = null;
+		}
+		return true;
+	}
+
+	@Override
+	protected void doStop() {
+		indices = null;
+		contexts = null;
+		markAndSweeps = null;
+		precursors = null;
+		followers = null;
+		followerLists = null;
+		scratches = null;
+	}
+
+	@Override
+	protected void doStop(final TransformationContext context) {
+	}
+
+	/**
+	 * Returns the work lists of the current thread, or new ones if a
+	 * transformation marks or sweeps while the runner is sweeping it.
+	 */
+	private Scratch acquire() {
+		final Scratch scratch = scratches.get();
+		if (scratch.busy) {
+			return new Scratch(contexts.length);
+		}
+		scratch.busy = true;
+		return scratch;
+	}
+
+	/**
+	 * Marks the first {@code count} contexts in the work list and all their
+	 * followers.
+	 */
+	private void mark(final Scratch scratch, final int count) {
+		final int[] stamps = scratch.stamps;
+		final int[] work = scratch.work;
+		final int[] collected = scratch.collected;
+		final long[] epochs = scratch.epochs;
+		final int number = scratch.number;
+		int size = count;
+		int marked = 0;
+		while (size > 0) {
+			final int index = work[--size];
+			collected[marked++] = index;
+			epochs[index] = markAndSweeps[index].beginMark();
+			for (final int follower : followers[index]) {
+				if (stamps[follower] != number) {
+					stamps[follower] = number;
+					work[size++] = follower;
+				}
+			}
+		}
+		for (int i = 0; i < marked; i++) {
+			markAndSweeps[collected[i]].endMark(epochs[collected[i]]);
+		}
+	}
+
+	private void execute(final int index) {
+		final MarkAndSweepSupport marksweep = markAndSweeps[index];
+		// waits for a concurrent sweep that is executing the same context
+		final long epoch = marksweep.claim();
+		if (epoch == MarkAndSweepSupport.NOT_CLAIMED) {
+			return;
+		}
+		boolean executed = false;
+		try {
+			// checked after the claim: a mark that invalidated a precursor
+			// before has reached this context before the claim too
+			if (isPrecursorsValid(index)) {
+				contexts[index].executeTransformation();
+				executed = true;
+			}
+		} catch (final LongbowException e) {
+			final String msg = "Error while sweeping";
+			logger.error(msg, e);
+		} finally {
+			if (!executed) {
+				// a precursor failed or has been marked again: leave this
+				// context invalid instead of executing it with stale inputs
+				marksweep.abandon(epoch);
+			}
+		}
+		if (executed && !marksweep.swept(epoch) && logger.isTraceEnabled()) {
+			logger.trace("A mark overtook the sweep of " + contexts[index]);
+		}
+	}
+
+	private boolean isPrecursorsValid(final int index) {
+		for (final int precursor : precursors[index]) {
+			if (!markAndSweeps[precursor].isValid()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Work lists for marks and sweeps, with a stamp for each context instead
+	 * of a bit set that has to be cleared.
+	 */
+	private static final class Scratch {
+
+		final int[] stamps;
+
+		final int[] work;
+
+		final int[] collected;
+
+		final long[] epochs;
+
+		int number;
+
+		boolean busy;
+
+		Scratch(final int size) {
+			stamps = new int[size];
+			work = new int[size];
+			collected = new int[size];
+			epochs = new long[size];
+		}
+
+		/**
+		 * @return a stamp that no context has yet
+		 */
+		int next() {
+			if (++number == 0) {
+				Arrays.fill(stamps, 0);
+				number = 1;
+			}
+			return number;
+		}
+	}
+
+	/**
+	 * Gives every thread that marks or sweeps its own work lists.
+	 */
+	private static final class ScratchPerThread extends ThreadLocal<Scratch> {
+
+		private final int size;
+
+		ScratchPerThread(final int size) {
+			this.size = size;
+		}
+
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch(size);
+		}
+	}
+}
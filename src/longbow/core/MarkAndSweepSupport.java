@@ -18,8 +18,12 @@
 package longbow.core;
 
 
+import java.lang.ref.WeakReference;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 import longbow.MarkAndSweepEvent;
 import longbow.MarkAndSweepListener;
@@ -38,7 +42,31 @@ public class MarkAndSweepSupport {
 
 	private static final Logger logger = Logger.getLogger(MarkAndSweepSupport.class);
 
-	private long serialNumber;
+	/**
+	 * Returned by {@link #tryClaim()} and {@link #claim()} when the supported
+	 * context can't be claimed for a sweep.
+	 */
+	static final long NOT_CLAIMED = -1L;
+
+	private static final LastEvent[] PHASES = LastEvent.values();
+
+	/**
+	 * The bits of the state word that hold the last event
+	 */
+	private static final long PHASE = 0x3L;
+
+	/**
+	 * The bit of the state word that is set while a claimed sweep executes the
+	 * supported context. A mark clears the phase, but not this bit.
+	 */
+	private static final long BUSY = 0x4L;
+
+	/**
+	 * The epoch is the serial number of the last mark
+	 */
+	private static final int EPOCH_SHIFT = 3;
+
+	private static final int SPINS = 64;
 
 	private boolean markAndSweepListenersEnabled;
 
@@ -46,7 +74,28 @@ public class MarkAndSweepSupport {
 
 	private final Map<MarkAndSweepListener, Object> listeners;
 
-	private volatile LastEvent lastEvent;
+	/**
+	 * The listeners when they last changed, so that events can be dispatched
+	 * without allocating an iterator and without locking.
+	 */
+	private volatile WeakReference<?>[] snapshot;
+
+	/**
+	 * The only event of the supported context
+	 */
+	private final MarkAndSweepEvent event;
+
+	/**
+	 * The epoch, the busy bit and the last event of the supported context in a
+	 * single word, so that every transition is one compare-and-set.
+	 */
+	private final AtomicLong state;
+
+	/**
+	 * The threads that are parked until no thread executes the supported
+	 * context anymore
+	 */
+	private final AtomicReference<Waiter> waiters;
 
 	/**
 	 * Creates a new instance of {@link MarkAndSweepSupport}
@@ -58,8 +107,10 @@ public class MarkAndSweepSupport {
 	public MarkAndSweepSupport(final TransformationContext source) {
 		this.source = source;
 		listeners = new WeakHashMap<MarkAndSweepListener, Object>();
-		serialNumber = 0x0L;
-		lastEvent = LastEvent.MARKED;
+		snapshot = snapshot(listeners);
+		event = new MarkAndSweepEvent(source);
+		state = new AtomicLong(word(0x0L, LastEvent.MARKED));
+		waiters = new AtomicReference<Waiter>();
 	}
 
 	/**
@@ -71,6 +122,7 @@ public class MarkAndSweepSupport {
 	public synchronized void addMarkAndSweepListener(final MarkAndSweepListener listener) {
 		if (listener != null) {
 			listeners.put(listener, null);
+			snapshot = snapshot(listeners);
 		}
 	}
 
@@ -91,7 +143,7 @@ public class MarkAndSweepSupport {
 	 * @return if the supported context is valid.
 	 */
 	public boolean isValid() {
-		return lastEvent == LastEvent.SWEPT;
+		return phase(state.get()) == LastEvent.SWEPT;
 	}
 
 	/**
@@ -100,7 +152,7 @@ public class MarkAndSweepSupport {
 	 * @return if the supported context is validating
 	 */
 	public boolean isValidating() {
-		return lastEvent == LastEvent.SWEEPING;
+		return phase(state.get()) == LastEvent.SWEEPING;
 	}
 
 	/**
@@ -111,6 +163,7 @@ public class MarkAndSweepSupport {
 	 */
 	public synchronized void removeMarkAndSweepListener(final MarkAndSweepListener listener) {
 		listeners.remove(listener);
+		snapshot = snapshot(listeners);
 	}
 
 	/**
@@ -129,26 +182,14 @@ public class MarkAndSweepSupport {
 	 * Notify listeners of the supported context that it has been marked.
 	 */
 	void fireMarked() {
-		if (lastEvent != LastEvent.MARKING) {
-			final IllegalStateException e = new IllegalStateException();
-			logger.fatal("Can't have marked if last event wasn't MARKING, but " + lastEvent, e);
-			throw e;
-		}
-		lastEvent = LastEvent.MARKED;
-		if (markAndSweepListenersEnabled) {
-			final MarkAndSweepEvent event = new MarkAndSweepEvent(source);
-			for (final MarkAndSweepListener listener : listeners.keySet()) {
-				listener.marked(event);
-			}
-		}
-		logger.trace(source + " is " + lastEvent.name());
+		advance(LastEvent.MARKING, LastEvent.MARKED, "Can't have marked if last event wasn't MARKING, but ");
 	}
 
 	/**
 	 * Fire events for a new mark, with a new serial number.
 	 */
 	void fireMarking() {
-		fireMarking(serialNumber + 1L);
+		beginMark();
 	}
 
 	/**
@@ -157,71 +198,287 @@ public class MarkAndSweepSupport {
 	 * @param serialNumber
 	 */
 	void fireMarking(final long serialNumber) {
-		if (this.serialNumber != serialNumber) {
-			this.serialNumber = serialNumber;
-			lastEvent = LastEvent.MARKING;
-			if (markAndSweepListenersEnabled) {
-				final MarkAndSweepEvent event = new MarkAndSweepEvent(source);
-				for (final MarkAndSweepListener listener : listeners.keySet()) {
-					listener.marking(event);
-				}
+		long current;
+		do {
+			current = state.get();
+			if (epoch(current) == serialNumber) {
+				trace(current);
+				return;
 			}
-		}
-		logger.trace(source + " is " + lastEvent.name());
+		} while (!state.compareAndSet(current, word(serialNumber, LastEvent.MARKING) | current & BUSY));
+		fire(LastEvent.MARKING);
 	}
 
 	/**
 	 * Notifies listeners that the supported context is sweeping.
 	 */
 	void fireSweeping() {
-		if (lastEvent != LastEvent.MARKED) {
-			final IllegalStateException e = new IllegalStateException();
-			logger.fatal("Can't start sweeping if last event was not MARKED, but " + lastEvent, e);
-			throw e;
+		advance(LastEvent.MARKED, LastEvent.SWEEPING, "Can't start sweeping if last event was not MARKED, but ");
+	}
+
+	/**
+	 * Notifies listeners that the supported context is swept.
+	 */
+	void fireSwept() {
+		advance(LastEvent.SWEEPING, LastEvent.SWEPT, "Can't have swept if last event was not SWEEPING, but ");
+	}
+
+	/**
+	 * Starts a new mark epoch. Unlike {@link #fireMarked()} and friends, a mark
+	 * is allowed in every phase: it overtakes a sweep that is still running,
+	 * which will then fail to validate the supported context.
+	 * 
+	 * @return the epoch of the new mark, to pass to {@link #endMark(long)}
+	 */
+	long beginMark() {
+		long current;
+		long next;
+		do {
+			current = state.get();
+			next = word(epoch(current) + 1L, LastEvent.MARKING) | current & BUSY;
+		} while (!state.compareAndSet(current, next));
+		fire(LastEvent.MARKING);
+		return epoch(next);
+	}
+
+	/**
+	 * Ends a mark that was started with {@link #beginMark()}. Nothing happens
+	 * if a later mark or a sweep has already moved on.
+	 * 
+	 * @param epoch
+	 *            the epoch returned by {@link #beginMark()}
+	 */
+	void endMark(final long epoch) {
+		if (move(epoch, LastEvent.MARKING, LastEvent.MARKING, false, LastEvent.MARKED, false)) {
+			fire(LastEvent.MARKED);
 		}
-		lastEvent = LastEvent.SWEEPING;
-		if (markAndSweepListenersEnabled) {
-			final MarkAndSweepEvent event = new MarkAndSweepEvent(source);
-			for (final MarkAndSweepListener listener : listeners.keySet()) {
-				listener.sweeping(event);
+	}
+
+	/**
+	 * Claims the right to execute the supported context without waiting.
+	 * 
+	 * @return the claimed epoch, to pass to {@link #swept(long)} or
+	 *         {@link #abandon(long)}, or {@link #NOT_CLAIMED} if the supported
+	 *         context is valid or another thread is executing it.
+	 */
+	long tryClaim() {
+		final long current = state.get();
+		final long epoch = epoch(current);
+		if (move(epoch, LastEvent.MARKED, LastEvent.MARKING, false, LastEvent.SWEEPING, true)) {
+			fire(LastEvent.SWEEPING);
+			return epoch;
+		}
+		return NOT_CLAIMED;
+	}
+
+	/**
+	 * Claims the right to execute the supported context, waiting for another
+	 * thread that is executing it.
+	 * 
+	 * @return the claimed epoch, or {@link #NOT_CLAIMED} if the supported
+	 *         context is valid.
+	 */
+	long claim() {
+		while (true) {
+			final long epoch = tryClaim();
+			if (epoch != NOT_CLAIMED || isValid()) {
+				return epoch;
 			}
+			awaitSweep();
 		}
-		logger.trace(source + " is " + lastEvent.name());
-	}
-
-	//	void fireSweepInterrupted(final LongbowException exception) {
-	//		if (lastEvent != LastEvent.SWEEPING) {
-	//			final IllegalStateException e = new IllegalStateException(exception);
-	//			logger.fatal("Sweep can't be interrupted if last event was not SWEEPING, but " + lastEvent, e);
-	//			throw e;
-	//		}
-	//		lastEvent = LastEvent.MARKED;
-	//		if (markAndSweepListenersEnabled) {
-	//			final MarkAndSweepEvent event = new MarkAndSweepEvent(source);
-	//			for (final MarkAndSweepListener listener : listeners.keySet()) {
-	//				listener.sweepInterrupted(event);
-	//			}
-	//		}
-	//		logger.trace(source + " is " + lastEvent.name());
-	//	}
+	}
 
 	/**
-	 * Notifies listeners that the supported context is swept.
+	 * Ends a claimed sweep after the supported context has been executed.
+	 * 
+	 * @param epoch
+	 *            the claimed epoch
+	 * @return {@code true} if the supported context is valid, {@code false} if
+	 *         a mark has overtaken the sweep.
 	 */
-	void fireSwept() {
-		if (lastEvent != LastEvent.SWEEPING) {
-			final IllegalStateException e = new IllegalStateException();
-			logger.fatal("Can't have swept if last event was not SWEEPING, but " + lastEvent, e);
-			throw e;
+	boolean swept(final long epoch) {
+		if (move(epoch, LastEvent.SWEEPING, LastEvent.SWEEPING, true, LastEvent.SWEPT, false)) {
+			wake();
+			fire(LastEvent.SWEPT);
+			return true;
+		}
+		release();
+		return false;
+	}
+
+	/**
+	 * Gives up a claimed sweep that failed. The supported context is marked
+	 * again, so that the next sweep retries it.
+	 * 
+	 * @param epoch
+	 *            the claimed epoch
+	 */
+	void abandon(final long epoch) {
+		if (move(epoch, LastEvent.SWEEPING, LastEvent.SWEEPING, true, LastEvent.MARKED, false)) {
+			wake();
+			fire(LastEvent.MARKED);
+		} else {
+			release();
+		}
+	}
+
+	/**
+	 * Waits until no thread is executing the supported context. The waiting
+	 * thread spins for a while, then parks until the executing thread ends
+	 * its sweep. An interrupt doesn't end the wait, but it is kept for the
+	 * caller.
+	 */
+	void awaitSweep() {
+		boolean interrupted = Thread.interrupted();
+		try {
+			int spins = 0;
+			while ((state.get() & BUSY) != 0x0L) {
+				if (spins < SPINS) {
+					spins++;
+					Thread.yield();
+					continue;
+				}
+				final Waiter waiter = new Waiter(Thread.currentThread());
+				do {
+					waiter.next = waiters.get();
+				} while (!waiters.compareAndSet(waiter.next, waiter));
+				// the busy bit may have been cleared before the waiter was seen
+				if ((state.get() & BUSY) != 0x0L) {
+					LockSupport.park(this);
+				}
+				interrupted |= Thread.interrupted();
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Moves the state word from one of two phases in an epoch to another
+	 * phase in the same epoch.
+	 * 
+	 * @return {@code true} if this thread made the transition
+	 */
+	private boolean move(final long epoch, final LastEvent from, final LastEvent or, final boolean busy, final LastEvent to, final boolean claimed) {
+		final long expectedBusy = busy ? BUSY : 0x0L;
+		while (true) {
+			final long current = state.get();
+			final LastEvent phase = phase(current);
+			if (epoch(current) != epoch || (current & BUSY) != expectedBusy || phase != from && phase != or) {
+				return false;
+			}
+			if (state.compareAndSet(current, word(epoch, to) | (claimed ? BUSY : 0x0L))) {
+				return true;
+			}
 		}
-		lastEvent = LastEvent.SWEPT;
+	}
+
+	/**
+	 * Clears the busy bit after an overtaken or failed sweep.
+	 */
+	private void release() {
+		long current;
+		do {
+			current = state.get();
+		} while (!state.compareAndSet(current, current & ~BUSY));
+		wake();
+	}
+
+	/**
+	 * Unparks the threads that wait in {@link #awaitSweep()}, after the busy
+	 * bit has been cleared.
+	 */
+	private void wake() {
+		if (waiters.get() == null) {
+			return;
+		}
+		Waiter waiter = waiters.getAndSet(null);
+		while (waiter != null) {
+			LockSupport.unpark(waiter.thread);
+			waiter = waiter.next;
+		}
+	}
+
+	/**
+	 * The strict transitions of the single threaded protocol.
+	 */
+	private void advance(final LastEvent from, final LastEvent to, final String message) {
+		long current;
+		do {
+			current = state.get();
+			if (phase(current) != from) {
+				final IllegalStateException e = new IllegalStateException();
+				logger.fatal(message + phase(current), e);
+				throw e;
+			}
+		} while (!state.compareAndSet(current, current & ~PHASE | to.ordinal()));
+		fire(to);
+	}
+
+	/**
+	 * Notifies the listeners of a transition this thread made.
+	 */
+	private void fire(final LastEvent last) {
 		if (markAndSweepListenersEnabled) {
-			final MarkAndSweepEvent event = new MarkAndSweepEvent(source);
-			for (final MarkAndSweepListener listener : listeners.keySet()) {
+			dispatch(last);
+		}
+		trace(state.get());
+	}
+
+	private void trace(final long current) {
+		if (logger.isTraceEnabled()) {
+			logger.trace(source + " is " + phase(current).name());
+		}
+	}
+
+	/**
+	 * Notifies the listeners of an event.
+	 */
+	private void dispatch(final LastEvent last) {
+		for (final WeakReference<?> reference : snapshot) {
+			final MarkAndSweepListener listener = (MarkAndSweepListener) reference.get();
+			if (listener == null) {
+				continue;
+			}
+			switch (last) {
+			case MARKING:
+				listener.marking(event);
+				break;
+			case MARKED:
+				listener.marked(event);
+				break;
+			case SWEEPING:
+				listener.sweeping(event);
+				break;
+			case SWEPT:
 				listener.swept(event);
+				break;
 			}
 		}
-		logger.trace(source + " is " + lastEvent.name());
+	}
+
+	private static WeakReference<?>[] snapshot(final Map<MarkAndSweepListener, Object> listeners) {
+		// collected listeners may disappear while the keys are copied
+		final Object[] keys = listeners.keySet().toArray();
+		final WeakReference<?>[] references = new WeakReference<?>[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			references[i] = new WeakReference<MarkAndSweepListener>((MarkAndSweepListener) keys[i]);
+		}
+		return references;
+	}
+
+	private static long epoch(final long state) {
+		return state >>> EPOCH_SHIFT;
+	}
+
+	private static LastEvent phase(final long state) {
+		return PHASES[(int) (state & PHASE)];
+	}
+
+	private static long word(final long epoch, final LastEvent phase) {
+		return epoch << EPOCH_SHIFT | phase.ordinal();
 	}
 
 	private enum LastEvent {
@@ -244,4 +501,18 @@ public class MarkAndSweepSupport {
 		SWEPT;
 	}
 
+	/**
+	 * A thread parked in {@link MarkAndSweepSupport#awaitSweep()}
+	 */
+	private static final class Waiter {
+
+		final Thread thread;
+
+		Waiter next;
+
+		Waiter(final Thread thread) {
+			this.thread = thread;
+		}
+	}
+
 }
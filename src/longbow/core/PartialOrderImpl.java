@@ -26,6 +26,7 @@ import java.util.*;
 import longbow.PartialOrder;
 import longbow.TransformationContext;
 import longbow.Workflow;
+import longbow.util.SparseBitSet;
 
 /**
  * This class defines and remembers a partial ordering of its elements. The
@@ -36,6 +37,23 @@ import longbow.Workflow;
  * This class is primarily used to create a partial ordering for
  * {@link TransformationContext}s in a {@link Workflow}.
  * 
+ * The elements are kept in a topological order that is updated on every
+ * connection, using the online algorithm of Pearce and Kelly: only the
+ * elements between the two connected elements in the current order are
+ * reordered, and only when the new connection contradicts the current order.
+ * Iterating over the elements is a walk over that order, without sorting.
+ * 
+ * Every element also keeps the set of elements it follows, directly or
+ * indirectly, as a reachability index. {@link #follows(Object, Object)}, and
+ * with it the cycle check in {@link #connect(Object, Object)}, looks an
+ * element up in that set, in logarithmic time at most. A new connection adds
+ * its start and the precursors of its start to the elements that are
+ * reachable from its end, but not from its start yet. Workflows are usually
+ * built from their sources on, so mostly only the end itself is updated.
+ * Identifiers follow the topological order, so the sets of chains consist of
+ * a few runs. Disconnecting or removing connected elements leaves the index
+ * stale; it is rebuilt in one pass over the order when it is needed again.
+ * 
  * This class is not thread safe. Simultaneous calls on methods of the same
  * instance can corrupt the partial ordering.
  * 
@@ -47,31 +65,51 @@ import longbow.Workflow;
  */
 public class PartialOrderImpl<T> implements PartialOrder<T> {
 
-	int newIndex;
-
 	final Map<T, Element> elements;
 
-	private final List<T> orderedList;
+	/**
+	 * All elements in topological order. For every element {@code e},
+	 * {@code order.get(e.index) == e}.
+	 */
+	private final ArrayList<Element> order;
+
+	/**
+	 * work list of searches, reused
+	 */
+	private final ArrayList<Element> work;
 
-	private final Comparator<T> comparator;
+	/**
+	 * the stamp of the last search. An element has been visited by a search
+	 * if it carries its stamp.
+	 */
+	private int stamp;
+
+	/**
+	 * the identifier of the next element that is added
+	 */
+	private int nextId;
+
+	/**
+	 * whether the reachability sets of the elements must be rebuilt, because
+	 * a connection has been removed
+	 */
+	private boolean stale;
 
 	public PartialOrderImpl() {
 		elements = new HashMap<T, Element>();
-		orderedList = new LinkedList<T>();
-		comparator = new Comparator<T>() {
-
-			public int compare(final T former, final T latter) {
-				return elements.get(former).index - elements.get(latter).index;
-			}
-		};
+		order = new ArrayList<Element>();
+		work = new ArrayList<Element>();
 	}
 
 	public boolean add(final T o) {
 		if (elements.containsKey(o)) {
 			return false;
 		}
-		elements.put(o, new Element(o));
-		orderedList.add(o);
+		final Element element = new Element(o);
+		element.index = order.size();
+		element.id = nextId++;
+		elements.put(o, element);
+		order.add(element);
 		return true;
 	}
 
@@ -80,9 +118,10 @@ public class PartialOrderImpl<T> implements PartialOrder<T> {
 	}
 
 	public void clear() {
-		orderedList.clear();
+		order.clear();
 		elements.clear();
-		newIndex = 0;
+		nextId = 0;
+		stale = false;
 	}
 
 	/**
@@ -104,25 +143,12 @@ public class PartialOrderImpl<T> implements PartialOrder<T> {
 		// update neighbour lists
 		first.addFollower(last);
 		last.addPrecursor(first);
-		// update indexes
-		final int lastIndex = last.index;
-		if (first.index > lastIndex) {
-			// switch indexes between last and precursor of last with
-			// greatest index until the heap condition is fulfilled everywhere
-			final LinkedList<Element> path = new LinkedList<Element>();
-			// collect precursor with greatest index
-			// add it to path
-			Element precursor = greatestIndexPrecursor(last);
-			while (precursor != null && precursor.index > lastIndex) {
-				path.addLast(precursor);
-				precursor = greatestIndexPrecursor(precursor);
-			}
-			Element pathElement = last;
-			while (!path.isEmpty()) {
-				pathElement.index = path.peek().index;
-				pathElement = path.poll();
-			}
-			pathElement.index = lastIndex;
+		if (!stale) {
+			extend(first, last);
+		}
+		// restore the topological order if the new connection contradicts it
+		if (first.index > last.index) {
+			reorder(first, last);
 		}
 		return true;
 	}
@@ -142,6 +168,7 @@ public class PartialOrderImpl<T> implements PartialOrder<T> {
 		if (disconnected) {
 			first.removeFollower(last);
 			last.removePrecursor(first);
+			stale = true;
 		}
 		return disconnected;
 	}
@@ -173,8 +200,32 @@ public class PartialOrderImpl<T> implements PartialOrder<T> {
 	}
 
 	public Iterator<T> iterator() {
-		sort();
-		return orderedList.iterator();
+		return new Iterator<T>() {
+
+			private int next = 0;
+
+			private boolean removable = false;
+
+			public boolean hasNext() {
+				return next < order.size();
+			}
+
+			public T next() {
+				if (next >= order.size()) {
+					throw new NoSuchElementException();
+				}
+				removable = true;
+				return order.get(next++).value;
+			}
+
+			public void remove() {
+				if (!removable) {
+					throw new IllegalStateException();
+				}
+				removable = false;
+				PartialOrderImpl.this.remove(order.get(--next).value);
+			}
+		};
 	}
 
 	public boolean remove(final Object o) {
@@ -183,20 +234,29 @@ public class PartialOrderImpl<T> implements PartialOrder<T> {
 		}
 		final Element element = elements.get(o);
 		assert element != null;
+		if (element.indegree != 0 || element.outdegree != 0) {
+			// paths through the element are gone
+			stale = true;
+		}
 		// disconnect element
 		final TObjectIntIterator<Element> preIterator = element.precursors.iterator();
 		while (preIterator.hasNext()) {
 			preIterator.advance();
 			final Element pre = preIterator.key();
-			pre.removeFollower(element);
+			pre.followers.remove(element);
+			pre.outdegree--;
 		}
 		final TObjectIntIterator<Element> postIterator = element.followers.iterator();
 		while (postIterator.hasNext()) {
 			postIterator.advance();
 			final Element post = postIterator.key();
-			post.removePrecursor(element);
+			post.precursors.remove(element);
+			post.indegree--;
+		}
+		order.remove(element.index);
+		for (int i = element.index; i < order.size(); i++) {
+			order.get(i).index = i;
 		}
-		orderedList.remove(element.value);
 		elements.remove(element.value);
 		return true;
 	}
@@ -214,11 +274,11 @@ public class PartialOrderImpl<T> implements PartialOrder<T> {
 	}
 
 	public Object[] toArray() {
-		return orderedList.toArray();
+		return values().toArray();
 	}
 
 	public <E> E[] toArray(final E[] a) {
-		return orderedList.toArray(a);
+		return values().toArray(a);
 	}
 
 	/**
@@ -230,112 +290,197 @@ public class PartialOrderImpl<T> implements PartialOrder<T> {
 	 * @return if there exist a direct or indirect connection from first to
 	 *         last, or if first and last are the same
 	 */
-	private boolean follows(Element first, Element last) {
-		// first==last ==> true (should not connect)
-		// search for a path from first to last.
-		// path found ==> true
-		// path not found ==> false
-
-		if (first.outdegree == 0 || last.indegree == 0 || first.index > last.index) {
-			// there can be no path from first to last because:
-			// 1. first has no followers, or
-			// 2. last has no precursors, or
-			// 3. there can be no path from first to last,
-			//    because first is higher in partial order.
-			return false;
-		}
-
-		// make first and last come as close as possible to each other,
-		// replacing them by their only follower or precursor
-		while (first.outdegree == 1 && first.index < last.index) {
-			final TObjectIntIterator<Element> it = first.followers.iterator();
-			it.advance();
-			first = it.key();
+	private boolean follows(final Element first, final Element last) {
+		if (first == last) {
+			return true;
 		}
-		while (last.indegree == 1 && first.index < last.index) {
-			final TObjectIntIterator<Element> it = last.precursors.iterator();
-			it.advance();
-			last = it.key();
+		if (first.outdegree == 0 || last.indegree == 0) {
+			// first has no followers or last has no precursors
+			return false;
 		}
-
-		if (first == last || first.followers.contains(last)) {
-			// there is definately a path from first to last,
-			// or they are the same.
+		if (first.followers.contains(last)) {
 			return true;
 		}
-
-		final int firstIndex = first.index;
-		if (firstIndex > last.index) {
-			// there can be no path from first to last,
-			// because there can be no connection from 
-			// an element with a higher index
-			// to an element with a lower index.
+		if (first.index > last.index) {
+			// every connection leads forward in the order
 			return false;
 		}
+		if (stale) {
+			rebuild();
+		}
+		return last.ancestors.get(first.id);
+	}
 
-		boolean path = false;
-		if (firstIndex < last.index) {
-			// there is still a chance that there exists a path
-			//   from first to last, but that is unsure yet.
-
-			// it might be just a wild guess, but indegrees might
-			// generally be averagely smaller than outdegrees 
-			// in human-made DAGs. Human-made DAGs might be a little
-			// more tree-like than random DAGs.
-			// Therefore searching for a path backwards would be faster
-			// than searching for them in the right way.
-			final TObjectIntIterator<Element> firstIterator = last.precursors.iterator();
-			while (firstIterator.hasNext() && !path) {
-				firstIterator.advance();
-				final Element lastPrecursor = firstIterator.key();
-
-				// we already know that lastPrecursor can not be
-				// a direct precursor of last, so we immediately
-				// continue with the precursors of lastPrecursor,
-				// provided that their index is greater than firstIndex.
-
-				if (firstIndex < lastPrecursor.index) {
-					final TObjectIntIterator<Element> secondIterator = lastPrecursor.precursors.iterator();
-					while (secondIterator.hasNext() && !path) {
-						secondIterator.advance();
-						final Element secondPrecursor = secondIterator.key();
-						if (secondPrecursor.indegree != 0 && firstIndex < secondPrecursor.index && follows(first, secondPrecursor)) {
-							path = true;
-						}
-					}
+	/**
+	 * Updates the reachability sets after a connection from {@code first} to
+	 * {@code last} has been added. Elements that are already reachable from
+	 * {@code first} are already reachable from its precursors, and so are
+	 * their followers.
+	 */
+	private void extend(final Element first, final Element last) {
+		if (last.ancestors.get(first.id)) {
+			return;
+		}
+		final int visited = nextStamp();
+		work.clear();
+		last.stamp = visited;
+		work.add(last);
+		while (!work.isEmpty()) {
+			final Element element = work.remove(work.size() - 1);
+			element.ancestors.set(first.id);
+			element.ancestors.or(first.ancestors);
+			final TObjectIntIterator<Element> it = element.followers.iterator();
+			while (it.hasNext()) {
+				it.advance();
+				final Element next = it.key();
+				if (next.stamp != visited && !next.ancestors.get(first.id)) {
+					next.stamp = visited;
+					work.add(next);
 				}
 			}
 		}
-		return path;
 	}
 
-	private Element greatestIndexPrecursor(final Element element) {
-		Element greatest = null;
-		if (element.indegree != 0) {
+	/**
+	 * Rebuilds the reachability sets of all elements in topological order, so
+	 * that the sets of the precursors of an element are complete before its
+	 * own set is built. The identifiers of the elements are renumbered in
+	 * topological order.
+	 */
+	private void rebuild() {
+		nextId = order.size();
+		for (int i = 0; i < nextId; i++) {
+			order.get(i).id = i;
+		}
+		for (final Element element : order) {
+			final SparseBitSet ancestors = new SparseBitSet();
 			final TObjectIntIterator<Element> it = element.precursors.iterator();
-			if (it.hasNext()) {
+			while (it.hasNext()) {
 				it.advance();
-				greatest = it.key();
+				final Element precursor = it.key();
+				ancestors.set(precursor.id);
+				ancestors.or(precursor.ancestors);
 			}
+			element.ancestors = ancestors;
+		}
+		stale = false;
+	}
+
+	/**
+	 * Reorders the elements after a connection from {@code first} to
+	 * {@code last} has been added, while {@code last} came before
+	 * {@code first} in the topological order. Only the elements with an index
+	 * between both are affected: the followers of {@code last} and the
+	 * precursors of {@code first} in that range swap places, keeping their
+	 * relative order. The new connection must not close a cycle.
+	 * 
+	 * @param first
+	 *            the start of the new connection
+	 * @param last
+	 *            the end of the new connection
+	 */
+	private void reorder(final Element first, final Element last) {
+		final int lowerBound = last.index;
+		final int upperBound = first.index;
+		final List<Element> forward = collect(last, upperBound, true);
+		final List<Element> backward = collect(first, lowerBound, false);
+		final Comparator<Element> byIndex = new Comparator<Element>() {
+
+			public int compare(final Element former, final Element latter) {
+				return former.index - latter.index;
+			}
+		};
+		Collections.sort(forward, byIndex);
+		Collections.sort(backward, byIndex);
+
+		// the indexes that are available for the affected elements
+		final int[] indexes = new int[forward.size() + backward.size()];
+		int i = 0;
+		for (final Element element : backward) {
+			indexes[i++] = element.index;
+		}
+		for (final Element element : forward) {
+			indexes[i++] = element.index;
+		}
+		Arrays.sort(indexes);
+
+		// precursors of first go before followers of last
+		i = 0;
+		for (final Element element : backward) {
+			place(element, indexes[i++]);
+		}
+		for (final Element element : forward) {
+			place(element, indexes[i++]);
+		}
+	}
+
+	/**
+	 * Collects all elements that are reachable from {@code start} in one
+	 * direction, without leaving the part of the order that is bounded by
+	 * {@code bound}.
+	 * 
+	 * @param start
+	 *            the element to start from; it is included in the result.
+	 * @param bound
+	 *            the greatest index when searching forward, the smallest
+	 *            index when searching backward.
+	 * @param forward
+	 *            search followers if {@code true}, precursors otherwise.
+	 * @return the reachable elements, in no particular order
+	 */
+	private List<Element> collect(final Element start, final int bound, final boolean forward) {
+		final List<Element> found = new ArrayList<Element>();
+		final int visited = nextStamp();
+		work.clear();
+		start.stamp = visited;
+		work.add(start);
+		while (!work.isEmpty()) {
+			final Element element = work.remove(work.size() - 1);
+			found.add(element);
+			final TObjectIntIterator<Element> it = forward ? element.followers.iterator() : element.precursors.iterator();
 			while (it.hasNext()) {
 				it.advance();
-				final Element currentElement = it.key();
-				if (currentElement.index > greatest.index) {
-					greatest = currentElement;
+				final Element next = it.key();
+				final boolean inRange = forward ? next.index <= bound : next.index >= bound;
+				if (inRange && next.stamp != visited) {
+					next.stamp = visited;
+					work.add(next);
 				}
 			}
 		}
-		return greatest;
+		return found;
+	}
+
+	/**
+	 * @return a stamp that no element carries yet
+	 */
+	private int nextStamp() {
+		if (++stamp == 0) {
+			for (final Element element : order) {
+				element.stamp = 0;
+			}
+			stamp = 1;
+		}
+		return stamp;
+	}
+
+	private void place(final Element element, final int index) {
+		element.index = index;
+		order.set(index, element);
 	}
 
-	private void sort() {
-		Collections.sort(orderedList, comparator);
+	private List<T> values() {
+		final List<T> values = new ArrayList<T>(order.size());
+		for (final Element element : order) {
+			values.add(element.value);
+		}
+		return values;
 	}
 
 	private class Element {
 
 		/**
-		 * index of this element in ordered list of elements
+		 * index of this element in the topological order of elements
 		 */
 		int index;
 
@@ -349,13 +494,29 @@ public class PartialOrderImpl<T> implements PartialOrder<T> {
 
 		int outdegree;
 
+		/**
+		 * the stamp of the last search that visited this element
+		 */
+		int stamp;
+
+		/**
+		 * identifies this element in the reachability sets
+		 */
+		int id;
+
+		/**
+		 * the identifiers of all direct and indirect precursors of this
+		 * element
+		 */
+		SparseBitSet ancestors;
+
 		public Element(final T value) {
 			this.value = value;
 			indegree = 0;
 			outdegree = 0;
 			followers = new TObjectIntHashMap<Element>();
 			precursors = new TObjectIntHashMap<Element>();
-			index = newIndex++;
+			ancestors = new SparseBitSet();
 		}
 
 		@Override
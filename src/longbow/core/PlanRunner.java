@@ -0,0 +1,249 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import static longbow.Mode.*;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import longbow.LongbowException;
+import longbow.TransformationContext;
+import longbow.Workflow;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link longbow.Runner} that interprets the {@link ExecutionPlan} of a
+ * {@link Workflow}.
+ * 
+ * The validity of every context is kept in a byte array with the indices of
+ * the plan. A marked context is dirty, its followers are invalid. Marks and sweeps walk the index arrays of the plan with a
+ * preallocated work list, and execute the transformations of a
+ * {@link DefaultTransformationContext} without checking the mode of the
+ * workflow again. Marks and sweeps are serialized on the runner.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class PlanRunner extends AbstractRunner {
+
+	private static final Logger logger = Logger.getLogger(PlanRunner.class);
+
+	static final byte VALID = 0;
+
+	/**
+	 * invalid because a precursor is invalid
+	 */
+	static final byte INVALID = 1;
+
+	/**
+	 * marked, or never executed
+	 */
+	static final byte DIRTY = 2;
+
+	private ExecutionPlan plan;
+
+	byte[] states;
+
+	/**
+	 * work list for marks and sweeps
+	 */
+	private int[] work;
+
+	/**
+	 * for each context, the last sweep that visited it
+	 */
+	private int[] visited;
+
+	private int sweepNumber;
+
+	public PlanRunner(final Workflow workflow) {
+		super(workflow);
+	}
+
+	public synchronized void mark(final TransformationContext context) {
+		if (!running || workflow.getMode() != RUN) {
+			return;
+		}
+		final int start = plan.indexOf(context);
+		final byte state = states[start];
+		states[start] = DIRTY;
+		if (state != VALID) {
+			// followers of an invalid context are invalid too
+			return;
+		}
+		work[0] = start;
+		invalidateFollowers(1);
+	}
+
+	public synchronized void markAll(final Collection<? extends TransformationContext> contexts) {
+		if (!running || workflow.getMode() != RUN) {
+			return;
+		}
+		int size = 0;
+		for (final TransformationContext context : contexts) {
+			final int start = plan.indexOf(context);
+			final byte state = states[start];
+			states[start] = DIRTY;
+			if (state == VALID) {
+				work[size++] = start;
+			}
+		}
+		invalidateFollowers(size);
+	}
+
+	public synchronized void sweep(final TransformationContext context) {
+		if (!running || workflow.getMode() != RUN) {
+			return;
+		}
+		final int start = plan.indexOf(context);
+		if (states[start] == VALID) {
+			return;
+		}
+		// collect the invalid precursors at the end of the work list
+		final int[][] precursors = plan.precursors;
+		final int number = ++sweepNumber;
+		int size = 0;
+		int collected = work.length;
+		visited[start] = number;
+		work[size++] = start;
+		while (size > 0) {
+			final int index = work[--size];
+			work[--collected] = index;
+			for (final int precursor : precursors[index]) {
+				if (states[precursor] != VALID && visited[precursor] != number) {
+					visited[precursor] = number;
+					work[size++] = precursor;
+				}
+			}
+		}
+		// indices are in partial order: precursors come first
+		Arrays.sort(work, collected, work.length);
+		for (int i = collected; i < work.length; i++) {
+			// followers of a context that failed stay invalid, rather than
+			// being validated with stale inputs
+			if (isPrecursorsValid(work[i])) {
+				validate(work[i]);
+			}
+		}
+	}
+
+	/**
+	 * @return the plan that is executed, or {@code null} if the runner is not
+	 *         running
+	 */
+	public ExecutionPlan getExecutionPlan() {
+		return plan;
+	}
+
+	/**
+	 * Validates an invalid context of which all precursors are valid. Executes
+	 * the context by default.
+	 * 
+	 * @param index
+	 *            the index of the context in the plan
+	 */
+	protected void validate(final int index) {
+		execute(index);
+	}
+
+	/**
+	 * Executes a context and makes it valid. If the transformation fails, the
+	 * context stays invalid and is executed again by the next sweep.
+	 * 
+	 * @param index
+	 *            the index of the context in the plan
+	 * @return {@code true} if the context has been executed
+	 */
+	protected boolean execute(final int index) {
+		final TransformationContext context = plan.contexts[index];
+		try {
+			if (context instanceof DefaultTransformationContext) {
+				((DefaultTransformationContext) context).runTransformation();
+			} else {
+				context.executeTransformation();
+			}
+			states[index] = VALID;
+			return true;
+		} catch (final LongbowException e) {
+			final String msg = "Error while sweeping";
+			logger.error(msg, e);
+			return false;
+		}
+	}
+
+	@Override
+	protected boolean doStart() {
+		plan = workflow instanceof DefaultWorkflow ? ((DefaultWorkflow) workflow).getExecutionPlan() : null;
+		if (plan == null) {
+			plan = ExecutionPlan.compile(workflow);
+		}
+		states = new byte[plan.size()];
+		Arrays.fill(states, DIRTY);
+		work = new int[plan.size()];
+		visited = new int[plan.size()];
+		sweepNumber = 0;
+		return true;
+	}
+
+	@Override
+	protected boolean doStart(final TransformationContext context, final int index) {
+		return plan.getContext(index) == context;
+	}
+
+	@Override
+	protected void doStop() {
+		plan = null;
+		states = null;
+		work = null;
+		visited = null;
+	}
+
+	@Override
+	protected void doStop(final TransformationContext context) {
+	}
+
+	/**
+	 * Invalidates the followers of the first {@code count} contexts in the
+	 * work list, which are already invalid.
+	 */
+	private void invalidateFollowers(final int count) {
+		final int[][] followers = plan.followers;
+		int size = count;
+		while (size > 0) {
+			final int index = work[--size];
+			for (final int follower : followers[index]) {
+				if (states[follower] == VALID) {
+					states[follower] = INVALID;
+					work[size++] = follower;
+				}
+			}
+		}
+	}
+
+	private boolean isPrecursorsValid(final int index) {
+		for (final int precursor : plan.precursors[index]) {
+			if (states[precursor] != VALID) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import longbow.LongbowException;
+import longbow.Transformation;
+import longbow.TransformationContext;
+import longbow.Workflow;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A {@link DefaultRunner} for transformations that block, for example on a
+ * database or on files.
+ * 
+ * A sweep forks one task for every invalid direct precursor and joins all of
+ * them before the context itself is executed. Each task runs on a virtual
+ * thread of its own, so thousands of blocking transformations can be in
+ * flight without a large pool of platform threads. If one precursor fails, the
+ * others are cancelled and the sweep fails as a whole. On a JVM without
+ * virtual threads, a cached pool of platform threads is used instead.
+ * 
+ * The number of concurrent executions of one {@link Transformation} class
+ * can be limited with {@link #setConcurrency(Class, int)}, for example to the
+ * size of a connection pool. The runner of a running workflow can be found
+ * with {@link TransformationContext#getRunner()}.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class VirtualThreadRunner extends DefaultRunner {
+
+	private static final Logger logger = Logger.getLogger(VirtualThreadRunner.class);
+
+	private final Map<Class<?>, Limit> limits;
+
+	private ExecutorService executor;
+
+	public VirtualThreadRunner(final Workflow workflow) {
+		super(workflow);
+		limits = new ConcurrentHashMap<Class<?>, Limit>();
+	}
+
+	/**
+	 * @param type
+	 *            a {@link Transformation} class
+	 * @return the maximum number of concurrent executions of transformations
+	 *         of exactly that class, or {@code 0} if there is no limit
+	 */
+	public int getConcurrency(final Class<? extends Transformation> type) {
+		final Limit limit = limits.get(type);
+		return limit == null ? 0 : limit.concurrency;
+	}
+
+	@Override
+	public Executor getExecutor() {
+		final Executor e = executor;
+		return e == null ? super.getExecutor() : e;
+	}
+
+	/**
+	 * Limits the number of concurrent executions of transformations of
+	 * exactly one class. Executions that are already running don't count for
+	 * the new limit.
+	 * 
+	 * @param type
+	 *            a {@link Transformation} class
+	 * @param concurrency
+	 *            the maximum number of concurrent executions, or {@code 0} for
+	 *            no limit
+	 */
+	public void setConcurrency(final Class<? extends Transformation> type, final int concurrency) {
+		if (concurrency < 0) {
+			throw new IllegalArgumentException("concurrency must not be negative: " + concurrency);
+		}
+		if (concurrency == 0) {
+			limits.remove(type);
+		} else {
+			limits.put(type, new Limit(concurrency));
+		}
+	}
+
+	@Override
+	protected boolean doStart() {
+		executor = newExecutor();
+		return super.doStart();
+	}
+
+	@Override
+	protected void doStop() {
+		super.doStop();
+		executor.shutdown();
+		executor = null;
+	}
+
+	/**
+	 * Runs the transformation without the monitor that
+	 * {@link TransformationContext#executeTransformation()} takes: the claim
+	 * of the sweep already excludes concurrent executions, and a blocking
+	 * transformation inside a monitor would pin its virtual thread to the
+	 * carrier thread. Other implementations of {@link TransformationContext}
+	 * don't reveal their transformation, so they are executed through the
+	 * interface, without a limit.
+	 */
+	@Override
+	protected void execute(final TransformationContext tcontext) {
+		if (!(tcontext instanceof DefaultTransformationContext)) {
+			tcontext.executeTransformation();
+			return;
+		}
+		final DefaultTransformationContext context = (DefaultTransformationContext) tcontext;
+		final Limit limit = limits.get(context.getTransformation().getClass());
+		if (limit == null) {
+			context.runTransformation();
+			return;
+		}
+		try {
+			limit.acquire();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LongbowException("Interrupted while waiting to execute " + tcontext, e);
+		}
+		try {
+			context.runTransformation();
+		} finally {
+			limit.release();
+		}
+	}
+
+	@Override
+	protected void sweepPrecursors(final TransformationContext tcontext) {
+		final List<TransformationContext> precursors = workflow.getPrecursors(tcontext);
+		final List<Future<?>> forked = new ArrayList<Future<?>>(precursors.size());
+		for (final TransformationContext precursor : precursors) {
+			if (!markAndSweeps.get(precursor).isValid()) {
+				forked.add(executor.submit(new Runnable() {
+
+					public void run() {
+						precursor.sweep();
+					}
+				}));
+			}
+		}
+		join(forked);
+	}
+
+	/**
+	 * Waits for all forked sweeps. If one of them fails, the others are
+	 * cancelled.
+	 */
+	private static void join(final List<Future<?>> forked) {
+		for (int i = 0; i < forked.size(); i++) {
+			try {
+				forked.get(i).get();
+			} catch (final InterruptedException e) {
+				cancel(forked);
+				Thread.currentThread().interrupt();
+				throw new LongbowException("Interrupted while sweeping precursors", e);
+			} catch (final ExecutionException e) {
+				cancel(forked);
+				throw new LongbowException("Error while sweeping precursors", e.getCause());
+			}
+		}
+	}
+
+	private static void cancel(final List<Future<?>> forked) {
+		for (final Future<?> future : forked) {
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * Creates an executor with a new virtual thread for every task. Virtual
+	 * threads are looked up reflectively, so that this runner still works on
+	 * older JVMs.
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (final Exception e) {
+			logger.warn("Virtual threads are not available, using platform threads");
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * A fair semaphore that remembers its number of permits
+	 */
+	private static final class Limit extends Semaphore {
+
+		private static final long serialVersionUID = -3105924738201766415L;
+
+		final int concurrency;
+
+		Limit(final int concurrency) {
+			super(concurrency, true);
+			this.concurrency = concurrency;
+		}
+	}
+}
@@ -19,6 +19,7 @@ package longbow.metadata;
 
 
 import static longbow.metadata.BootstrapMetadata.*;
+import longbow.BooleanDataWrapper;
 import longbow.ContextEvent;
 import longbow.DataWrapper;
 import longbow.Metadata;
@@ -68,23 +69,23 @@ abstract class BinaryOperatorTransformation implements Transformation {
 
 	private static final Metadata acceptDataMetadata = getBooleanMetadata();
 
-	protected Boolean formerAcceptData;
+	protected boolean formerAcceptData;
 
-	protected Boolean formerAcceptMetadata;
+	protected boolean formerAcceptMetadata;
 
-	protected Boolean formerIsMetadataAccepted;
+	protected boolean formerIsMetadataAccepted;
 
-	protected Boolean latterIsMetadataAccepted;
+	protected boolean latterIsMetadataAccepted;
 
-	protected Boolean latterAcceptMetadata;
+	protected boolean latterAcceptMetadata;
 
-	protected Boolean latterAcceptData;
+	protected boolean latterAcceptData;
 
-	protected Boolean isMetadataAccepted;
+	protected boolean isMetadataAccepted;
 
-	protected Boolean acceptMetadata;
+	protected boolean acceptMetadata;
 
-	protected Boolean acceptData;
+	protected boolean acceptData;
 
 	private DataWrapper formerAcceptDataWrapper;
 
@@ -124,18 +125,18 @@ abstract class BinaryOperatorTransformation implements Transformation {
 	}
 
 	public void exportData() {
-		isMetadataAcceptedWrapper.setData(isMetadataAccepted);
-		acceptMetadataWrapper.setData(acceptMetadata);
-		acceptDataWrapper.setData(acceptData);
+		setBoolean(isMetadataAcceptedWrapper, isMetadataAccepted);
+		setBoolean(acceptMetadataWrapper, acceptMetadata);
+		setBoolean(acceptDataWrapper, acceptData);
 	}
 
 	public void importData() {
-		formerAcceptData = (Boolean) formerAcceptDataWrapper.getData();
-		latterIsMetadataAccepted = (Boolean) latterIsMetadataAcceptedWrapper.getData();
-		formerAcceptMetadata = (Boolean) formerAcceptMetadataWrapper.getData();
-		latterAcceptMetadata = (Boolean) latterAcceptMetadataWrapper.getData();
-		latterAcceptData = (Boolean) latterAcceptDataWrapper.getData();
-		formerIsMetadataAccepted = (Boolean) formerIsMetadataAcceptedWrapper.getData();
+		formerAcceptData = getBoolean(formerAcceptDataWrapper);
+		latterIsMetadataAccepted = getBoolean(latterIsMetadataAcceptedWrapper);
+		formerAcceptMetadata = getBoolean(formerAcceptMetadataWrapper);
+		latterAcceptMetadata = getBoolean(latterAcceptMetadataWrapper);
+		latterAcceptData = getBoolean(latterAcceptDataWrapper);
+		formerIsMetadataAccepted = getBoolean(formerIsMetadataAcceptedWrapper);
 	}
 
 	public boolean isExecutable() {
@@ -160,24 +161,45 @@ abstract class BinaryOperatorTransformation implements Transformation {
 	}
 
 	public void stopExecution() {
-		formerAcceptData = null;
+		formerAcceptData = false;
 		formerAcceptDataWrapper = null;
-		latterIsMetadataAccepted = null;
+		latterIsMetadataAccepted = false;
 		latterIsMetadataAcceptedWrapper = null;
-		formerAcceptMetadata = null;
+		formerAcceptMetadata = false;
 		formerAcceptMetadataWrapper = null;
-		latterAcceptMetadata = null;
+		latterAcceptMetadata = false;
 		latterAcceptMetadataWrapper = null;
-		latterAcceptData = null;
+		latterAcceptData = false;
 		latterAcceptDataWrapper = null;
-		formerIsMetadataAccepted = null;
+		formerIsMetadataAccepted = false;
 		formerIsMetadataAcceptedWrapper = null;
-		isMetadataAccepted = null;
+		isMetadataAccepted = false;
 		isMetadataAcceptedWrapper = null;
-		acceptMetadata = null;
+		acceptMetadata = false;
 		acceptMetadataWrapper = null;
-		acceptData = null;
+		acceptData = false;
 		acceptDataWrapper = null;
 	}
 
+	/**
+	 * Reads a boolean without unboxing it, if the wrapper allows that.
+	 */
+	static boolean getBoolean(final DataWrapper wrapper) {
+		if (wrapper instanceof BooleanDataWrapper) {
+			return ((BooleanDataWrapper) wrapper).getBoolean();
+		}
+		return (Boolean) wrapper.getData();
+	}
+
+	/**
+	 * Writes a boolean without boxing it, if the wrapper allows that.
+	 */
+	static void setBoolean(final DataWrapper wrapper, final boolean value) {
+		if (wrapper instanceof BooleanDataWrapper) {
+			((BooleanDataWrapper) wrapper).setBoolean(value);
+		} else {
+			wrapper.setData(value);
+		}
+	}
+
 }
@@ -19,6 +19,7 @@ package longbow.metadata;
 
 
 import longbow.Metadata;
+import longbow.TypedMetadata;
 import longbow.Workflow;
 
 /**
@@ -48,12 +49,16 @@ abstract class BootstrapMetadata implements Metadata {
 		return metadataMetadata;
 	}
 
-	static class BooleanMetadata extends BootstrapMetadata {
+	static class BooleanMetadata extends BootstrapMetadata implements TypedMetadata {
 
 		public boolean acceptsData(final Object data) {
 			return data != null && data instanceof Boolean;
 		}
 
+		public Class<?> getDataClass() {
+			return Boolean.class;
+		}
+
 		public boolean acceptsMetadata(final Metadata other) {
 			return other == this;
 		}
@@ -19,17 +19,29 @@ package longbow.metadata;
 
 
 import longbow.Metadata;
+import longbow.TypedMetadata;
 
 /**
  * Defines the set of all possible objects of type T. null is always accepted.
  * 
+ * Decisions about the runtime class of data are cached. The first two classes
+ * that are checked are kept in an inline cache, so checking data of the same
+ * one or two classes over and over again only compares references. Other
+ * classes are looked up in a {@link ClassValue}.
+ * 
  * @author Philip van Oosten
  * 
  */
-public class ClassMetadata implements LeafMetadata {
+public class ClassMetadata implements LeafMetadata, TypedMetadata {
 
 	private final Class<?> acceptedClass;
 
+	private final ClassValue<Boolean> decisions;
+
+	private volatile Decision first;
+
+	private volatile Decision second;
+
 	/**
 	 * @param clazz
 	 *            The class of which all instances and all instances of
@@ -40,10 +52,39 @@ public class ClassMetadata implements LeafMetadata {
 			throw new NullPointerException();
 		}
 		acceptedClass = clazz;
+		decisions = new ClassValue<Boolean>() {
+
+			@Override
+			protected Boolean computeValue(final Class<?> type) {
+				return acceptedClass.isAssignableFrom(type);
+			}
+		};
 	}
 
 	public boolean acceptsData(final Object data) {
-		return data == null || acceptedClass.isAssignableFrom(data.getClass());
+		if (data == null) {
+			return true;
+		}
+		final Class<?> type = data.getClass();
+		if (type == acceptedClass) {
+			return true;
+		}
+		Decision decision = first;
+		if (decision != null && decision.type == type) {
+			return decision.accepted;
+		}
+		decision = second;
+		if (decision != null && decision.type == type) {
+			return decision.accepted;
+		}
+		final boolean accepted = decisions.get(type);
+		// racing threads may overwrite each other's decision, which is harmless
+		if (first == null) {
+			first = new Decision(type, accepted);
+		} else if (second == null) {
+			second = new Decision(type, accepted);
+		}
+		return accepted;
 	}
 
 	public boolean acceptsMetadata(final Metadata other) {
@@ -58,8 +99,27 @@ public class ClassMetadata implements LeafMetadata {
 		return false;
 	}
 
+	public Class<?> getDataClass() {
+		return acceptedClass;
+	}
+
 	public void toMedal(final StringBuffer buf) {
 		buf.append("TYPE IS " + acceptedClass.getCanonicalName());
 	}
 
+	/**
+	 * Whether data of a class is accepted.
+	 */
+	private static final class Decision {
+
+		final Class<?> type;
+
+		final boolean accepted;
+
+		Decision(final Class<?> type, final boolean accepted) {
+			this.type = type;
+			this.accepted = accepted;
+		}
+	}
+
 }
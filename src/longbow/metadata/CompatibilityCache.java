@@ -0,0 +1,144 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.metadata;
+
+
+import longbow.Metadata;
+import longbow.util.LruCache;
+
+/**
+ * Remembers the results of {@link Metadata#acceptsMetadata(Metadata)} for
+ * pairs of metadata objects.
+ * 
+ * Pairs are compared by identity, so metadata is assumed to be immutable.
+ * The cache holds at most {@link #getCapacity()} pairs and evicts the least
+ * recently used pair when it is full. It is thread safe.
+ * 
+ * Every workflow checks its connections with a cache of its own. Workflows
+ * don't contend for one lock, and the pairs are released together with the
+ * workflow.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public final class CompatibilityCache {
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private final int capacity;
+
+	private final LruCache<Pair, Boolean> results;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of pairs in the cache
+	 */
+	public CompatibilityCache(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.capacity = capacity;
+		results = new LruCache<Pair, Boolean>(capacity);
+	}
+
+	/**
+	 * Returns {@code accepting.acceptsMetadata(accepted)}, computing it only
+	 * if the pair is not in the cache.
+	 * 
+	 * @param accepting
+	 *            the metadata of an input
+	 * @param accepted
+	 *            the metadata of an output
+	 * @return whether {@code accepting} accepts {@code accepted}
+	 */
+	public boolean accepts(final Metadata accepting, final Metadata accepted) {
+		final Pair pair = new Pair(accepting, accepted);
+		final Boolean cached = results.get(pair);
+		if (cached != null) {
+			return cached;
+		}
+		// the cache is not locked while the metadata is checked
+		final boolean result = accepting.acceptsMetadata(accepted);
+		results.put(pair, result);
+		return result;
+	}
+
+	public void clear() {
+		results.clear();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of calls to {@link #accepts(Metadata, Metadata)}
+	 *         that were answered from the cache
+	 */
+	public long getHits() {
+		return results.getHits();
+	}
+
+	/**
+	 * @return the number of calls to {@link #accepts(Metadata, Metadata)}
+	 *         that had to check the metadata
+	 */
+	public long getMisses() {
+		return results.getMisses();
+	}
+
+	public int size() {
+		return results.size();
+	}
+
+	@Override
+	public String toString() {
+		synchronized (results) {
+			return "CompatibilityCache[size=" + results.size() + ", capacity=" + capacity + ", hits=" + results.getHits() + ", misses=" + results.getMisses() + "]";
+		}
+	}
+
+	/**
+	 * Two metadata objects, compared by identity.
+	 */
+	private static final class Pair {
+
+		private final Metadata accepting;
+
+		private final Metadata accepted;
+
+		Pair(final Metadata accepting, final Metadata accepted) {
+			this.accepting = accepting;
+			this.accepted = accepted;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Pair)) {
+				return false;
+			}
+			final Pair other = (Pair) obj;
+			return accepting == other.accepting && accepted == other.accepted;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(accepting) + System.identityHashCode(accepted);
+		}
+	}
+}
@@ -63,6 +63,10 @@ class Medal implements MedalConstants {
 
 	private Workflow checker;
 
+	private MedalExpression expression;
+
+	private boolean compiled;
+
 	private int jj_ntk;
 
 	private int jj_gen;
@@ -105,6 +109,14 @@ class Medal implements MedalConstants {
 		}
 	}
 
+	/**
+	 * Creates a parser that only builds a checker for an existing parse tree.
+	 */
+	Medal(final MedalExpression expression) {
+		this((MedalTokenManager) null);
+		this.expression = expression;
+	}
+
 	public Medal(final MedalTokenManager tm) {
 		token_source = tm;
 		token = new Token();
@@ -121,22 +133,22 @@ class Medal implements MedalConstants {
 	final public void enable_tracing() {
 	}
 
-	final public TransformationContext Factor() throws ParseException {
-		TransformationContext ctx;
+	final public MedalExpression Factor() throws ParseException {
+		MedalExpression e;
 		switch (jj_ntk == -1 ? jj_ntk() : jj_ntk) {
 		case LEFT_BRACKET:
 			jj_consume_token(LEFT_BRACKET);
-			ctx = OrClause();
+			e = OrClause();
 			jj_consume_token(RIGHT_BRACKET);
 			break;
 		case NOT:
-			ctx = NotClause();
+			e = NotClause();
 			break;
 		case ACCEPT_ALL:
 		case ACCEPT_NONE:
 		case TYPE_IS:
 		case NOT_NULL:
-			ctx = LeafClause();
+			e = LeafClause();
 			break;
 		default:
 			jj_la1[4] = jj_gen;
@@ -145,7 +157,7 @@ class Medal implements MedalConstants {
 		}
 		{
 			if (true) {
-				return ctx;
+				return e;
 			}
 		}
 		throw new Error("Missing return statement in function");
@@ -207,7 +219,7 @@ class Medal implements MedalConstants {
 		return t;
 	}
 
-	final public TransformationContext LeafClause() throws ParseException {
+	final public MedalExpression LeafClause() throws ParseException {
 		LeafMetadata metadata;
 		Token t;
 		switch (jj_ntk == -1 ? jj_ntk() : jj_ntk) {
@@ -245,28 +257,28 @@ class Medal implements MedalConstants {
 		}
 		{
 			if (true) {
-				return addLeafMetadata(metadata);
+				return MedalExpression.leaf(metadata);
 			}
 		}
 		throw new Error("Missing return statement in function");
 	}
 
-	final public TransformationContext NotClause() throws ParseException {
-		TransformationContext ctx;
+	final public MedalExpression NotClause() throws ParseException {
+		MedalExpression e;
 		jj_consume_token(NOT);
-		ctx = Factor();
+		e = Factor();
 		{
 			if (true) {
-				return not(ctx);
+				return MedalExpression.not(e);
 			}
 		}
 		throw new Error("Missing return statement in function");
 	}
 
-	final public TransformationContext OrClause() throws ParseException {
-		TransformationContext ctx;
-		TransformationContext tmp;
-		ctx = Term();
+	final public MedalExpression OrClause() throws ParseException {
+		MedalExpression e;
+		MedalExpression tmp;
+		e = Term();
 		switch (jj_ntk == -1 ? jj_ntk() : jj_ntk) {
 		case OR:
 		case NOR:
@@ -275,17 +287,17 @@ class Medal implements MedalConstants {
 			case OR:
 				jj_consume_token(OR);
 				tmp = OrClause();
-				ctx = connectBinaryOperator(ctx, tmp, new OrTransformation());
+				e = MedalExpression.or(e, tmp);
 				break;
 			case NOR:
 				jj_consume_token(NOR);
 				tmp = OrClause();
-				ctx = connectBinaryOperator(ctx, tmp, new NorTransformation());
+				e = MedalExpression.nor(e, tmp);
 				break;
 			case XOR:
 				jj_consume_token(XOR);
 				tmp = OrClause();
-				ctx = connectBinaryOperator(ctx, tmp, new XorTransformation());
+				e = MedalExpression.xor(e, tmp);
 				break;
 			default:
 				jj_la1[0] = jj_gen;
@@ -299,58 +311,20 @@ class Medal implements MedalConstants {
 		}
 		{
 			if (true) {
-				return ctx;
+				return e;
 			}
 		}
 		throw new Error("Missing return statement in function");
 	}
 
 	final public void Parse() throws ParseException {
-		checker = new DefaultWorkflow();
-
-		dataSetter = new Setter(BootstrapMetadata.getDataMetadata());
-		metadataSetter = new Setter(BootstrapMetadata.getMetadataMetadata());
-		// inject any kind of metadata, to let metadataSetter be executable
-		metadataSetter.inject(BootstrapMetadata.getMetadataMetadata()); // :) ;)
-
-		ctxDataSetter = checker.add(dataSetter);
-		ctxMetadataSetter = checker.add(metadataSetter);
-
-		TransformationContext ctx;
-		ctx = OrClause();
+		MedalExpression e;
+		e = OrClause();
 		jj_consume_token(0);
-		acceptDataGetter = new Getter(BootstrapMetadata.getBooleanMetadata());
-		acceptsGetter = new Getter(BootstrapMetadata.getBooleanMetadata());
-		isAcceptedGetter = new Getter(BootstrapMetadata.getBooleanMetadata());
-
-		final TransformationContext ctxAcceptDataGetter = checker.add(acceptDataGetter);
-		final TransformationContext ctxAcceptsGetter = checker.add(acceptsGetter);
-		final TransformationContext ctxIsAcceptedGetter = checker.add(isAcceptedGetter);
-
-		if (!checker.connect(ctx, OUT_ACCEPT_DATA, ctxAcceptDataGetter, Getter.IN_DATA)) {
-			if (true) {
-				throw new ParseException("Can't connect getter");
-			}
-		}
-		if (!checker.connect(ctx, OUT_ACCEPT_METADATA, ctxAcceptsGetter, Getter.IN_DATA)) {
-			if (true) {
-				throw new ParseException("Can't connect getter");
-			}
-		}
-		if (!checker.connect(ctx, OUT_IS_METADATA_ACCEPTED, ctxIsAcceptedGetter, Getter.IN_DATA)) {
-			if (true) {
-				throw new ParseException("Can't connect getter");
-			}
-		}
-
-		if (!checker.isExecutable()) {
-			{
-				if (true) {
-					throw new ParseException("The metadata checker is not executable.");
-				}
-			}
+		expression = e;
+		if (!compiled) {
+			buildChecker();
 		}
-		checker.execute();
 	}
 
 	public void ReInit(final java.io.InputStream stream) {
@@ -393,10 +367,10 @@ class Medal implements MedalConstants {
 		}
 	}
 
-	final public TransformationContext Term() throws ParseException {
-		TransformationContext ctx;
-		TransformationContext tmp;
-		ctx = Factor();
+	final public MedalExpression Term() throws ParseException {
+		MedalExpression e;
+		MedalExpression tmp;
+		e = Factor();
 		label_1: while (true) {
 			switch (jj_ntk == -1 ? jj_ntk() : jj_ntk) {
 			case AND:
@@ -411,12 +385,12 @@ class Medal implements MedalConstants {
 			case AND:
 				jj_consume_token(AND);
 				tmp = Factor();
-				ctx = connectBinaryOperator(ctx, tmp, new AndTransformation());
+				e = MedalExpression.and(e, tmp);
 				break;
 			case NAND:
 				jj_consume_token(NAND);
 				tmp = Factor();
-				ctx = connectBinaryOperator(ctx, tmp, new NandTransformation());
+				e = MedalExpression.nand(e, tmp);
 				break;
 			default:
 				jj_la1[3] = jj_gen;
@@ -426,7 +400,7 @@ class Medal implements MedalConstants {
 		}
 		{
 			if (true) {
-				return ctx;
+				return e;
 			}
 		}
 		throw new Error("Missing return statement in function");
@@ -458,6 +432,59 @@ class Medal implements MedalConstants {
 		return checker;
 	}
 
+	/**
+	 * @return the parse tree of the script
+	 */
+	MedalExpression getExpression() {
+		return expression;
+	}
+
+	/**
+	 * In compiled mode, only the parse tree is built, no checker workflow.
+	 */
+	void setCompiled(final boolean compiled) {
+		this.compiled = compiled;
+	}
+
+	void buildChecker() throws ParseException {
+		checker = new DefaultWorkflow();
+		checker.beginBatch();
+
+		dataSetter = new Setter(BootstrapMetadata.getDataMetadata());
+		metadataSetter = new Setter(BootstrapMetadata.getMetadataMetadata());
+		// inject any kind of metadata, to let metadataSetter be executable
+		metadataSetter.inject(BootstrapMetadata.getMetadataMetadata()); // :) ;)
+
+		ctxDataSetter = checker.add(dataSetter);
+		ctxMetadataSetter = checker.add(metadataSetter);
+
+		final TransformationContext ctx = expression.addTo(this);
+
+		acceptDataGetter = new Getter(BootstrapMetadata.getBooleanMetadata());
+		acceptsGetter = new Getter(BootstrapMetadata.getBooleanMetadata());
+		isAcceptedGetter = new Getter(BootstrapMetadata.getBooleanMetadata());
+
+		final TransformationContext ctxAcceptDataGetter = checker.add(acceptDataGetter);
+		final TransformationContext ctxAcceptsGetter = checker.add(acceptsGetter);
+		final TransformationContext ctxIsAcceptedGetter = checker.add(isAcceptedGetter);
+
+		if (!checker.connect(ctx, OUT_ACCEPT_DATA, ctxAcceptDataGetter, Getter.IN_DATA)) {
+			throw new ParseException("Can't connect getter");
+		}
+		if (!checker.connect(ctx, OUT_ACCEPT_METADATA, ctxAcceptsGetter, Getter.IN_DATA)) {
+			throw new ParseException("Can't connect getter");
+		}
+		if (!checker.connect(ctx, OUT_IS_METADATA_ACCEPTED, ctxIsAcceptedGetter, Getter.IN_DATA)) {
+			throw new ParseException("Can't connect getter");
+		}
+		checker.endBatch();
+
+		if (!checker.isExecutable()) {
+			throw new ParseException("The metadata checker is not executable.");
+		}
+		checker.execute();
+	}
+
 	Setter getDataSetter() {
 		return dataSetter;
 	}
@@ -470,7 +497,7 @@ class Medal implements MedalConstants {
 		return metadataSetter;
 	}
 
-	private TransformationContext connectBinaryOperator(final TransformationContext former, final TransformationContext latter, final Transformation operator) throws ParseException {
+	TransformationContext connectBinaryOperator(final TransformationContext former, final TransformationContext latter, final Transformation operator) throws ParseException {
 		final TransformationContext ctxOperator = checker.add(operator);
 		if (!checker.connect(former, OUT_ACCEPT_DATA, ctxOperator, IN_FORMER_ACCEPT_DATA)) {
 			throw new ParseException("Can't connect operator");
@@ -518,7 +545,7 @@ class Medal implements MedalConstants {
 		}
 	}
 
-	private TransformationContext not(final TransformationContext ctx) throws ParseException {
+	TransformationContext not(final TransformationContext ctx) throws ParseException {
 		final TransformationContext operator = checker.add(new NotTransformation());
 		// connect the not-transformation to the outputs of ctx
 		if (!checker.connect(ctx, OUT_ACCEPT_DATA, operator, NotTransformation.IN_ACCEPT_DATA)) {
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.metadata;
+
+
+import longbow.Metadata;
+import longbow.TransformationContext;
+
+/**
+ * A node in the parse tree of a Medal script.
+ * 
+ * An expression can be evaluated directly, or it can be added to the checker
+ * workflow of a {@link Medal} parser as a network of
+ * {@link MetadataTransformation}s and boolean operator transformations. Both
+ * give the same results, but evaluating the expression directly is much
+ * faster: there is no workflow to mark and sweep, and binary operators
+ * short-circuit.
+ * 
+ * Expressions are immutable. Evaluating them is thread safe as long as the
+ * {@link Metadata} in the leaves is.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+abstract class MedalExpression {
+
+	/**
+	 * @see Metadata#acceptsData(Object)
+	 */
+	abstract boolean acceptsData(Object data);
+
+	/**
+	 * @see Metadata#acceptsMetadata(Metadata)
+	 */
+	abstract boolean acceptsMetadata(Metadata metadata);
+
+	/**
+	 * @return the value of the {@link MetadataTransformation#OUT_IS_METADATA_ACCEPTED}
+	 *         output of the equivalent checker workflow.
+	 */
+	abstract boolean isMetadataAccepted(Metadata metadata);
+
+	/**
+	 * Adds the transformations for this expression to the checker workflow
+	 * of a parser.
+	 * 
+	 * @return the context with the outputs of this expression
+	 */
+	abstract TransformationContext addTo(Medal medal) throws ParseException;
+
+	static MedalExpression leaf(final Metadata metadata) {
+		return new Leaf(metadata);
+	}
+
+	static MedalExpression not(final MedalExpression operand) {
+		return new Not(operand);
+	}
+
+	static MedalExpression and(final MedalExpression former, final MedalExpression latter) {
+		return new And(former, latter);
+	}
+
+	static MedalExpression nand(final MedalExpression former, final MedalExpression latter) {
+		return not(and(former, latter));
+	}
+
+	static MedalExpression or(final MedalExpression former, final MedalExpression latter) {
+		return new Or(former, latter);
+	}
+
+	static MedalExpression nor(final MedalExpression former, final MedalExpression latter) {
+		return not(or(former, latter));
+	}
+
+	static MedalExpression xor(final MedalExpression former, final MedalExpression latter) {
+		return new Xor(former, latter);
+	}
+
+	/**
+	 * Evaluates a {@link Metadata}, like {@link MetadataTransformation}.
+	 */
+	private static final class Leaf extends MedalExpression {
+
+		private final Metadata metadata;
+
+		Leaf(final Metadata metadata) {
+			this.metadata = metadata;
+		}
+
+		@Override
+		boolean acceptsData(final Object data) {
+			return metadata.acceptsData(data);
+		}
+
+		@Override
+		boolean acceptsMetadata(final Metadata other) {
+			return metadata.acceptsMetadata(other);
+		}
+
+		@Override
+		boolean isMetadataAccepted(final Metadata other) {
+			if (other instanceof MedalMetadata) {
+				return !((MedalMetadata) other).isAcceptedBy(metadata);
+			}
+			return !other.acceptsMetadata(metadata);
+		}
+
+		@Override
+		TransformationContext addTo(final Medal medal) throws ParseException {
+			return medal.addLeafMetadata(metadata);
+		}
+	}
+
+	private static final class Not extends MedalExpression {
+
+		private final MedalExpression operand;
+
+		Not(final MedalExpression operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		boolean acceptsData(final Object data) {
+			return !operand.acceptsData(data);
+		}
+
+		@Override
+		boolean acceptsMetadata(final Metadata metadata) {
+			return !operand.acceptsMetadata(metadata);
+		}
+
+		@Override
+		boolean isMetadataAccepted(final Metadata metadata) {
+			return !operand.isMetadataAccepted(metadata);
+		}
+
+		@Override
+		TransformationContext addTo(final Medal medal) throws ParseException {
+			if (operand instanceof And) {
+				final And and = (And) operand;
+				return medal.connectBinaryOperator(and.former.addTo(medal), and.latter.addTo(medal), new NandTransformation());
+			}
+			if (operand instanceof Or) {
+				final Or or = (Or) operand;
+				return medal.connectBinaryOperator(or.former.addTo(medal), or.latter.addTo(medal), new NorTransformation());
+			}
+			return medal.not(operand.addTo(medal));
+		}
+	}
+
+	private static final class And extends MedalExpression {
+
+		final MedalExpression former;
+
+		final MedalExpression latter;
+
+		And(final MedalExpression former, final MedalExpression latter) {
+			this.former = former;
+			this.latter = latter;
+		}
+
+		@Override
+		boolean acceptsData(final Object data) {
+			return former.acceptsData(data) && latter.acceptsData(data);
+		}
+
+		@Override
+		boolean acceptsMetadata(final Metadata metadata) {
+			return former.acceptsMetadata(metadata) && latter.acceptsMetadata(metadata);
+		}
+
+		@Override
+		boolean isMetadataAccepted(final Metadata metadata) {
+			return former.isMetadataAccepted(metadata) && latter.isMetadataAccepted(metadata);
+		}
+
+		@Override
+		TransformationContext addTo(final Medal medal) throws ParseException {
+			return medal.connectBinaryOperator(former.addTo(medal), latter.addTo(medal), new AndTransformation());
+		}
+	}
+
+	private static final class Or extends MedalExpression {
+
+		final MedalExpression former;
+
+		final MedalExpression latter;
+
+		Or(final MedalExpression former, final MedalExpression latter) {
+			this.former = former;
+			this.latter = latter;
+		}
+
+		@Override
+		boolean acceptsData(final Object data) {
+			return former.acceptsData(data) || latter.acceptsData(data);
+		}
+
+		@Override
+		boolean acceptsMetadata(final Metadata metadata) {
+			return former.acceptsMetadata(metadata) || latter.acceptsMetadata(metadata);
+		}
+
+		@Override
+		boolean isMetadataAccepted(final Metadata metadata) {
+			return former.isMetadataAccepted(metadata) || latter.isMetadataAccepted(metadata);
+		}
+
+		@Override
+		TransformationContext addTo(final Medal medal) throws ParseException {
+			return medal.connectBinaryOperator(former.addTo(medal), latter.addTo(medal), new OrTransformation());
+		}
+	}
+
+	private static final class Xor extends MedalExpression {
+
+		private final MedalExpression former;
+
+		private final MedalExpression latter;
+
+		Xor(final MedalExpression former, final MedalExpression latter) {
+			this.former = former;
+			this.latter = latter;
+		}
+
+		@Override
+		boolean acceptsData(final Object data) {
+			return former.acceptsData(data) != latter.acceptsData(data);
+		}
+
+		@Override
+		boolean acceptsMetadata(final Metadata metadata) {
+			return former.acceptsMetadata(metadata) != latter.acceptsMetadata(metadata);
+		}
+
+		@Override
+		boolean isMetadataAccepted(final Metadata metadata) {
+			return former.isMetadataAccepted(metadata) != latter.isMetadataAccepted(metadata);
+		}
+
+		@Override
+		TransformationContext addTo(final Medal medal) throws ParseException {
+			return medal.connectBinaryOperator(former.addTo(medal), latter.addTo(medal), new XorTransformation());
+		}
+	}
+}
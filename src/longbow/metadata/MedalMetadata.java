@@ -41,6 +41,13 @@ import longbow.transformations.Setter;
  * and
  * <li>fairly easy to read.</li>
  * 
+ * A parsed script is evaluated by a small embedded {@link Workflow}. A
+ * compiled script (see {@link #compile(String)}) evaluates its parse tree
+ * directly. It gives the same results and is much faster.
+ * 
+ * Both are thread safe. Every thread that uses parsed metadata gets its own
+ * checker workflow, so threads never see each other's values.
+ * 
  * @author Philip van Oosten
  * 
  */
@@ -52,46 +59,59 @@ public class MedalMetadata implements Metadata {
 
 	private static final LeafMetadata acceptNone = new AcceptMetadata(false);
 
-	Setter metadataSetter;
-
-	private Getter isMetadataAcceptedGetter;
-
-	@SuppressWarnings("unused")
-	private Workflow checker;
-
-	private Setter dataSetter;
+	/**
+	 * The parse tree of the script.
+	 */
+	private MedalExpression expression;
 
-	private Getter acceptDataGetter;
+	/**
+	 * The checker workflow of each thread, if this metadata is not compiled.
+	 */
+	private ThreadLocal<Checker> checkers;
 
-	private Getter acceptMetadataGetter;
+	/**
+	 * {@code true} if the parse tree is evaluated directly.
+	 */
+	private boolean compiled;
 
 	/**
 	 * Default constructor
 	 */
 	protected MedalMetadata() {
 		// avoid direct instantiation. Static factory methods should be used instead.
-		checker = null;
 	}
 
 	public boolean acceptsData(final Object data) {
-		dataSetter.inject(data);
-		return (Boolean) acceptDataGetter.extract();
+		if (compiled) {
+			return expression.acceptsData(data);
+		}
+		final Checker checker = checkers.get();
+		checker.dataSetter.inject(data);
+		return (Boolean) checker.acceptDataGetter.extract();
 	}
 
 	public boolean acceptsMetadata(final Metadata other) {
 		if (other == this) {
 			return true;
 		}
-		if (!metadataSetter.inject(other)) {
+		if (compiled) {
+			return other != null && expression.acceptsMetadata(other);
+		}
+		final Checker checker = checkers.get();
+		if (!checker.metadataSetter.inject(other)) {
 			assert other == null;
 			return false;
 		}
-		return (Boolean) acceptMetadataGetter.extract();
+		return (Boolean) checker.acceptMetadataGetter.extract();
 	}
 
 	public Boolean isAcceptedBy(final Metadata metadata) {
-		metadataSetter.inject(metadata);
-		return !(Boolean) isMetadataAcceptedGetter.extract();
+		if (compiled) {
+			return !expression.isMetadataAccepted(metadata);
+		}
+		final Checker checker = checkers.get();
+		checker.metadataSetter.inject(metadata);
+		return !(Boolean) checker.isMetadataAcceptedGetter.extract();
 	}
 
 	/**
@@ -115,6 +135,40 @@ public class MedalMetadata implements Metadata {
 		return notNull;
 	}
 
+	/**
+	 * Parses a Medal script into a {@link Metadata} object that evaluates the
+	 * parse tree directly, instead of running a checker workflow.
+	 * 
+	 * @param medalScript
+	 *            The medal script that defines the requested {@link Metadata}.
+	 * @return The compiled {@link MedalMetadata}
+	 */
+	public static final MedalMetadata compile(final Reader medalScript) {
+		final Medal medal = new Medal(medalScript);
+		medal.setCompiled(true);
+		try {
+			medal.Parse();
+		} catch (final ParseException e) {
+			throw new LongbowException("Couldn't parse Medal", e);
+		}
+		final MedalMetadata metadata = new MedalMetadata();
+		metadata.expression = medal.getExpression();
+		metadata.compiled = true;
+		return metadata;
+	}
+
+	/**
+	 * Compiles a medal script provided as a {@link String}
+	 * 
+	 * @param medal
+	 *            the Medal script.
+	 * @return The compiled {@link Metadata} represented by the medal script.
+	 * @see #compile(Reader)
+	 */
+	public static final MedalMetadata compile(final String medal) {
+		return compile(new StringReader(medal));
+	}
+
 	/**
 	 * Parses a Medal script and returns a {@link Metadata} object.
 	 * 
@@ -130,12 +184,10 @@ public class MedalMetadata implements Metadata {
 			throw new LongbowException("Couldn't parse Medal", e);
 		}
 		final MedalMetadata metadata = new MedalMetadata();
-		metadata.checker = medal.getChecker();
-		metadata.dataSetter = medal.getDataSetter();
-		metadata.metadataSetter = medal.getMetadataSetter();
-		metadata.acceptDataGetter = medal.getAcceptDataGetter();
-		metadata.acceptMetadataGetter = medal.getAcceptsMetadataGetter();
-		metadata.isMetadataAcceptedGetter = medal.getIsAcceptedGetter();
+		metadata.expression = medal.getExpression();
+		metadata.checkers = new CheckerPerThread(metadata.expression);
+		// the parsing thread uses the checker that was built while parsing
+		metadata.checkers.set(new Checker(medal));
 		return metadata;
 	}
 
@@ -153,4 +205,58 @@ public class MedalMetadata implements Metadata {
 	public static LeafMetadata subClassOf(final Class<?> clazz) {
 		return new ClassMetadata(clazz);
 	}
+
+	/**
+	 * A checker workflow with its setters and getters. A checker is not thread
+	 * safe: values are injected into the setters and extracted from the
+	 * getters in separate steps. Each thread gets its own checker.
+	 */
+	private static final class Checker {
+
+		@SuppressWarnings("unused")
+		private final Workflow workflow;
+
+		final Setter dataSetter;
+
+		final Setter metadataSetter;
+
+		final Getter acceptDataGetter;
+
+		final Getter acceptMetadataGetter;
+
+		final Getter isMetadataAcceptedGetter;
+
+		Checker(final Medal medal) {
+			workflow = medal.getChecker();
+			dataSetter = medal.getDataSetter();
+			metadataSetter = medal.getMetadataSetter();
+			acceptDataGetter = medal.getAcceptDataGetter();
+			acceptMetadataGetter = medal.getAcceptsMetadataGetter();
+			isMetadataAcceptedGetter = medal.getIsAcceptedGetter();
+		}
+	}
+
+	/**
+	 * Builds a new checker from the parse tree for every thread that uses the
+	 * metadata.
+	 */
+	private static final class CheckerPerThread extends ThreadLocal<Checker> {
+
+		private final MedalExpression expression;
+
+		CheckerPerThread(final MedalExpression expression) {
+			this.expression = expression;
+		}
+
+		@Override
+		protected Checker initialValue() {
+			final Medal medal = new Medal(expression);
+			try {
+				medal.buildChecker();
+			} catch (final ParseException e) {
+				throw new LongbowException("Couldn't build Medal checker", e);
+			}
+			return new Checker(medal);
+		}
+	}
 }
@@ -18,6 +18,7 @@
 package longbow.metadata;
 
 
+import static longbow.metadata.BinaryOperatorTransformation.*;
 import static longbow.metadata.BootstrapMetadata.*;
 import longbow.ContextEvent;
 import longbow.DataWrapper;
@@ -62,15 +63,15 @@ public class MetadataTransformation implements Transformation {
 
 	private DataWrapper isMetadataAcceptedWrapper;
 
-	private Boolean isMetadataAccepted;
+	private boolean isMetadataAccepted;
 
 	private DataWrapper acceptMetadataWrapper;
 
-	private Boolean acceptMetadata;
+	private boolean acceptMetadata;
 
 	private DataWrapper acceptDataWrapper;
 
-	private Boolean acceptData;
+	private boolean acceptData;
 
 	private final Metadata thisMetadata;
 
@@ -94,9 +95,9 @@ public class MetadataTransformation implements Transformation {
 	}
 
 	public void exportData() {
-		isMetadataAcceptedWrapper.setData(isMetadataAccepted);
-		acceptMetadataWrapper.setData(acceptMetadata);
-		acceptDataWrapper.setData(acceptData);
+		setBoolean(isMetadataAcceptedWrapper, isMetadataAccepted);
+		setBoolean(acceptMetadataWrapper, acceptMetadata);
+		setBoolean(acceptDataWrapper, acceptData);
 	}
 
 	public void importData() {
@@ -134,11 +135,11 @@ public class MetadataTransformation implements Transformation {
 		dataWrapper = null;
 		metadata = null;
 		metadataWrapper = null;
-		isMetadataAccepted = null;
+		isMetadataAccepted = false;
 		isMetadataAcceptedWrapper = null;
-		acceptMetadata = null;
+		acceptMetadata = false;
 		acceptMetadataWrapper = null;
-		acceptData = null;
+		acceptData = false;
 		acceptDataWrapper = null;
 	}
 }
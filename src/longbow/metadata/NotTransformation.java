@@ -18,6 +18,7 @@
 package longbow.metadata;
 
 
+import static longbow.metadata.BinaryOperatorTransformation.*;
 import static longbow.metadata.BootstrapMetadata.*;
 import longbow.ContextEvent;
 import longbow.DataWrapper;
@@ -46,17 +47,17 @@ public class NotTransformation implements Transformation {
 
 	private static final Metadata metadata = getBooleanMetadata();
 
-	protected Boolean inAcceptData;
+	protected boolean inAcceptData;
 
-	protected Boolean inAcceptMetadata;
+	protected boolean inAcceptMetadata;
 
-	protected Boolean inIsMetadataAccepted;
+	protected boolean inIsMetadataAccepted;
 
-	protected Boolean isMetadataAccepted;
+	protected boolean isMetadataAccepted;
 
-	protected Boolean acceptMetadata;
+	protected boolean acceptMetadata;
 
-	protected Boolean acceptData;
+	protected boolean acceptData;
 
 	private DataWrapper inAcceptDataWrapper;
 
@@ -87,15 +88,15 @@ public class NotTransformation implements Transformation {
 	}
 
 	public void exportData() {
-		isMetadataAcceptedWrapper.setData(isMetadataAccepted);
-		acceptMetadataWrapper.setData(acceptMetadata);
-		acceptDataWrapper.setData(acceptData);
+		setBoolean(isMetadataAcceptedWrapper, isMetadataAccepted);
+		setBoolean(acceptMetadataWrapper, acceptMetadata);
+		setBoolean(acceptDataWrapper, acceptData);
 	}
 
 	public void importData() {
-		inAcceptData = (Boolean) inAcceptDataWrapper.getData();
-		inAcceptMetadata = (Boolean) inAcceptMetadataWrapper.getData();
-		inIsMetadataAccepted = (Boolean) inIsMetadataAcceptedWrapper.getData();
+		inAcceptData = getBoolean(inAcceptDataWrapper);
+		inAcceptMetadata = getBoolean(inAcceptMetadataWrapper);
+		inIsMetadataAccepted = getBoolean(inIsMetadataAcceptedWrapper);
 	}
 
 	public boolean isExecutable() {
@@ -121,17 +122,17 @@ public class NotTransformation implements Transformation {
 	}
 
 	public void stopExecution() {
-		inAcceptData = null;
+		inAcceptData = false;
 		inAcceptDataWrapper = null;
-		inAcceptMetadata = null;
+		inAcceptMetadata = false;
 		inAcceptMetadataWrapper = null;
-		inIsMetadataAccepted = null;
+		inIsMetadataAccepted = false;
 		inIsMetadataAcceptedWrapper = null;
-		isMetadataAccepted = null;
+		isMetadataAccepted = false;
 		isMetadataAcceptedWrapper = null;
-		acceptMetadata = null;
+		acceptMetadata = false;
 		acceptMetadataWrapper = null;
-		acceptData = null;
+		acceptData = false;
 		acceptDataWrapper = null;
 	}
 
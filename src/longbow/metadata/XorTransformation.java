@@ -27,8 +27,8 @@ class XorTransformation extends BinaryOperatorTransformation {
 
 	@Override
 	public void processData() {
-		acceptData = formerAcceptData.booleanValue() != latterAcceptData.booleanValue();
-		acceptMetadata = formerAcceptMetadata.booleanValue() != latterAcceptMetadata.booleanValue();
-		isMetadataAccepted = formerIsMetadataAccepted.booleanValue() != latterIsMetadataAccepted.booleanValue();
+		acceptData = formerAcceptData != latterAcceptData;
+		acceptMetadata = formerAcceptMetadata != latterAcceptMetadata;
+		isMetadataAccepted = formerIsMetadataAccepted != latterIsMetadataAccepted;
 	}
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.transformations;
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import longbow.TransformationContext;
+import longbow.Workflow;
+
+/**
+ * Extracts the data of several {@link Getter}s as one consistent snapshot.
+ * 
+ * An extraction never blocks injections. It reads the generation of the
+ * {@link Workflow}, sweeps and reads all getters, and reads the generation
+ * again. If an {@link Injection} or {@link Setter#inject(Object)} started or
+ * ended in between, the getters may have seen different input data, so the
+ * extraction is retried. All extracted data is therefore consistent with the
+ * data injected up to one generation.
+ * 
+ * While the generation is odd, the extraction waits until the injection in
+ * progress has ended, but it never holds the
+ * {@link Workflow#getInjectionLock()} while it sweeps, so an injection never
+ * waits for an extraction.
+ * 
+ * All getters must be in the same {@link Workflow}. An {@link Extraction} is
+ * not thread safe, but different extractions can run concurrently.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class Extraction {
+
+	private final List<Getter> getters;
+
+	private long generation;
+
+	public Extraction() {
+		getters = new ArrayList<Getter>();
+		generation = -1L;
+	}
+
+	/**
+	 * Adds a getter to extract data from.
+	 * 
+	 * @param getter
+	 *            the getter
+	 * @return the index of the data of the getter in the result of
+	 *         {@link #extract()}
+	 */
+	public int add(final Getter getter) {
+		if (getter == null) {
+			throw new IllegalArgumentException("getter must not be null");
+		}
+		getters.add(getter);
+		return getters.size() - 1;
+	}
+
+	/**
+	 * Sweeps all getters and returns their data, consistent with one
+	 * generation of injected data.
+	 * 
+	 * @return the data of the getters, in the order they were added
+	 * @throws IllegalArgumentException
+	 *             if the getters are not in the same {@link Workflow}
+	 */
+	public Object[] extract() {
+		final Object[] data = new Object[getters.size()];
+		final Workflow workflow = getWorkflow();
+		if (workflow == null) {
+			// nothing can change the data
+			read(data);
+			return data;
+		}
+		while (true) {
+			final long before = Injection.awaitGeneration(workflow);
+			read(data);
+			if (workflow.getGeneration() == before) {
+				generation = before;
+				return data;
+			}
+		}
+	}
+
+	/**
+	 * @return the generation of the injected data the last
+	 *         {@link #extract()} is consistent with, or {@code -1} if the
+	 *         getters are not in a workflow or nothing was extracted yet.
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return the number of getters to extract data from
+	 */
+	public int size() {
+		return getters.size();
+	}
+
+	private Workflow getWorkflow() {
+		Workflow workflow = null;
+		for (final Getter getter : getters) {
+			final TransformationContext context = getter.getContext();
+			if (context != null) {
+				if (workflow == null) {
+					workflow = context.getWorkflow();
+				} else if (context.getWorkflow() != workflow) {
+					throw new IllegalArgumentException("All getters must be in the same workflow");
+				}
+			}
+		}
+		return workflow;
+	}
+
+	private void read(final Object[] data) {
+		for (int i = 0; i < data.length; i++) {
+			data[i] = getters.get(i).read();
+		}
+	}
+}
@@ -19,13 +19,16 @@ package longbow.transformations;
 
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 
 import longbow.ContextEvent;
-import longbow.DataWrapper;
 import longbow.Input;
 import longbow.Metadata;
+import longbow.Runner;
 import longbow.Transformation;
 import longbow.TransformationContext;
+import longbow.Workflow;
 import longbow.metadata.MedalMetadata;
 
 /**
@@ -41,7 +44,10 @@ public class Getter implements Transformation {
 
 	private final Metadata dataMetadata;
 
-	private DataWrapper dataWrapper;
+	/**
+	 * the slot of the input, resolved when execution starts
+	 */
+	private int dataSlot;
 
 	private Object data;
 
@@ -52,12 +58,18 @@ public class Getter implements Transformation {
 
 	private boolean persistent;
 
+	/**
+	 * The last asynchronous extraction
+	 */
+	private final AtomicReference<Pending> pending;
+
 	public Getter() {
 		this(MedalMetadata.parse("accept all"));
 	}
 
 	public Getter(final Metadata metadata) {
 		dataMetadata = metadata;
+		pending = new AtomicReference<Pending>();
 	}
 
 	public void addToContext(final ContextEvent event) {
@@ -74,25 +86,88 @@ public class Getter implements Transformation {
 	}
 
 	/**
-	 * Get the data from the {@link Input}. Sweeps first.
+	 * Get the data from the {@link Input}. Sweeps first. If data was injected
+	 * during the sweep, it sweeps again, so it never returns a result of only
+	 * a part of an {@link Injection}. It doesn't lock while it sweeps, so
+	 * injections never wait for it.
 	 * 
 	 * @return The data last fetched by this {@link Getter} (might be invalid)
 	 */
 	public Object extract() {
-		if (context != null && context.get() != null) {
-			context.get().sweep();
+		final TransformationContext c = context == null ? null : context.get();
+		if (c == null) {
+			return data;
+		}
+		final Workflow workflow = c.getWorkflow();
+		while (true) {
+			final long generation = Injection.awaitGeneration(workflow);
+			c.sweep();
+			final Object result = data;
+			if (workflow.getGeneration() == generation) {
+				return result;
+			}
+		}
+	}
+
+	/**
+	 * Extracts the data without blocking the caller. The sweep and the
+	 * extraction run on the {@link Runner#getExecutor()} of the runner.
+	 * Callers that ask while an extraction is in flight for the same or a
+	 * newer generation of injected data share its result, so an invalid
+	 * context is swept only once for all of them.
+	 * 
+	 * @return the future result of {@link #extract()}. It is already
+	 *         completed if the workflow isn't running.
+	 */
+	public CompletableFuture<Object> extractAsync() {
+		final TransformationContext c = getContext();
+		final Runner runner = c == null ? null : c.getRunner();
+		if (runner == null) {
+			return CompletableFuture.completedFuture(extract());
+		}
+		final long generation = c.getWorkflow().getGeneration();
+		while (true) {
+			final Pending current = pending.get();
+			if (current != null && current.generation >= generation && !current.future.isDone()) {
+				return current.future;
+			}
+			final Pending next = new Pending(generation);
+			if (pending.compareAndSet(current, next)) {
+				runner.getExecutor().execute(next);
+				return next.future;
+			}
 		}
-		return data;
 	}
 
 	public void importData() {
-		data = dataWrapper.getData();
+		data = getContext().getInputWrapper(dataSlot).getData();
 	}
 
 	public boolean isExecutable() {
 		return true;
 	}
 
+	/**
+	 * @return the context of this getter, or {@code null}
+	 */
+	TransformationContext getContext() {
+		return context == null ? null : context.get();
+	}
+
+	/**
+	 * Sweeps without locking and returns the data. The caller checks the
+	 * generation of the workflow to know if the data is consistent.
+	 * 
+	 * @see Extraction
+	 */
+	Object read() {
+		final TransformationContext c = getContext();
+		if (c != null) {
+			c.sweep();
+		}
+		return data;
+	}
+
 	public void processData() {
 		// collecting data already done in importData()
 	}
@@ -103,7 +178,7 @@ public class Getter implements Transformation {
 
 	public void startExecution(final TransformationContext context) {
 		// initialize inputs
-		dataWrapper = context.getInputWrapper(IN_DATA);
+		dataSlot = context.getInputSlot(IN_DATA);
 		this.context = new WeakReference<TransformationContext>(context);
 	}
 
@@ -112,7 +187,33 @@ public class Getter implements Transformation {
 		if (!persistent) {
 			data = null;
 		}
-		dataWrapper = null;
+		dataSlot = -1;
 		context = null;
 	}
+
+	/**
+	 * An asynchronous extraction and the generation of injected data it
+	 * started in
+	 */
+	private final class Pending implements Runnable {
+
+		final long generation;
+
+		final CompletableFuture<Object> future;
+
+		Pending(final long generation) {
+			this.generation = generation;
+			future = new CompletableFuture<Object>();
+		}
+
+		public void run() {
+			try {
+				future.complete(extract());
+			} catch (final Throwable e) {
+				// also an Error, or later requests would wait for this future
+				// forever
+				future.completeExceptionally(e);
+			}
+		}
+	}
 }
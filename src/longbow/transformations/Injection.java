@@ -0,0 +1,149 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.transformations;
+
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+import longbow.TransformationContext;
+import longbow.Workflow;
+
+/**
+ * Injects data in several {@link Setter}s as one transaction.
+ * 
+ * All data is checked before anything is injected: if one {@link Setter}
+ * rejects its data, nothing is injected at all. Then all data is injected and
+ * the contexts of the changed setters are marked with one
+ * {@link Workflow#markAll(java.util.Collection)}, while holding the write lock
+ * of {@link Workflow#getInjectionLock()}. Neither a {@link Getter} nor an
+ * {@link Extraction} ever extracts a result that depends on only a part of
+ * the injected data.
+ * 
+ * All setters must be in the same {@link Workflow}. An {@link Injection} is
+ * not thread safe, but different injections can be committed concurrently.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class Injection {
+
+	private final Map<Setter, Object> values;
+
+	public Injection() {
+		values = new LinkedHashMap<Setter, Object>();
+	}
+
+	/**
+	 * Adds data to inject. Data that was added for the same setter before is
+	 * replaced.
+	 * 
+	 * @param setter
+	 *            the setter to inject the data in
+	 * @param data
+	 *            the data to inject
+	 * @return this injection
+	 */
+	public Injection put(final Setter setter, final Object data) {
+		if (setter == null) {
+			throw new IllegalArgumentException("setter must not be null");
+		}
+		values.put(setter, data);
+		return this;
+	}
+
+	/**
+	 * @return the number of setters to inject data in
+	 */
+	public int size() {
+		return values.size();
+	}
+
+	/**
+	 * Injects all data and marks the changed setters in one pass. After a
+	 * successful commit, the injection is empty and can be reused.
+	 * 
+	 * @return whether all data was accepted. If not, nothing is injected.
+	 * @throws IllegalArgumentException
+	 *             if the setters are not in the same {@link Workflow}
+	 */
+	public boolean commit() {
+		Workflow workflow = null;
+		for (final Map.Entry<Setter, Object> entry : values.entrySet()) {
+			final Setter setter = entry.getKey();
+			if (!setter.accepts(entry.getValue())) {
+				return false;
+			}
+			final TransformationContext context = setter.getContext();
+			if (context != null) {
+				if (workflow == null) {
+					workflow = context.getWorkflow();
+				} else if (context.getWorkflow() != workflow) {
+					throw new IllegalArgumentException("All setters must be in the same workflow");
+				}
+			}
+		}
+		if (workflow == null) {
+			// nothing can observe the setters
+			for (final Map.Entry<Setter, Object> entry : values.entrySet()) {
+				entry.getKey().assign(entry.getValue());
+			}
+		} else {
+			final List<TransformationContext> changed = new ArrayList<TransformationContext>(values.size());
+			final Lock lock = workflow.getInjectionLock().writeLock();
+			lock.lock();
+			workflow.beginInjection();
+			try {
+				for (final Map.Entry<Setter, Object> entry : values.entrySet()) {
+					final Setter setter = entry.getKey();
+					final TransformationContext context = setter.getContext();
+					if (setter.assign(entry.getValue()) && context != null) {
+						changed.add(context);
+					}
+				}
+				workflow.markAll(changed);
+			} finally {
+				workflow.endInjection();
+				lock.unlock();
+			}
+		}
+		values.clear();
+		return true;
+	}
+
+	/**
+	 * Waits until no data is being injected in a workflow, without holding up
+	 * the next injection.
+	 * 
+	 * @return the even generation of the workflow
+	 */
+	static long awaitGeneration(final Workflow workflow) {
+		long generation = workflow.getGeneration();
+		while ((generation & 0x1L) != 0x0L) {
+			// the generation is even again before the injector unlocks
+			final Lock lock = workflow.getInjectionLock().readLock();
+			lock.lock();
+			lock.unlock();
+			generation = workflow.getGeneration();
+		}
+		return generation;
+	}
+}
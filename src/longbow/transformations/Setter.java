@@ -21,6 +21,8 @@ package longbow.transformations;
 import static longbow.metadata.MedalMetadata.*;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 
 import longbow.*;
 
@@ -37,7 +39,10 @@ public class Setter implements Transformation {
 
 	private final Metadata dataMetadata;
 
-	private DataWrapper dataWrapper;
+	/**
+	 * the slot of the output, resolved when execution starts
+	 */
+	private int dataSlot;
 
 	private Object data;
 
@@ -45,6 +50,15 @@ public class Setter implements Transformation {
 
 	private WeakReference<TransformationContext> context;
 
+	private Validation validation = Validation.ALWAYS;
+
+	/**
+	 * The number of injected values, for sampled validation. Values are
+	 * checked before the injection lock is taken, so concurrent injections
+	 * count atomically.
+	 */
+	private final AtomicInteger injections;
+
 	public Setter() {
 		this(acceptAll());
 	}
@@ -58,6 +72,7 @@ public class Setter implements Transformation {
 	 */
 	public Setter(final Metadata outputMetadata) {
 		dataMetadata = outputMetadata;
+		injections = new AtomicInteger();
 	}
 
 	public void addToContext(final ContextEvent event) {
@@ -73,7 +88,7 @@ public class Setter implements Transformation {
 	}
 
 	public void exportData() {
-		dataWrapper.setData(data);
+		getContext().getOutputWrapper(dataSlot).setData(data);
 	}
 
 	public void importData() {
@@ -89,15 +104,30 @@ public class Setter implements Transformation {
 	 *         {@link Output} of this.
 	 */
 	public boolean inject(final Object data) {
-		final boolean accepted = dataMetadata.acceptsData(data);
-		if (accepted && this.data != data) {
-			this.data = data;
-			// mark can only take effect in run mode
-			if (context != null && context.get() != null) {
-				context.get().mark();
+		final boolean accepted = accepts(data);
+		if (!accepted) {
+			return false;
+		}
+		final TransformationContext c = getContext();
+		if (c == null) {
+			assign(data);
+			return true;
+		}
+		// one injection at a time, so that readers can tell them apart
+		final Workflow workflow = c.getWorkflow();
+		final Lock lock = workflow.getInjectionLock().writeLock();
+		lock.lock();
+		workflow.beginInjection();
+		try {
+			if (assign(data)) {
+				// mark can only take effect in run mode
+				c.mark();
 			}
+		} finally {
+			workflow.endInjection();
+			lock.unlock();
 		}
-		return accepted;
+		return true;
 	}
 
 	/**
@@ -111,10 +141,52 @@ public class Setter implements Transformation {
 		return dataMetadata.acceptsData(data);
 	}
 
+	/**
+	 * @return whether the data may be injected, according to the validation
+	 *         of this setter
+	 */
+	boolean accepts(final Object data) {
+		return !validation.validates(injections.getAndIncrement()) || dataMetadata.acceptsData(data);
+	}
+
+	/**
+	 * Replaces the data without marking.
+	 * 
+	 * @return whether the data has changed
+	 */
+	boolean assign(final Object data) {
+		if (this.data == data) {
+			return false;
+		}
+		this.data = data;
+		return true;
+	}
+
+	/**
+	 * @return the context of this setter, or {@code null}
+	 */
+	TransformationContext getContext() {
+		return context == null ? null : context.get();
+	}
+
 	public void processData() {
 		// data will be set in exportData()
 	}
 
+	/**
+	 * @param validation
+	 *            which injected values are checked against the metadata of
+	 *            the output. Use {@link Validation#TRUSTED} only if the
+	 *            callers of {@link #inject(Object)} already guarantee that the
+	 *            data is accepted.
+	 */
+	public void setValidation(final Validation validation) {
+		if (validation == null) {
+			throw new NullPointerException();
+		}
+		this.validation = validation;
+	}
+
 	public void setPersistent(final boolean persistent) {
 		this.persistent = persistent;
 	}
@@ -122,7 +194,7 @@ public class Setter implements Transformation {
 	public void startExecution(final TransformationContext context) {
 		assert this.context.get() == context;
 		// initialize outputs
-		dataWrapper = this.context.get().getOutputWrapper(OUT_DATA);
+		dataSlot = context.getOutputSlot(OUT_DATA);
 	}
 
 	public void stopExecution() {
@@ -131,6 +203,6 @@ public class Setter implements Transformation {
 			// don't keep data for next execution.
 			data = null;
 		}
-		dataWrapper = null;
+		dataSlot = -1;
 	}
 }
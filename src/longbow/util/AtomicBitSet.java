@@ -0,0 +1,153 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.util;
+
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size set of integers that can be changed by several threads
+ * concurrently without locking. Every bit is changed with a compare and swap
+ * of the word it is in, so changes of different bits never get lost.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class AtomicBitSet {
+
+	private final AtomicLongArray words;
+
+	private final int size;
+
+	/**
+	 * @param size
+	 *            the number of integers the set can hold, from {@code 0} up
+	 *            to {@code size - 1}
+	 */
+	public AtomicBitSet(final int size) {
+		this.size = size;
+		words = new AtomicLongArray((size + 63) >>> 6);
+	}
+
+	/**
+	 * @param index
+	 *            an integer
+	 * @return {@code true} if the integer is in the set
+	 */
+	public boolean get(final int index) {
+		return (words.get(index >>> 6) & 1L << index) != 0;
+	}
+
+	/**
+	 * Adds an integer to the set.
+	 * 
+	 * @param index
+	 *            the integer to add
+	 * @return {@code true} if the integer was not in the set before
+	 */
+	public boolean set(final int index) {
+		final int w = index >>> 6;
+		final long bit = 1L << index;
+		long word;
+		do {
+			word = words.get(w);
+			if ((word & bit) != 0) {
+				return false;
+			}
+		} while (!words.compareAndSet(w, word, word | bit));
+		return true;
+	}
+
+	/**
+	 * Adds all integers the set can hold to the set.
+	 */
+	public void setAll() {
+		for (int w = 0; w < size >>> 6; w++) {
+			or(w, -1L);
+		}
+		if ((size & 63) != 0) {
+			or(size >>> 6, -1L >>> 64 - (size & 63));
+		}
+	}
+
+	/**
+	 * Removes an integer from the set.
+	 * 
+	 * @param index
+	 *            the integer to remove
+	 * @return {@code true} if the integer was in the set before
+	 */
+	public boolean clear(final int index) {
+		final int w = index >>> 6;
+		final long bit = 1L << index;
+		long word;
+		do {
+			word = words.get(w);
+			if ((word & bit) == 0) {
+				return false;
+			}
+		} while (!words.compareAndSet(w, word, word & ~bit));
+		return true;
+	}
+
+	/**
+	 * Adds all integers of another set to this set, one word at a time. Other
+	 * threads may see a part of the integers before the others.
+	 * 
+	 * @param set
+	 *            the integers to add. It must not contain integers that don't
+	 *            fit in this set.
+	 */
+	public void or(final SparseBitSet set) {
+		for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i)) {
+			final int w = i >>> 6;
+			or(w, set.getWord(w));
+			if (w == words.length() - 1) {
+				return;
+			}
+			i = w + 1 << 6;
+		}
+	}
+
+	/**
+	 * @param wordIndex
+	 *            the index of the word
+	 * @return 64 consecutive bits of the set, in the same layout as
+	 *         {@link SparseBitSet#getWord(int)}
+	 */
+	public long getWord(final int wordIndex) {
+		return words.get(wordIndex);
+	}
+
+	/**
+	 * @return the number of words in the set
+	 */
+	public int wordCount() {
+		return words.length();
+	}
+
+	private void or(final int w, final long bits) {
+		long word;
+		do {
+			word = words.get(w);
+			if ((word | bits) == word) {
+				return;
+			}
+		} while (!words.compareAndSet(w, word, word | bits));
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.util;
+
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A bounded map that evicts the least recently used entries when the total
+ * weight of its entries exceeds a budget. By default, every entry weighs one,
+ * so the budget is the maximum number of entries.
+ * 
+ * The cache counts hits, misses and evictions. It is thread safe.
+ * 
+ * @param <K>
+ *            the type of the keys
+ * @param <V>
+ *            the type of the values, never {@code null}
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class LruCache<K, V> {
+
+	/**
+	 * Computes the weight of an entry of a {@link LruCache}.
+	 */
+	public interface Weigher<K, V> {
+
+		/**
+		 * @return the weight of the entry, not negative. It must not change
+		 *         while the entry is in the cache.
+		 */
+		long weigh(K key, V value);
+	}
+
+	private final long budget;
+
+	private final Weigher<? super K, ? super V> weigher;
+
+	/**
+	 * in access order, the least recently used entry comes first
+	 */
+	private final LinkedHashMap<K, Weighted<V>> entries;
+
+	private long weight;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of entries in the cache
+	 */
+	public LruCache(final int capacity) {
+		this(capacity, null);
+	}
+
+	/**
+	 * @param budget
+	 *            the maximum total weight of the entries in the cache
+	 * @param weigher
+	 *            computes the weight of every entry, or {@code null} if every
+	 *            entry weighs one
+	 */
+	public LruCache(final long budget, final Weigher<? super K, ? super V> weigher) {
+		if (budget < 1) {
+			throw new IllegalArgumentException("budget must be positive");
+		}
+		this.budget = budget;
+		this.weigher = weigher;
+		entries = new LinkedHashMap<K, Weighted<V>>(16, 0.75f, true);
+	}
+
+	/**
+	 * @return the cached value, or {@code null} if the key is not in the cache
+	 */
+	public synchronized V get(final K key) {
+		final Weighted<V> entry = entries.get(key);
+		if (entry == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.value;
+	}
+
+	/**
+	 * Caches a value, and evicts the least recently used entries if the
+	 * budget is exceeded. A value that weighs more than the whole budget is
+	 * not cached.
+	 * 
+	 * @param key
+	 * @param value
+	 *            the value to cache, not {@code null}
+	 */
+	public synchronized void put(final K key, final V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("value must not be null");
+		}
+		final long w = weigher == null ? 1L : weigher.weigh(key, value);
+		if (w < 0) {
+			throw new IllegalArgumentException("weight must not be negative");
+		}
+		final Weighted<V> previous = entries.remove(key);
+		if (previous != null) {
+			weight -= previous.weight;
+		}
+		if (w > budget) {
+			return;
+		}
+		entries.put(key, new Weighted<V>(value, w));
+		weight += w;
+		final Iterator<Weighted<V>> eldest = entries.values().iterator();
+		while (weight > budget) {
+			weight -= eldest.next().weight;
+			eldest.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Removes all entries and resets the statistics.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @return the number of entries that were removed to stay within the
+	 *         budget
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the number of calls to {@link #get(Object)} that found a value
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the fraction of calls to {@link #get(Object)} that found a
+	 *         value, or {@code 0} if it hasn't been called yet
+	 */
+	public synchronized double getHitRate() {
+		final long requests = hits + misses;
+		return requests == 0 ? 0.0 : (double) hits / requests;
+	}
+
+	/**
+	 * @return the number of calls to {@link #get(Object)} that found nothing
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the total weight of the entries in the cache
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "LruCache[size=" + entries.size() + ", weight=" + weight + ", budget=" + budget + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+	}
+
+	/**
+	 * A value with its weight.
+	 */
+	private static final class Weighted<V> {
+
+		final V value;
+
+		final long weight;
+
+		Weighted(final V value, final long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+}
@@ -0,0 +1,627 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.util;
+
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of non-negative integers, with a part of the operations of
+ * {@link java.util.BitSet}.
+ * 
+ * The integers are split in blocks of 65536 by their upper 16 bits. Empty
+ * blocks take no memory at all. Other blocks are stored either as a sorted
+ * list of runs of consecutive integers, or as a plain bitmap of 1024 words,
+ * whichever is smaller. Operations between two bitmaps are word-parallel,
+ * operations between two run lists merge the runs.
+ * 
+ * Sets like the transitive closure of a long chain, that consist of a few long
+ * runs, only take a few bytes, no matter how many integers they contain.
+ * 
+ * This class is not thread safe.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class SparseBitSet implements Cloneable {
+
+	/**
+	 * Number of integers in a block
+	 */
+	private static final int BLOCK = 1 << 16;
+
+	/**
+	 * Number of words in a bitmap
+	 */
+	private static final int WORDS = BLOCK >>> 6;
+
+	/**
+	 * A list of runs that takes more memory than a bitmap is stored as a bitmap
+	 */
+	private static final int MAX_RUNS = WORDS * 2;
+
+	/**
+	 * upper 16 bits of the integers in each block, in ascending order
+	 */
+	private char[] keys;
+
+	private Container[] containers;
+
+	/**
+	 * number of non-empty blocks
+	 */
+	private int size;
+
+	public SparseBitSet() {
+		keys = new char[4];
+		containers = new Container[4];
+	}
+
+	/**
+	 * Checks if an integer is in the set.
+	 * 
+	 * @param index
+	 *            the integer to look for
+	 * @return {@code true} if the integer is in the set
+	 */
+	public boolean get(final int index) {
+		checkIndex(index);
+		final int i = find(high(index));
+		return i >= 0 && containers[i].contains(low(index));
+	}
+
+	/**
+	 * Adds an integer to the set.
+	 * 
+	 * @param index
+	 *            the integer to add
+	 */
+	public void set(final int index) {
+		checkIndex(index);
+		final int i = find(high(index));
+		if (i >= 0) {
+			containers[i] = containers[i].add(low(index));
+		} else {
+			insertAt(-i - 1, high(index), new RunContainer(low(index), low(index)));
+		}
+	}
+
+	/**
+	 * Adds all integers of another set to this set.
+	 * 
+	 * @param set
+	 *            the integers to add
+	 */
+	public void or(final SparseBitSet set) {
+		if (set == this || set.size == 0) {
+			return;
+		}
+		final char[] k = new char[size + set.size];
+		final Container[] c = new Container[size + set.size];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while (i < size && j < set.size) {
+			if (keys[i] < set.keys[j]) {
+				k[n] = keys[i];
+				c[n++] = containers[i++];
+			} else if (keys[i] > set.keys[j]) {
+				k[n] = set.keys[j];
+				c[n++] = set.containers[j++].copy();
+			} else {
+				k[n] = keys[i];
+				c[n++] = containers[i++].or(set.containers[j++]);
+			}
+		}
+		for (; i < size; i++) {
+			k[n] = keys[i];
+			c[n++] = containers[i];
+		}
+		for (; j < set.size; j++) {
+			k[n] = set.keys[j];
+			c[n++] = set.containers[j].copy();
+		}
+		keys = k;
+		containers = c;
+		size = n;
+	}
+
+	/**
+	 * Finds the smallest integer in the set that is not smaller than
+	 * {@code fromIndex}.
+	 * 
+	 * @param fromIndex
+	 *            where to start looking
+	 * @return the integer that was found, or {@code -1} if there is none
+	 */
+	public int nextSetBit(final int fromIndex) {
+		checkIndex(fromIndex);
+		final char key = high(fromIndex);
+		int i = find(key);
+		if (i < 0) {
+			i = -i - 1;
+		}
+		for (; i < size; i++) {
+			final int next = containers[i].next(keys[i] == key ? low(fromIndex) : 0);
+			if (next >= 0) {
+				return keys[i] << 16 | next;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns 64 consecutive bits of the set as a word, in the same layout as
+	 * {@link java.util.BitSet#toLongArray()}: bit {@code i} of word
+	 * {@code w} is integer {@code 64 * w + i}.
+	 * 
+	 * @param wordIndex
+	 *            the index of the word
+	 * @return the word
+	 */
+	public long getWord(final int wordIndex) {
+		if (wordIndex < 0) {
+			throw new IndexOutOfBoundsException("wordIndex < 0: " + wordIndex);
+		}
+		final int i = find((char) (wordIndex >>> 10));
+		return i >= 0 ? containers[i].word(wordIndex & WORDS - 1) : 0L;
+	}
+
+	@Override
+	public SparseBitSet clone() {
+		try {
+			final SparseBitSet clone = (SparseBitSet) super.clone();
+			clone.keys = keys.clone();
+			clone.containers = containers.clone();
+			for (int i = 0; i < size; i++) {
+				clone.containers[i] = containers[i].copy();
+			}
+			return clone;
+		} catch (final CloneNotSupportedException e) {
+			throw new InternalError();
+		}
+	}
+
+	private void checkIndex(final int index) {
+		if (index < 0) {
+			throw new IndexOutOfBoundsException("index < 0: " + index);
+		}
+	}
+
+	/**
+	 * @return the position of the block with the given key, or
+	 *         {@code -(insertion point) - 1} if there is no such block.
+	 */
+	private int find(final char key) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			if (keys[middle] < key) {
+				low = middle + 1;
+			} else if (keys[middle] > key) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -(low + 1);
+	}
+
+	private void insertAt(final int i, final char key, final Container container) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(containers, i, containers, i + 1, size - i);
+		keys[i] = key;
+		containers[i] = container;
+		size++;
+	}
+
+	private static char high(final int index) {
+		return (char) (index >>> 16);
+	}
+
+	private static int low(final int index) {
+		return index & BLOCK - 1;
+	}
+
+	/**
+	 * The integers of one block. Operations return the resulting container,
+	 * or {@code null} if it is empty. They may change the container they are
+	 * called on, but never their argument.
+	 */
+	private static abstract class Container {
+
+		abstract boolean contains(int low);
+
+		abstract int next(int from);
+
+		abstract Container add(int low);
+
+		/**
+		 * @return a container with the same contents, that can be changed
+		 *         independently of this one
+		 */
+		abstract Container copy();
+
+		abstract Container or(Container container);
+
+		/**
+		 * @return a new bitmap with the contents of this container
+		 */
+		abstract long[] toWords();
+
+		abstract long word(int wordIndex);
+	}
+
+	/**
+	 * Sorted, disjoint, non-adjacent runs of integers. Instances are never
+	 * changed.
+	 */
+	private static final class RunContainer extends Container {
+
+		/**
+		 * first and last integer of each run
+		 */
+		private final char[] runs;
+
+		RunContainer(final int start, final int end) {
+			runs = new char[] { (char) start, (char) end };
+		}
+
+		private RunContainer(final char[] runs) {
+			this.runs = runs;
+		}
+
+		private int start(final int run) {
+			return runs[run << 1];
+		}
+
+		private int end(final int run) {
+			return runs[(run << 1) + 1];
+		}
+
+		private int count() {
+			return runs.length >>> 1;
+		}
+
+		/**
+		 * @return the first run that ends at or after {@code low}, or the
+		 *         number of runs if there is none
+		 */
+		private int search(final int low) {
+			int l = 0;
+			int h = count() - 1;
+			while (l <= h) {
+				final int m = (l + h) >>> 1;
+				if (end(m) < low) {
+					l = m + 1;
+				} else {
+					h = m - 1;
+				}
+			}
+			return l;
+		}
+
+		@Override
+		boolean contains(final int low) {
+			final int r = search(low);
+			return r < count() && start(r) <= low;
+		}
+
+		@Override
+		int next(final int from) {
+			final int r = search(from);
+			return r < count() ? Math.max(start(r), from) : -1;
+		}
+
+		@Override
+		Container add(final int low) {
+			final int r = search(low);
+			if (r < count() && start(r) <= low) {
+				return this;
+			}
+			final boolean extendsPrevious = r > 0 && end(r - 1) + 1 == low;
+			final boolean extendsNext = r < count() && start(r) - 1 == low;
+			final char[] result;
+			if (extendsPrevious && extendsNext) {
+				// join both runs
+				result = new char[runs.length - 2];
+				System.arraycopy(runs, 0, result, 0, (r << 1) - 1);
+				System.arraycopy(runs, (r << 1) + 1, result, (r << 1) - 1, runs.length - (r << 1) - 1);
+			} else if (extendsPrevious) {
+				result = runs.clone();
+				result[(r << 1) - 1] = (char) low;
+			} else if (extendsNext) {
+				result = runs.clone();
+				result[r << 1] = (char) low;
+			} else {
+				if (count() == MAX_RUNS) {
+					return new BitmapContainer(toWords()).add(low);
+				}
+				result = new char[runs.length + 2];
+				System.arraycopy(runs, 0, result, 0, r << 1);
+				result[r << 1] = (char) low;
+				result[(r << 1) + 1] = (char) low;
+				System.arraycopy(runs, r << 1, result, (r << 1) + 2, runs.length - (r << 1));
+			}
+			return new RunContainer(result);
+		}
+
+		@Override
+		Container copy() {
+			return this;
+		}
+
+		@Override
+		Container or(final Container container) {
+			if (container instanceof BitmapContainer) {
+				return container.copy().or(this);
+			}
+			final RunContainer other = (RunContainer) container;
+			final RunBuilder result = new RunBuilder(count() + other.count());
+			int i = 0;
+			int j = 0;
+			while (i < count() || j < other.count()) {
+				if (j == other.count() || i < count() && start(i) <= other.start(j)) {
+					result.append(start(i), end(i));
+					i++;
+				} else {
+					result.append(other.start(j), other.end(j));
+					j++;
+				}
+			}
+			return result.build();
+		}
+
+		@Override
+		long word(final int wordIndex) {
+			final int first = wordIndex << 6;
+			final int last = first + 63;
+			long word = 0L;
+			for (int r = search(first); r < count() && start(r) <= last; r++) {
+				final int start = Math.max(start(r), first);
+				final int end = Math.min(end(r), last);
+				word |= -1L << start & -1L >>> 63 - (end & 63);
+			}
+			return word;
+		}
+
+		@Override
+		long[] toWords() {
+			final long[] words = new long[WORDS];
+			for (int r = 0; r < count(); r++) {
+				setRange(words, start(r), end(r));
+			}
+			return words;
+		}
+	}
+
+	/**
+	 * Collects runs in ascending order of their start, and merges runs that
+	 * overlap or are adjacent.
+	 */
+	private static final class RunBuilder {
+
+		private int[] runs;
+
+		private int length;
+
+		RunBuilder(final int capacity) {
+			runs = new int[Math.max(capacity, 1) * 2];
+		}
+
+		void append(final int start, final int end) {
+			if (length > 0 && start <= runs[length - 1] + 1) {
+				runs[length - 1] = Math.max(runs[length - 1], end);
+				return;
+			}
+			if (length == runs.length) {
+				runs = Arrays.copyOf(runs, length * 2);
+			}
+			runs[length++] = start;
+			runs[length++] = end;
+		}
+
+		Container build() {
+			if (length == 0) {
+				return null;
+			}
+			if (length / 2 > MAX_RUNS) {
+				final long[] words = new long[WORDS];
+				for (int i = 0; i < length; i += 2) {
+					setRange(words, runs[i], runs[i + 1]);
+				}
+				return new BitmapContainer(words);
+			}
+			final char[] chars = new char[length];
+			for (int i = 0; i < length; i++) {
+				chars[i] = (char) runs[i];
+			}
+			return new RunContainer(chars);
+		}
+	}
+
+	/**
+	 * A plain bitmap, for blocks with too many runs.
+	 */
+	private static final class BitmapContainer extends Container {
+
+		private final long[] words;
+
+		/**
+		 * number of runs in the bitmap
+		 */
+		private int runs;
+
+		BitmapContainer(final long[] words) {
+			this.words = words;
+			runs = countRuns();
+		}
+
+		private BitmapContainer(final long[] words, final int runs) {
+			this.words = words;
+			this.runs = runs;
+		}
+
+		@Override
+		boolean contains(final int low) {
+			return (words[low >>> 6] & 1L << low) != 0;
+		}
+
+		@Override
+		int next(final int from) {
+			return nextSet(words, from);
+		}
+
+		@Override
+		Container add(final int low) {
+			if (!contains(low)) {
+				words[low >>> 6] |= 1L << low;
+				// a single bit can start a run, extend one or join two
+				runs += 1 - neighbours(low);
+			}
+			return runs > MAX_RUNS ? this : optimize();
+		}
+
+		/**
+		 * @return the number of neighbours of {@code low} that are set
+		 */
+		private int neighbours(final int low) {
+			int neighbours = 0;
+			if (low > 0 && contains(low - 1)) {
+				neighbours++;
+			}
+			if (low < BLOCK - 1 && contains(low + 1)) {
+				neighbours++;
+			}
+			return neighbours;
+		}
+
+		@Override
+		Container copy() {
+			return new BitmapContainer(words.clone(), runs);
+		}
+
+		@Override
+		Container or(final Container container) {
+			if (container instanceof BitmapContainer) {
+				final long[] other = ((BitmapContainer) container).words;
+				for (int i = 0; i < WORDS; i++) {
+					words[i] |= other[i];
+				}
+			} else {
+				final RunContainer other = (RunContainer) container;
+				for (int r = 0; r < other.count(); r++) {
+					setRange(words, other.start(r), other.end(r));
+				}
+			}
+			return optimize();
+		}
+
+		@Override
+		long word(final int wordIndex) {
+			return words[wordIndex];
+		}
+
+		@Override
+		long[] toWords() {
+			return words.clone();
+		}
+
+		/**
+		 * @return the smallest representation of this container
+		 */
+		private Container optimize() {
+			runs = countRuns();
+			if (runs > MAX_RUNS) {
+				return this;
+			}
+			if (runs == 0) {
+				return null;
+			}
+			final RunBuilder builder = new RunBuilder(runs);
+			for (int start = nextSet(words, 0); start >= 0; start = nextSet(words, start)) {
+				final int end = nextClear(words, start);
+				builder.append(start, end - 1);
+				start = end;
+				if (start == BLOCK) {
+					break;
+				}
+			}
+			return builder.build();
+		}
+
+		private int countRuns() {
+			int count = 0;
+			long previous = 0;
+			for (final long word : words) {
+				// count the bits that start a run
+				count += Long.bitCount(word & ~(word << 1 | previous >>> 63));
+				previous = word;
+			}
+			return count;
+		}
+	}
+
+	private static int nextSet(final long[] words, final int from) {
+		if (from >= BLOCK) {
+			return -1;
+		}
+		int w = from >>> 6;
+		long word = words[w] & -1L << from;
+		while (word == 0) {
+			if (++w == WORDS) {
+				return -1;
+			}
+			word = words[w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	private static int nextClear(final long[] words, final int from) {
+		int w = from >>> 6;
+		long word = ~words[w] & -1L << from;
+		while (word == 0) {
+			if (++w == WORDS) {
+				return BLOCK;
+			}
+			word = ~words[w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	private static void setRange(final long[] words, final int start, final int end) {
+		final int first = start >>> 6;
+		final int last = end >>> 6;
+		final long firstMask = -1L << start;
+		final long lastMask = -1L >>> 63 - (end & 63);
+		if (first == last) {
+			words[first] |= firstMask & lastMask;
+		} else {
+			words[first] |= firstMask;
+			for (int w = first + 1; w < last; w++) {
+				words[w] = -1L;
+			}
+			words[last] |= lastMask;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import static junit.framework.Assert.*;
+import static longbow.core.CountingTransformation.*;
+
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import longbow.TransformationContext;
+import longbow.Workflow;
+import longbow.transformations.Setter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class BitSetRunnerTest {
+
+	private Workflow workflow;
+
+	@Before
+	public void setUp() {
+		final DefaultLongbowFactory factory = new DefaultLongbowFactory();
+		factory.setRunnerClass("longbow.core.BitSetRunner");
+		workflow = factory.createWorkflow();
+	}
+
+	@Test
+	public void testDeepChain() {
+		final int depth = 100000;
+		final CountingTransformation[] chain = chain(workflow, depth);
+		assertTrue(workflow.execute());
+		final TransformationContext first = workflow.iterator().next();
+		final TransformationContext last = last();
+		last.sweep();
+		assertEquals(depth, chain[depth - 1].getSum());
+		first.mark();
+		last.sweep();
+		assertEquals(2, chain[0].getExecutions());
+		assertEquals(2, chain[depth - 1].getExecutions());
+		workflow.terminate();
+	}
+
+	@Test
+	public void testSweepOnlyInvalidPart() {
+		final CountingTransformation[] chain = chain(workflow, 5);
+		assertTrue(workflow.execute());
+		final Iterator<TransformationContext> it = workflow.iterator();
+		it.next();
+		it.next();
+		final TransformationContext third = it.next();
+		last().sweep();
+		third.mark();
+		last().sweep();
+		final int[] expected = { 1, 1, 2, 2, 2 };
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], chain[i].getExecutions());
+		}
+		workflow.terminate();
+	}
+
+	/**
+	 * A mark of one side of a diamond must not invalidate the other side, and
+	 * a sweep of one side must not execute the other side.
+	 */
+	@Test
+	public void testDiamond() {
+		final CountingTransformation top = new CountingTransformation(0, true);
+		final CountingTransformation left = new CountingTransformation(1, true);
+		final CountingTransformation right = new CountingTransformation(1, true);
+		final CountingTransformation bottom = new CountingTransformation(2, false);
+		final TransformationContext topContext = workflow.add(top);
+		final TransformationContext leftContext = workflow.add(left);
+		final TransformationContext rightContext = workflow.add(right);
+		final TransformationContext bottomContext = workflow.add(bottom);
+		assertTrue(workflow.connect(topContext, OUT, leftContext, in(0)));
+		assertTrue(workflow.connect(topContext, OUT, rightContext, in(0)));
+		assertTrue(workflow.connect(leftContext, OUT, bottomContext, in(0)));
+		assertTrue(workflow.connect(rightContext, OUT, bottomContext, in(1)));
+		assertTrue(workflow.execute());
+
+		leftContext.sweep();
+		assertEquals(1, top.getExecutions());
+		assertEquals(1, left.getExecutions());
+		assertEquals(0, right.getExecutions());
+		bottomContext.sweep();
+		assertEquals(1, top.getExecutions());
+		assertEquals(1, right.getExecutions());
+		assertEquals(5, bottom.getSum());
+
+		rightContext.mark();
+		bottomContext.sweep();
+		assertEquals(1, top.getExecutions());
+		assertEquals(1, left.getExecutions());
+		assertEquals(2, right.getExecutions());
+		assertEquals(2, bottom.getExecutions());
+
+		topContext.mark();
+		leftContext.sweep();
+		assertEquals(2, top.getExecutions());
+		assertEquals(2, left.getExecutions());
+		assertEquals(2, right.getExecutions());
+		bottomContext.sweep();
+		assertEquals(3, right.getExecutions());
+		assertEquals(3, bottom.getExecutions());
+		workflow.terminate();
+	}
+
+	/**
+	 * A mark that arrives while a precursor is executing invalidates the
+	 * followers that the sweep has yet to execute.
+	 */
+	@Test(timeout = 10000)
+	public void testMarkDuringExecution() throws Exception {
+		BlockingTransformation.assertKeepsMarkDuringExecution(workflow);
+	}
+
+	@Test
+	public void testFailedPrecursorRecovers() {
+		FailingTransformation.assertRecoversFromFailedPrecursor(workflow);
+	}
+
+	@Test
+	public void testFailedMarkedContextRecovers() {
+		FailingTransformation.assertRecoversFromFailedMarkedContext(workflow, 2);
+	}
+
+	@Test
+	public void testRuntimeExceptionRecovers() {
+		FailingTransformation.assertRecoversFromRuntimeException(workflow);
+	}
+
+	/**
+	 * Threads that inject into and sweep disjoint chains don't interfere, and
+	 * threads that sweep the same chain execute each context only once. A
+	 * mark that overtakes a sweep is not lost.
+	 */
+	@Test
+	public void testConcurrentMarksAndSweeps() throws Exception {
+		final int chains = 8;
+		final int length = 20;
+		final int rounds = 200;
+		final Setter[] setters = new Setter[chains];
+		final CountingTransformation[][] t = new CountingTransformation[chains][length];
+		final TransformationContext[][] c = new TransformationContext[chains][length];
+		for (int i = 0; i < chains; i++) {
+			setters[i] = new Setter();
+			TransformationContext previous = workflow.add(setters[i]);
+			String outputid = Setter.OUT_DATA;
+			for (int j = 0; j < length; j++) {
+				t[i][j] = new CountingTransformation(1, j < length - 1);
+				c[i][j] = workflow.add(t[i][j]);
+				assertTrue(workflow.connect(previous, outputid, c[i][j], in(0)));
+				previous = c[i][j];
+				outputid = OUT;
+			}
+		}
+		assertTrue(workflow.execute());
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread[] threads = new Thread[2 * chains];
+		for (int i = 0; i < threads.length; i++) {
+			final int chain = i % chains;
+			final boolean writing = i < chains;
+			threads[i] = new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int round = 1; round <= rounds; round++) {
+							if (writing) {
+								setters[chain].inject(Integer.valueOf(round * 100));
+							}
+							c[chain][length - 1].sweep();
+						}
+					} catch (final Throwable e) {
+						failure.set(e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(failure.get());
+		for (int i = 0; i < chains; i++) {
+			// a mark can overtake a sweep halfway the chain, so contexts of
+			// one chain are not always executed equally often. No context is
+			// executed more than once for each mark, though.
+			for (int j = 0; j < length; j++) {
+				final int executions = t[i][j].getExecutions();
+				assertTrue(executions > 0);
+				assertTrue(executions <= rounds + 1);
+			}
+			// a context that is still valid has seen the last injection
+			c[i][length - 1].sweep();
+			assertEquals(rounds * 100 + length, t[i][length - 1].getSum());
+		}
+		workflow.terminate();
+	}
+
+	private TransformationContext last() {
+		TransformationContext last = null;
+		for (final TransformationContext context : workflow) {
+			last = context;
+		}
+		return last;
+	}
+}
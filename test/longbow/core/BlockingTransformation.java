@@ -0,0 +1,106 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import static junit.framework.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import longbow.TransformationContext;
+import longbow.Workflow;
+import longbow.transformations.Setter;
+
+/**
+ * A {@link CountingTransformation} with one input that waits after
+ * processing, until it is released.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class BlockingTransformation extends CountingTransformation {
+
+	private final CountDownLatch processed = new CountDownLatch(1);
+
+	private final CountDownLatch released = new CountDownLatch(1);
+
+	public BlockingTransformation() {
+		super(1, true);
+	}
+
+	/**
+	 * Waits until the transformation has processed data once.
+	 */
+	public void awaitProcessed() throws InterruptedException {
+		processed.await();
+	}
+
+	/**
+	 * Lets the transformation continue, now and from now on.
+	 */
+	public void release() {
+		released.countDown();
+	}
+
+	@Override
+	public void processData() {
+		super.processData();
+		processed.countDown();
+		try {
+			released.await();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Runs a chain of a setter, a blocking transformation and a sink in a
+	 * workflow of the runner under test. A value is injected while a sweep
+	 * executes the blocking transformation. The sink must not be left valid
+	 * with the result of the earlier value.
+	 */
+	public static void assertKeepsMarkDuringExecution(final Workflow workflow) throws InterruptedException {
+		final Setter setter = new Setter();
+		final BlockingTransformation blocking = new BlockingTransformation();
+		final CountingTransformation sink = new CountingTransformation(1, false);
+		final TransformationContext source = workflow.add(setter);
+		final TransformationContext middle = workflow.add(blocking);
+		final TransformationContext last = workflow.add(sink);
+		assertTrue(workflow.connect(source, Setter.OUT_DATA, middle, in(0)));
+		assertTrue(workflow.connect(middle, OUT, last, in(0)));
+		assertTrue(workflow.execute());
+		setter.inject(Integer.valueOf(1));
+
+		final Thread sweeper = new Thread() {
+
+			@Override
+			public void run() {
+				last.sweep();
+			}
+		};
+		sweeper.start();
+		blocking.awaitProcessed();
+		setter.inject(Integer.valueOf(100));
+		blocking.release();
+		sweeper.join();
+
+		last.sweep();
+		assertEquals(102, sink.getSum());
+		workflow.terminate();
+	}
+}
@@ -20,6 +20,10 @@ package longbow.core;
 
 import static junit.framework.Assert.*;
 import static org.easymock.EasyMock.*;
+
+import java.util.Arrays;
+import java.util.List;
+
 import longbow.*;
 
 import org.junit.Before;
@@ -119,6 +123,78 @@ public class CoreWorkflowTest {
 		verify(t1);
 	}
 
+	@Test
+	public void testAddTransformations() {
+		final CountingListener listener = new CountingListener();
+		workflow.addContextListener(listener);
+		final List<TransformationContext> contexts = workflow.addTransformations(Arrays.asList(niceTransformation, niceTransformation));
+		assertEquals(2, contexts.size());
+		assertNotSame(contexts.get(0), contexts.get(1));
+		assertTrue(workflow.containsAll(contexts));
+		assertEquals(2, listener.added);
+		assertEquals(0, listener.changed);
+	}
+
+	/**
+	 * Within a batch, listeners are notified once per context when the batch
+	 * is closed. Transformations are still notified of every edit.
+	 */
+	@Test
+	public void testBatchCoalescesContextEvents() {
+		final CountingListener listener = new CountingListener();
+		final CountingListener contextListener = new CountingListener();
+		workflow.addContextListener(listener);
+		expectAddToWorkflow(t1, t2);
+		expectContextChange(2, t1, t2);
+		replay(t1, t2);
+
+		workflow.beginBatch();
+		assertTrue(workflow.isBatching());
+		final TransformationContext c1 = workflow.add(t1);
+		final TransformationContext c2 = workflow.add(t2);
+		c1.addContextListener(contextListener);
+		c1.addOutput(outputid, metadata);
+		c2.addInput(inputid, metadata);
+		// a nested batch does not notify
+		workflow.beginBatch();
+		assertTrue(workflow.connect(c1, outputid, c2, inputid));
+		workflow.endBatch();
+		assertEquals(0, listener.added + listener.changed + contextListener.added + contextListener.changed);
+		workflow.endBatch();
+		assertFalse(workflow.isBatching());
+		verify(t1, t2);
+
+		assertEquals(2, listener.added);
+		assertEquals(2, listener.changed);
+		assertEquals(1, contextListener.added);
+		assertEquals(1, contextListener.changed);
+
+		// without a batch, every edit is reported again
+		reset(t1);
+		expectContextChange(t1);
+		replay(t1);
+		c1.addOutput("other", metadata);
+		verify(t1);
+		assertEquals(3, listener.changed);
+		assertEquals(2, contextListener.changed);
+	}
+
+	@Test
+	public void testBatchHidesContextsThatWereAddedAndRemoved() {
+		final CountingListener listener = new CountingListener();
+		workflow.addContextListener(listener);
+		final TransformationContext kept = workflow.add(niceTransformation);
+		workflow.beginBatch();
+		final TransformationContext context = workflow.add(niceTransformation);
+		context.addInput(inputid, metadata);
+		workflow.remove(context);
+		workflow.remove(kept);
+		workflow.endBatch();
+		assertEquals(1, listener.added);
+		assertEquals(0, listener.changed);
+		assertEquals(1, listener.removed);
+	}
+
 	/**
 	 * Establishing a connection fails if the input or output is already
 	 * connected
@@ -173,6 +249,23 @@ public class CoreWorkflowTest {
 	 * Test connecting transformations. The context of a transformation changes
 	 * when one of its ports is connected.
 	 */
+	/**
+	 * Every workflow checks the metadata of its connections with its own
+	 * cache.
+	 */
+	@Test
+	public void testCompatibilityCachePerWorkflow() {
+		final AbstractWorkflow first = (AbstractWorkflow) factory.createWorkflow();
+		final AbstractWorkflow second = (AbstractWorkflow) factory.createWorkflow();
+		CountingTransformation.chain(first, 3);
+		CountingTransformation.chain(second, 2);
+		assertNotSame(first.getCompatibilityCache(), second.getCompatibilityCache());
+		assertEquals(1, first.getCompatibilityCache().getMisses());
+		assertEquals(1, first.getCompatibilityCache().getHits());
+		assertEquals(1, second.getCompatibilityCache().getMisses());
+		assertEquals(0, second.getCompatibilityCache().getHits());
+	}
+
 	@Test
 	public void testContextChangeOnConnection() {
 		// add to workflow and add ports
@@ -195,6 +288,24 @@ public class CoreWorkflowTest {
 		verify(t1, t2);
 	}
 
+	@Test
+	public void testConnectAll() {
+		final TransformationContext c1 = workflow.add(niceTransformation);
+		final TransformationContext c2 = workflow.add(niceTransformation);
+		c1.addOutput("out1", metadata);
+		c1.addOutput("out2", metadata);
+		c2.addInput("in1", metadata);
+		c2.addInput("in2", metadata);
+		final CountingListener listener = new CountingListener();
+		workflow.addContextListener(listener);
+		assertTrue(workflow.connectAll(c1, new String[] { "out1", "out2" }, c2, new String[] { "in1", "in2" }));
+		assertTrue(c2.getInput("in1").isConnected());
+		assertTrue(c2.getInput("in2").isConnected());
+		assertEquals(2, listener.changed);
+		// already connected
+		assertFalse(workflow.connectAll(c1, new String[] { "out1" }, c2, new String[] { "in1" }));
+	}
+
 	@Test
 	public void testCreateCycleOneTransformation() {
 		expectAddToWorkflow(t1);
@@ -295,6 +406,11 @@ public class CoreWorkflowTest {
 		verify(t1);
 	}
 
+	@Test(expected = IllegalStateException.class)
+	public void testEndBatchWithoutBatch() {
+		workflow.endBatch();
+	}
+
 	@Test
 	public void testEmptyWorkflowNotExecutable() {
 		assertFalse("Empty workflow executable", workflow.isExecutable());
@@ -452,6 +568,30 @@ public class CoreWorkflowTest {
 		expectContextChange(1, transformations);
 	}
 
+	/**
+	 * Counts the events it receives.
+	 */
+	private static class CountingListener implements ContextListener {
+
+		int added;
+
+		int changed;
+
+		int removed;
+
+		public void addToContext(final ContextEvent event) {
+			added++;
+		}
+
+		public void contextChange(final ContextEvent event) {
+			changed++;
+		}
+
+		public void contextRemoved(final ContextEvent event) {
+			removed++;
+		}
+	}
+
 	static void expectAddToWorkflow(final Transformation... transformations) {
 		for (final Transformation transformation : transformations) {
 			transformation.addToContext(isA(ContextEvent.class));
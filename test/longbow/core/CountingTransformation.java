@@ -0,0 +1,174 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import longbow.ContextEvent;
+import longbow.DataWrapper;
+import longbow.Metadata;
+import longbow.Transformation;
+import longbow.TransformationContext;
+import longbow.Workflow;
+import longbow.metadata.MedalMetadata;
+
+/**
+ * A {@link Transformation} for runner tests. It adds up its inputs, adds one
+ * and counts how many times it has been executed.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class CountingTransformation implements Transformation {
+
+	public static final String OUT = "out";
+
+	private static final Metadata metadata = MedalMetadata.acceptAll();
+
+	private final int inputs;
+
+	private final boolean output;
+
+	private final AtomicInteger executions;
+
+	private DataWrapper[] inputWrappers;
+
+	private DataWrapper outputWrapper;
+
+	private int sum;
+
+	/**
+	 * @param inputs
+	 *            the number of inputs
+	 * @param output
+	 *            whether the transformation has an output
+	 */
+	public CountingTransformation(final int inputs, final boolean output) {
+		this.inputs = inputs;
+		this.output = output;
+		executions = new AtomicInteger();
+	}
+
+	public void addToContext(final ContextEvent event) {
+		final TransformationContext context = event.getSource();
+		for (int i = 0; i < inputs; i++) {
+			context.addInput(in(i), metadata);
+		}
+		if (output) {
+			context.addOutput(OUT, metadata);
+		}
+	}
+
+	public void contextChange(final ContextEvent event) {
+	}
+
+	public void contextRemoved(final ContextEvent event) {
+	}
+
+	public void exportData() {
+		if (outputWrapper != null) {
+			outputWrapper.setData(sum);
+		}
+	}
+
+	public int getExecutions() {
+		return executions.get();
+	}
+
+	/**
+	 * @return the result of the last execution
+	 */
+	public int getSum() {
+		return sum;
+	}
+
+	public void importData() {
+		sum = 1;
+		for (final DataWrapper wrapper : inputWrappers) {
+			// optional inputs may be unconnected
+			final Integer value = wrapper == null ? null : (Integer) wrapper.getData();
+			sum += value == null ? 0 : value;
+		}
+	}
+
+	public boolean isExecutable() {
+		return true;
+	}
+
+	public void processData() {
+		executions.incrementAndGet();
+	}
+
+	public void startExecution(final TransformationContext context) {
+		inputWrappers = new DataWrapper[inputs];
+		for (int i = 0; i < inputs; i++) {
+			inputWrappers[i] = context.getInputWrapper(context.getInputSlot(in(i)));
+		}
+		if (output) {
+			outputWrapper = context.getOutputWrapper(context.getOutputSlot(OUT));
+		}
+	}
+
+	public void stopExecution() {
+		inputWrappers = null;
+		outputWrapper = null;
+	}
+
+	public static String in(final int i) {
+		return "in" + i;
+	}
+
+	/**
+	 * Builds a chain of {@code length} contexts. Only the last one has no
+	 * output.
+	 * 
+	 * @return the transformations in the chain, in order
+	 */
+	public static CountingTransformation[] chain(final Workflow workflow, final int length) {
+		final CountingTransformation[] t = new CountingTransformation[length];
+		TransformationContext previous = null;
+		for (int i = 0; i < length; i++) {
+			t[i] = new CountingTransformation(i == 0 ? 0 : 1, i < length - 1);
+			final TransformationContext context = workflow.add(t[i]);
+			if (previous != null && !workflow.connect(previous, OUT, context, in(0))) {
+				throw new IllegalStateException("Can't connect chain");
+			}
+			previous = context;
+		}
+		return t;
+	}
+
+	/**
+	 * Adds the transformations to the workflow and connects them into a chain.
+	 * All but the last one must have an output, all but the first one an
+	 * input.
+	 * 
+	 * @return the contexts of the transformations, in order
+	 */
+	public static TransformationContext[] link(final Workflow workflow, final CountingTransformation... transformations) {
+		final TransformationContext[] contexts = new TransformationContext[transformations.length];
+		for (int i = 0; i < transformations.length; i++) {
+			contexts[i] = workflow.add(transformations[i]);
+			if (i > 0 && !workflow.connect(contexts[i - 1], OUT, contexts[i], in(0))) {
+				throw new IllegalStateException("Can't connect chain");
+			}
+		}
+		return contexts;
+	}
+}
@@ -22,10 +22,13 @@ import static junit.framework.Assert.*;
 import static org.easymock.EasyMock.*;
 import longbow.DataNode;
 import longbow.DataWrapper;
+import longbow.IntDataWrapper;
 import longbow.LongbowException;
 import longbow.LongbowFactory;
 import longbow.Metadata;
+import longbow.Validation;
 import longbow.core.DefaultDataNode;
+import longbow.metadata.MedalMetadata;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -66,7 +69,8 @@ public class DefaultDataNodeTest {
 	public void testGetDataWrapper() {
 		// assert that a wrapper is created when it doesn't already exist.
 		final DataWrapper wrapper = createMock(DataWrapper.class);
-		expect(factory.createDataWrapper()).andReturn(wrapper);
+		expect(factory.createDataWrapper(metadata)).andReturn(wrapper);
+		expect(factory.getValidation(metadata)).andReturn(Validation.ALWAYS);
 		replay(factory, wrapper);
 		assertSame(wrapper, datanode.getDataWrapper());
 		assertSame(wrapper, datanode.getDataWrapper());
@@ -112,9 +116,82 @@ public class DefaultDataNodeTest {
 		datanode.setOutputConnected(false);
 	}
 
+	@Test
+	public void testSetDataValidatesAlways() {
+		final DefaultDataNode node = createNode(Validation.ALWAYS);
+		assertTrue(node.setData(1));
+		assertFalse(node.setData("one"));
+		assertEquals(1, node.getDataWrapper().getData());
+	}
+
+	@Test
+	public void testSetDataTrusted() {
+		final DefaultDataNode node = createNode(Validation.TRUSTED);
+		assertTrue(node.setData("one"));
+		assertEquals("one", node.getDataWrapper().getData());
+	}
+
+	@Test
+	public void testSetDataSampled() {
+		final DefaultDataNode node = createNode(Validation.sampled(3));
+		int rejected = 0;
+		for (int i = 0; i < 300; i++) {
+			if (!node.setData("wrong " + i)) {
+				rejected++;
+			}
+		}
+		// one in three at random: all or none is practically impossible
+		assertTrue(rejected > 0);
+		assertTrue(rejected < 300);
+		assertTrue(node.setData(4));
+	}
+
+	@Test
+	public void testSetDataOfUntypedProducer() {
+		final DefaultLongbowFactory defaultFactory = new DefaultLongbowFactory();
+		defaultFactory.setValidation(Validation.TRUSTED);
+		final DefaultDataNode node = (DefaultDataNode) defaultFactory.createDataNode(MedalMetadata.notNull());
+		node.getDataWrapper();
+		assertTrue(node.setData(1));
+		// not trusted without a static type
+		assertFalse(node.setData(null));
+	}
+
+	@Test
+	public void testSetTypedDataKeepsIdentity() {
+		final DefaultLongbowFactory defaultFactory = new DefaultLongbowFactory();
+		final DefaultDataNode node = (DefaultDataNode) defaultFactory.createDataNode(MedalMetadata.subClassOf(Integer.class));
+		assertTrue(node.getDataWrapper() instanceof IntDataWrapper);
+		final Integer value = Integer.valueOf(1000);
+		assertTrue(node.setData(value));
+		assertSame(value, node.getDataWrapper().getData());
+		assertSame(node.getDataWrapper().getData(), node.getDataWrapper().getData());
+	}
+
+	@Test(expected = LongbowException.class)
+	public void testSetTrustedDataOfWrongType() {
+		final DefaultLongbowFactory defaultFactory = new DefaultLongbowFactory();
+		defaultFactory.setValidation(Validation.TRUSTED);
+		final DefaultDataNode node = (DefaultDataNode) defaultFactory.createDataNode(MedalMetadata.subClassOf(Integer.class));
+		node.getDataWrapper();
+		node.setData("one");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSampledInterval() {
+		Validation.sampled(0);
+	}
+
 	@Test
 	public void testToString() {
 		assertTrue(datanode.toString().contains("DataNode"));
 	}
 
+	private DefaultDataNode createNode(final Validation validation) {
+		final DefaultLongbowFactory defaultFactory = new DefaultLongbowFactory();
+		defaultFactory.setValidation(validation);
+		final DefaultDataNode node = (DefaultDataNode) defaultFactory.createDataNode(MedalMetadata.subClassOf(Number.class));
+		node.getDataWrapper();
+		return node;
+	}
 }
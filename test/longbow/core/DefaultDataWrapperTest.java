@@ -20,8 +20,12 @@ package longbow.core;
 
 import static junit.framework.Assert.*;
 import static org.easymock.EasyMock.*;
+import longbow.BooleanDataWrapper;
 import longbow.DataWrapper;
-import longbow.core.DefaultDataWrapper;
+import longbow.DoubleDataWrapper;
+import longbow.IntDataWrapper;
+import longbow.LongbowException;
+import longbow.LongDataWrapper;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -61,4 +65,69 @@ public class DefaultDataWrapperTest {
 		datawrapper.setData(null);
 		assertNull(datawrapper.getData());
 	}
+
+	@Test
+	public void testIntDataWrapper() {
+		final IntDataWrapper wrapper = new DefaultIntDataWrapper();
+		assertNull(wrapper.getData());
+		wrapper.setInt(42);
+		assertEquals(42, wrapper.getInt());
+		assertEquals(Integer.valueOf(42), wrapper.getData());
+		wrapper.setData(7);
+		assertEquals(7, wrapper.getInt());
+		wrapper.setData(null);
+		assertNull(wrapper.getData());
+	}
+
+	@Test
+	public void testLongDataWrapper() {
+		final LongDataWrapper wrapper = new DefaultLongDataWrapper();
+		wrapper.setLong(1L << 40);
+		assertEquals(1L << 40, wrapper.getLong());
+		assertEquals(Long.valueOf(1L << 40), wrapper.getData());
+	}
+
+	@Test
+	public void testDoubleDataWrapper() {
+		final DoubleDataWrapper wrapper = new DefaultDoubleDataWrapper();
+		wrapper.setData(2.5);
+		assertEquals(2.5, wrapper.getDouble());
+		wrapper.setDouble(-1.0);
+		assertEquals(Double.valueOf(-1.0), wrapper.getData());
+	}
+
+	@Test
+	public void testBooleanDataWrapper() {
+		final BooleanDataWrapper wrapper = new DefaultBooleanDataWrapper();
+		wrapper.setBoolean(true);
+		assertTrue(wrapper.getBoolean());
+		assertSame(Boolean.TRUE, wrapper.getData());
+		wrapper.setData(Boolean.FALSE);
+		assertFalse(wrapper.getBoolean());
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void testGetNullInt() {
+		new DefaultIntDataWrapper().getInt();
+	}
+
+	@Test
+	public void testIdentity() {
+		final IntDataWrapper wrapper = new DefaultIntDataWrapper();
+		final Integer value = Integer.valueOf(1000);
+		wrapper.setData(value);
+		assertSame(value, wrapper.getData());
+		assertEquals(1000, wrapper.getInt());
+		wrapper.setInt(1000);
+		assertSame(value, wrapper.getData());
+		wrapper.setInt(1001);
+		final Object boxed = wrapper.getData();
+		assertEquals(Integer.valueOf(1001), boxed);
+		assertSame(boxed, wrapper.getData());
+	}
+
+	@Test(expected = LongbowException.class)
+	public void testSetWrongData() {
+		new DefaultDoubleDataWrapper().setData("1.0");
+	}
 }
@@ -21,6 +21,7 @@ package longbow.core;
 import static junit.framework.Assert.*;
 import static org.easymock.EasyMock.*;
 import longbow.*;
+import longbow.metadata.MedalMetadata;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -54,6 +55,32 @@ public class DefaultLongbowFactoryTest {
 		assertNull(wrapper.getData());
 	}
 
+	@Test
+	public void testCreateDataWrapperForMetadata() {
+		assertTrue(factory.createDataWrapper(MedalMetadata.subClassOf(Integer.class)) instanceof IntDataWrapper);
+		assertTrue(factory.createDataWrapper(MedalMetadata.subClassOf(Long.class)) instanceof LongDataWrapper);
+		assertTrue(factory.createDataWrapper(MedalMetadata.subClassOf(Double.class)) instanceof DoubleDataWrapper);
+		assertTrue(factory.createDataWrapper(MedalMetadata.subClassOf(Boolean.class)) instanceof BooleanDataWrapper);
+		assertTrue(factory.createDataWrapper(MedalMetadata.subClassOf(Number.class)) instanceof DefaultDataWrapper);
+		assertTrue(factory.createDataWrapper(MedalMetadata.acceptAll()) instanceof DefaultDataWrapper);
+	}
+
+	@Test
+	public void testCreateConfiguredDataWrapperForMetadata() {
+		((DefaultLongbowFactory) factory).setDataWrapperClass(CustomDataWrapper.class.getName());
+		assertTrue(factory.createDataWrapper(MedalMetadata.subClassOf(Integer.class)) instanceof CustomDataWrapper);
+		assertTrue(factory.createDataWrapper(MedalMetadata.acceptAll()) instanceof CustomDataWrapper);
+	}
+
+	@Test
+	public void testGetValidation() {
+		final DefaultLongbowFactory defaultFactory = (DefaultLongbowFactory) factory;
+		assertSame(Validation.ALWAYS, factory.getValidation(MedalMetadata.subClassOf(Integer.class)));
+		defaultFactory.setValidation(Validation.TRUSTED);
+		assertSame(Validation.TRUSTED, factory.getValidation(MedalMetadata.subClassOf(Integer.class)));
+		assertSame(Validation.ALWAYS, factory.getValidation(MedalMetadata.acceptAll()));
+	}
+
 	@Test
 	public void testCreateInput() {
 		final TransformationContext context = createMock(TransformationContext.class);
@@ -98,6 +125,38 @@ public class DefaultLongbowFactoryTest {
 		//		factory.createTransformationContext(workflow)
 	}
 
+	@Test
+	public void testCreateTransformationContexts() {
+		final Workflow workflow = factory.createWorkflow();
+		final TransformationContext[] contexts = factory.createTransformationContexts(workflow, 3);
+		assertEquals(3, contexts.length);
+		for (final TransformationContext context : contexts) {
+			assertTrue(context instanceof DefaultTransformationContext);
+			assertSame(workflow, context.getWorkflow());
+		}
+		assertNotSame(contexts[0], contexts[1]);
+		assertEquals(0, factory.createTransformationContexts(workflow, 0).length);
+	}
+
+	@Test
+	public void testSetClass() {
+		final DefaultLongbowFactory defaultFactory = (DefaultLongbowFactory) factory;
+		defaultFactory.setRunnerClass(IterativeRunner.class.getName());
+		assertEquals(IterativeRunner.class.getCanonicalName(), defaultFactory.getRunnerClass());
+		assertTrue(factory.createRunner(factory.createWorkflow()) instanceof IterativeRunner);
+	}
+
+	@Test(expected = LongbowException.class)
+	public void testSetClassWithoutConstructor() {
+		// a runner without a constructor that takes a workflow
+		((DefaultLongbowFactory) factory).setRunnerClass(AbstractRunner.class.getName());
+	}
+
+	@Test(expected = LongbowException.class)
+	public void testSetClassOfWrongType() {
+		((DefaultLongbowFactory) factory).setRunnerClass(DefaultWorkflow.class.getName());
+	}
+
 	@Test
 	public void testCreateWorkflow() {
 		final Workflow workflow = factory.createWorkflow();
@@ -114,4 +173,10 @@ public class DefaultLongbowFactoryTest {
 	public void testToString() {
 	}
 
+
+	/**
+	 * A data wrapper class to configure
+	 */
+	public static class CustomDataWrapper extends DefaultDataWrapper {
+	}
 }
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import static junit.framework.Assert.*;
+import static longbow.core.CountingTransformation.*;
+import static org.junit.Assume.*;
+
+import java.util.Iterator;
+
+import longbow.OutputEquivalence;
+import longbow.TransformationContext;
+import longbow.Workflow;
+import longbow.transformations.Setter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class EarlyCutoffRunnerTest {
+
+	private DefaultLongbowFactory factory;
+
+	private DefaultWorkflow workflow;
+
+	private Setter setter;
+
+	private CountingTransformation[] chain;
+
+	private TransformationContext last;
+
+	@Before
+	public void setUp() {
+		factory = new DefaultLongbowFactory();
+		factory.setRunnerClass(EarlyCutoffRunner.class.getName());
+		workflow = new DefaultWorkflow(factory);
+	}
+
+	/**
+	 * A marked context that exports the same value does not invalidate its
+	 * followers.
+	 */
+	@Test
+	public void testCutoffInChain() {
+		chain = chain(workflow, 5);
+		assertTrue(workflow.execute());
+		final Iterator<TransformationContext> it = workflow.iterator();
+		it.next();
+		final TransformationContext second = it.next();
+		last = last();
+		last.sweep();
+		second.mark();
+		last.sweep();
+		final int[] expected = { 1, 2, 1, 1, 1 };
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], chain[i].getExecutions());
+		}
+		assertEquals(5, chain[4].getSum());
+		workflow.terminate();
+	}
+
+	@Test
+	public void testDeepChain() {
+		final int depth = 100000;
+		chain = chain(workflow, depth);
+		assertTrue(workflow.execute());
+		final TransformationContext first = workflow.iterator().next();
+		last = last();
+		last.sweep();
+		assertEquals(depth, chain[depth - 1].getSum());
+		first.mark();
+		last.sweep();
+		assertEquals(2, chain[0].getExecutions());
+		assertEquals(1, chain[1].getExecutions());
+		assertEquals(1, chain[depth - 1].getExecutions());
+		workflow.terminate();
+	}
+
+	/**
+	 * Followers of a context that exports a different value are executed
+	 * again.
+	 */
+	@Test
+	public void testChangedInjection() {
+		buildSetterChain(new Setter());
+		assertTrue(workflow.execute());
+		setter.inject(1);
+		last.sweep();
+		assertEquals(4, chain[2].getSum());
+		setter.inject(2);
+		last.sweep();
+		assertEquals(5, chain[2].getSum());
+		assertEquals(2, chain[0].getExecutions());
+		assertEquals(2, chain[2].getExecutions());
+		workflow.terminate();
+	}
+
+	@Test
+	public void testFailedPrecursorRecovers() {
+		FailingTransformation.assertRecoversFromFailedPrecursor(workflow);
+	}
+
+	@Test
+	public void testFailedMarkedContextRecovers() {
+		FailingTransformation.assertRecoversFromFailedMarkedContext(workflow, 1);
+	}
+
+	@Test
+	public void testRuntimeExceptionRecovers() {
+		FailingTransformation.assertRecoversFromRuntimeException(workflow);
+	}
+
+	/**
+	 * With {@link EarlyCutoffRunner.Cutoff#EQUALS}, an equal value is not a
+	 * change.
+	 */
+	@Test
+	public void testEqualInjection() {
+		buildSetterChain(new Setter());
+		assertTrue(workflow.execute());
+		setter.inject(Integer.valueOf(1000));
+		last.sweep();
+		setter.inject(Integer.valueOf(1000));
+		last.sweep();
+		assertEquals(1, chain[0].getExecutions());
+		assertEquals(1, chain[2].getExecutions());
+		workflow.terminate();
+	}
+
+	/**
+	 * With {@link EarlyCutoffRunner.Cutoff#IDENTITY}, only the same object is
+	 * not a change.
+	 */
+	@Test
+	public void testIdentityCutoff() {
+		factory.setRunnerClass(IdentityCutoffRunner.class.getName());
+		final Integer first = Integer.valueOf(1000);
+		final Integer second = Integer.valueOf(1000);
+		// equal, but not the same object outside the cache of small values
+		assumeTrue(first != second);
+		buildSetterChain(new Setter());
+		assertTrue(workflow.execute());
+		setter.inject(first);
+		last.sweep();
+		setter.inject(second);
+		last.sweep();
+		assertEquals(2, chain[0].getExecutions());
+		assertEquals(2, chain[2].getExecutions());
+		workflow.terminate();
+	}
+
+	/**
+	 * A transformation can decide itself that a different value is
+	 * equivalent.
+	 */
+	@Test
+	public void testOutputEquivalence() {
+		buildSetterChain(new ParitySetter());
+		assertTrue(workflow.execute());
+		setter.inject(1);
+		last.sweep();
+		setter.inject(3);
+		last.sweep();
+		assertEquals(1, chain[0].getExecutions());
+		assertEquals(4, chain[2].getSum());
+		setter.inject(4);
+		last.sweep();
+		assertEquals(2, chain[0].getExecutions());
+		assertEquals(7, chain[2].getSum());
+		workflow.terminate();
+	}
+
+	/**
+	 * Builds a {@link Setter} followed by a chain of three contexts.
+	 */
+	private void buildSetterChain(final Setter s) {
+		setter = s;
+		chain = new CountingTransformation[3];
+		TransformationContext previous = workflow.add(setter);
+		String outputid = Setter.OUT_DATA;
+		for (int i = 0; i < chain.length; i++) {
+			chain[i] = new CountingTransformation(1, i < chain.length - 1);
+			final TransformationContext context = workflow.add(chain[i]);
+			assertTrue(workflow.connect(previous, outputid, context, in(0)));
+			previous = context;
+			outputid = OUT;
+		}
+		last = previous;
+	}
+
+	private TransformationContext last() {
+		TransformationContext result = null;
+		for (final TransformationContext context : workflow) {
+			result = context;
+		}
+		return result;
+	}
+
+	/**
+	 * Compares exported values by identity.
+	 */
+	public static class IdentityCutoffRunner extends EarlyCutoffRunner {
+
+		public IdentityCutoffRunner(final Workflow workflow) {
+			super(workflow, Cutoff.IDENTITY);
+		}
+	}
+
+	/**
+	 * Only odd and even injections are different.
+	 */
+	private static class ParitySetter extends Setter implements OutputEquivalence {
+
+		public boolean isEquivalent(final int slot, final Object previous, final Object current) {
+			return ((Integer) previous).intValue() % 2 == ((Integer) current).intValue() % 2;
+		}
+	}
+}
@@ -19,8 +19,15 @@ package longbow.core;
 
 
 import static junit.framework.Assert.*;
+import static longbow.core.CountingTransformation.*;
 import static org.easymock.EasyMock.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 import longbow.*;
+import longbow.transformations.Setter;
 
 import org.junit.After;
 import org.junit.Before;
@@ -55,6 +62,122 @@ public class ExecuteWorkflowTest {
 
 	}
 
+	/**
+	 * Marks overtake running sweeps and concurrent sweeps of the same context
+	 * wait for each other, without any monitor in the default runner.
+	 */
+	@Test
+	public void testConcurrentMarksAndSweeps() throws Exception {
+		final int chains = 8;
+		final int length = 20;
+		final int rounds = 200;
+		final CountingTransformation[][] t = new CountingTransformation[chains][length];
+		final TransformationContext[][] c = new TransformationContext[chains][length];
+		for (int i = 0; i < chains; i++) {
+			for (int j = 0; j < length; j++) {
+				t[i][j] = new CountingTransformation(j == 0 ? 0 : 1, j < length - 1);
+				c[i][j] = workflow.add(t[i][j]);
+				if (j > 0) {
+					assertTrue(workflow.connect(c[i][j - 1], OUT, c[i][j], in(0)));
+				}
+			}
+		}
+		assertTrue(workflow.execute());
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread[] threads = new Thread[2 * chains];
+		for (int i = 0; i < threads.length; i++) {
+			final int chain = i % chains;
+			final boolean marking = i < chains;
+			threads[i] = new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int round = 0; round < rounds; round++) {
+							if (marking) {
+								c[chain][0].mark();
+							}
+							c[chain][length - 1].sweep();
+						}
+					} catch (final Throwable e) {
+						failure.set(e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		assertNull(failure.get());
+		for (int i = 0; i < chains; i++) {
+			for (int j = 0; j < length; j++) {
+				final int executions = t[i][j].getExecutions();
+				assertTrue(executions > 0);
+				assertTrue(executions <= rounds + 1);
+			}
+			// the last sweep of the marking thread left the chain consistent
+			assertEquals(length, t[i][length - 1].getSum());
+		}
+		workflow.terminate();
+	}
+
+	/**
+	 * A mark stops at contexts that are already invalid, so marking the top
+	 * of stacked diamonds visits every connection once instead of every path.
+	 */
+	@Test
+	public void testMarkStopsAtInvalidContexts() {
+		final DefaultLongbowFactory countingFactory = new DefaultLongbowFactory();
+		countingFactory.setRunnerClass(MarkCountingRunner.class.getName());
+		final Workflow diamonds = countingFactory.createWorkflow();
+		final int levels = 16;
+		final TransformationContext top = diamonds.add(new CountingTransformation(0, true));
+		TransformationContext bottom = top;
+		for (int i = 0; i < levels; i++) {
+			final TransformationContext left = diamonds.add(new CountingTransformation(1, true));
+			final TransformationContext right = diamonds.add(new CountingTransformation(1, true));
+			final TransformationContext join = diamonds.add(new CountingTransformation(2, true));
+			assertTrue(diamonds.connect(bottom, OUT, left, in(0)));
+			assertTrue(diamonds.connect(bottom, OUT, right, in(0)));
+			assertTrue(diamonds.connect(left, OUT, join, in(0)));
+			assertTrue(diamonds.connect(right, OUT, join, in(1)));
+			bottom = join;
+		}
+		final TransformationContext sink = diamonds.add(new CountingTransformation(1, false));
+		assertTrue(diamonds.connect(bottom, OUT, sink, in(0)));
+		assertTrue(diamonds.execute());
+		sink.sweep();
+
+		MarkCountingRunner.marks.set(0);
+		top.mark();
+		assertEquals(2 + 4 * levels, MarkCountingRunner.marks.get());
+
+		MarkCountingRunner.marks.set(0);
+		top.mark();
+		assertEquals(1, MarkCountingRunner.marks.get());
+		diamonds.terminate();
+	}
+
+	@Test(timeout = 10000)
+	public void testFailedPrecursorRecovers() {
+		FailingTransformation.assertRecoversFromFailedPrecursor(workflow);
+	}
+
+	@Test
+	public void testFailedMarkedContextRecovers() {
+		FailingTransformation.assertRecoversFromFailedMarkedContext(workflow, 2);
+	}
+
+	@Test(timeout = 10000)
+	public void testRuntimeExceptionRecovers() {
+		FailingTransformation.assertRecoversFromRuntimeException(workflow);
+	}
+
 	@Test
 	public void testExecuteWorkflowOneTransformation() {
 		final MarkAndSweepListener listener = createMock(MarkAndSweepListener.class);
@@ -91,6 +214,72 @@ public class ExecuteWorkflowTest {
 	/**
 	 * Check what performance loss is, taking EasyMock invocations into account.
 	 */
+	@Test
+	public void testPortSlots() {
+		final CountingTransformation former = new CountingTransformation(0, true);
+		final CountingTransformation latter = new CountingTransformation(3, false);
+		final TransformationContext formerContext = workflow.add(former);
+		final TransformationContext latterContext = workflow.add(latter);
+		assertTrue(workflow.connect(formerContext, CountingTransformation.OUT, latterContext, CountingTransformation.in(1)));
+		for (final String id : new String[] { CountingTransformation.in(0), CountingTransformation.in(2) }) {
+			latterContext.getInput(id).setOptional(true);
+		}
+		assertEquals(-1, latterContext.getInputSlot(CountingTransformation.in(1)));
+		assertTrue(workflow.execute());
+		// slots are dense and sorted by id
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i, latterContext.getInputSlot(CountingTransformation.in(i)));
+		}
+		assertEquals(-1, latterContext.getInputSlot("unknown"));
+		assertEquals(-1, latterContext.getInputSlot(null));
+		assertEquals(0, formerContext.getOutputSlot(CountingTransformation.OUT));
+		assertEquals(-1, latterContext.getOutputSlot(CountingTransformation.OUT));
+		assertNotNull(latterContext.getInputWrapper(1));
+		assertSame(formerContext.getOutputWrapper(0), latterContext.getInputWrapper(1));
+		assertNull(latterContext.getInputWrapper(0));
+		latterContext.sweep();
+		assertEquals(2, latter.getSum());
+		workflow.terminate();
+		assertEquals(-1, latterContext.getInputSlot(CountingTransformation.in(1)));
+	}
+
+	/**
+	 * A context with a result cache doesn't execute its transformation for
+	 * input values it has seen before.
+	 */
+	@Test
+	public void testResultCache() {
+		final Setter setter = new Setter();
+		final CountingTransformation memoized = new CountingTransformation(1, true);
+		final CountingTransformation sink = new CountingTransformation(1, false);
+		final TransformationContext setterContext = workflow.add(setter);
+		final TransformationContext memoizedContext = workflow.add(memoized);
+		final TransformationContext sinkContext = workflow.add(sink);
+		assertTrue(workflow.connect(setterContext, Setter.OUT_DATA, memoizedContext, CountingTransformation.in(0)));
+		assertTrue(workflow.connect(memoizedContext, CountingTransformation.OUT, sinkContext, CountingTransformation.in(0)));
+		final DefaultResultCache cache = new DefaultResultCache(2);
+		memoizedContext.setResultCache(cache);
+		assertSame(cache, memoizedContext.getResultCache());
+		assertTrue(workflow.execute());
+
+		final int[] injections = { 1, 2, 1, 2, 3, 1 };
+		final int[] executions = { 1, 2, 2, 2, 3, 4 };
+		for (int i = 0; i < injections.length; i++) {
+			setter.inject(injections[i]);
+			sinkContext.sweep();
+			assertEquals(injections[i] + 2, sink.getSum());
+			assertEquals(executions[i], memoized.getExecutions());
+		}
+		assertEquals(2, cache.getHits());
+		assertEquals(4, cache.getMisses());
+		// 3 evicted 1, then 1 evicted 2
+		assertEquals(2, cache.getEvictions());
+		workflow.terminate();
+		// back in design mode, memoizing can be switched off
+		memoizedContext.setResultCache(null);
+		assertNull(memoizedContext.getResultCache());
+	}
+
 	@Test
 	public void testNormalExecutionWithoutExceptions() {
 		final int executions = 100;
@@ -179,4 +368,22 @@ public class ExecuteWorkflowTest {
 		}
 		replay(t);
 	}
+
+	/**
+	 * Counts how many times a context is marked, in all workflows.
+	 */
+	public static class MarkCountingRunner extends DefaultRunner {
+
+		static final AtomicInteger marks = new AtomicInteger();
+
+		public MarkCountingRunner(final Workflow workflow) {
+			super(workflow);
+		}
+
+		@Override
+		public void mark(final TransformationContext tcontext) {
+			marks.incrementAndGet();
+			super.mark(tcontext);
+		}
+	}
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import static junit.framework.Assert.*;
+import longbow.LongbowException;
+import longbow.TransformationContext;
+import longbow.Workflow;
+import longbow.transformations.Setter;
+
+/**
+ * A {@link CountingTransformation} with one input that throws an exception
+ * while it is processing, until it is fixed.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class FailingTransformation extends CountingTransformation {
+
+	private volatile RuntimeException failure;
+
+	public FailingTransformation() {
+		super(1, true);
+	}
+
+	/**
+	 * @param failure
+	 *            the exception to throw from now on, or {@code null} to
+	 *            process data normally again
+	 */
+	public void setFailure(final RuntimeException failure) {
+		this.failure = failure;
+	}
+
+	@Override
+	public void processData() {
+		final RuntimeException e = failure;
+		if (e != null) {
+			throw e;
+		}
+		super.processData();
+	}
+
+	/**
+	 * Runs a chain of a source, a failing transformation and a sink in a
+	 * workflow of the runner under test. After a {@link RuntimeException}, a
+	 * later sweep still completes.
+	 */
+	public static void assertRecoversFromRuntimeException(final Workflow workflow) {
+		final CountingTransformation sink = new CountingTransformation(1, false);
+		final FailingTransformation failing = new FailingTransformation();
+		final TransformationContext[] c = link(workflow, new CountingTransformation(0, true), failing, sink);
+		assertTrue(workflow.execute());
+		failing.setFailure(new IllegalStateException("expected"));
+		try {
+			c[2].sweep();
+		} catch (final RuntimeException e) {
+			// some runners pass the exception on to the caller
+		}
+		assertEquals(0, sink.getExecutions());
+		failing.setFailure(null);
+		c[0].mark();
+		c[2].sweep();
+		assertEquals(1, failing.getExecutions());
+		assertEquals(1, sink.getExecutions());
+		assertEquals(3, sink.getSum());
+		workflow.terminate();
+	}
+
+	/**
+	 * Runs a chain of a setter, a failing transformation and a sink in a
+	 * workflow of the runner under test. The sink is not executed while its
+	 * precursor fails, and it is executed with the injected value once the
+	 * precursor recovers.
+	 */
+	public static void assertRecoversFromFailedPrecursor(final Workflow workflow) {
+		final Setter setter = new Setter();
+		final FailingTransformation failing = new FailingTransformation();
+		final CountingTransformation sink = new CountingTransformation(1, false);
+		final TransformationContext source = workflow.add(setter);
+		final TransformationContext middle = workflow.add(failing);
+		final TransformationContext last = workflow.add(sink);
+		assertTrue(workflow.connect(source, Setter.OUT_DATA, middle, in(0)));
+		assertTrue(workflow.connect(middle, OUT, last, in(0)));
+		assertTrue(workflow.execute());
+		setter.inject(Integer.valueOf(1));
+		last.sweep();
+		assertEquals(1, sink.getExecutions());
+		assertEquals(3, sink.getSum());
+		failing.setFailure(new LongbowException("expected"));
+		setter.inject(Integer.valueOf(10));
+		last.sweep();
+		// not executed with stale inputs
+		assertEquals(1, sink.getExecutions());
+		failing.setFailure(null);
+		setter.inject(Integer.valueOf(100));
+		last.sweep();
+		assertEquals(2, failing.getExecutions());
+		assertEquals(2, sink.getExecutions());
+		assertEquals(102, sink.getSum());
+		workflow.terminate();
+	}
+
+	/**
+	 * Runs a chain of a setter, a failing transformation and a sink in a
+	 * workflow of the runner under test, and marks the failing transformation
+	 * itself. The sink is not executed while the marked context fails, and the
+	 * marked context is executed again once it recovers.
+	 * 
+	 * @param sinkExecutions
+	 *            the number of times the sink is expected to be executed in
+	 *            the end, which depends on whether the runner cuts off
+	 *            unchanged outputs
+	 */
+	public static void assertRecoversFromFailedMarkedContext(final Workflow workflow, final int sinkExecutions) {
+		final Setter setter = new Setter();
+		final FailingTransformation failing = new FailingTransformation();
+		final CountingTransformation sink = new CountingTransformation(1, false);
+		final TransformationContext source = workflow.add(setter);
+		final TransformationContext middle = workflow.add(failing);
+		final TransformationContext last = workflow.add(sink);
+		assertTrue(workflow.connect(source, Setter.OUT_DATA, middle, in(0)));
+		assertTrue(workflow.connect(middle, OUT, last, in(0)));
+		assertTrue(workflow.execute());
+		setter.inject(Integer.valueOf(1));
+		last.sweep();
+		assertEquals(1, sink.getExecutions());
+		failing.setFailure(new LongbowException("expected"));
+		middle.mark();
+		last.sweep();
+		// not executed with the outputs of a failed context
+		assertEquals(1, sink.getExecutions());
+		failing.setFailure(null);
+		middle.mark();
+		last.sweep();
+		assertEquals(2, failing.getExecutions());
+		assertEquals(sinkExecutions, sink.getExecutions());
+		assertEquals(3, sink.getSum());
+		workflow.terminate();
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import static junit.framework.Assert.*;
+import static longbow.core.CountingTransformation.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import longbow.TransformationContext;
+import longbow.Workflow;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class ForkJoinRunnerTest {
+
+	private static final int WIDTH = 16;
+
+	private Workflow workflow;
+
+	private CountingTransformation source;
+
+	private CountingTransformation[] middle;
+
+	private CountingTransformation sink;
+
+	private TransformationContext sourceContext;
+
+	private TransformationContext sinkContext;
+
+	@Before
+	public void setUp() {
+		final DefaultLongbowFactory factory = new DefaultLongbowFactory();
+		factory.setRunnerClass(ForkJoinRunner.class.getName());
+		workflow = factory.createWorkflow();
+		source = new CountingTransformation(0, true);
+		sourceContext = workflow.add(source);
+		sink = new CountingTransformation(WIDTH, false);
+		sinkContext = workflow.add(sink);
+		middle = new CountingTransformation[WIDTH];
+		for (int i = 0; i < WIDTH; i++) {
+			middle[i] = new CountingTransformation(1, true);
+			final TransformationContext context = workflow.add(middle[i]);
+			assertTrue(workflow.connect(sourceContext, OUT, context, in(0)));
+			assertTrue(workflow.connect(context, OUT, sinkContext, in(i)));
+		}
+		assertTrue(workflow.execute());
+	}
+
+	@After
+	public void tearDown() {
+		workflow.terminate();
+	}
+
+	@Test(timeout = 10000)
+	public void testFailedPrecursorRecovers() {
+		FailingTransformation.assertRecoversFromFailedPrecursor(createWorkflow());
+	}
+
+	@Test
+	public void testFailedMarkedContextRecovers() {
+		FailingTransformation.assertRecoversFromFailedMarkedContext(createWorkflow(), 2);
+	}
+
+	@Test(timeout = 10000)
+	public void testRuntimeExceptionRecovers() {
+		FailingTransformation.assertRecoversFromRuntimeException(createWorkflow());
+	}
+
+	@Test
+	public void testConcurrentSweepsExecuteOnce() throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (final InterruptedException e) {
+						return;
+					}
+					sinkContext.sweep();
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		assertExecutions(1);
+	}
+
+	@Test
+	public void testMarkAndSweepFanIn() {
+		sinkContext.sweep();
+		assertExecutions(1);
+		assertEquals(1 + 2 * WIDTH, sink.getSum());
+		sinkContext.sweep();
+		assertExecutions(1);
+		sourceContext.mark();
+		sinkContext.sweep();
+		assertExecutions(2);
+	}
+
+	private void assertExecutions(final int executions) {
+		assertEquals(executions, source.getExecutions());
+		for (final CountingTransformation t : middle) {
+			assertEquals(executions, t.getExecutions());
+		}
+		assertEquals(executions, sink.getExecutions());
+	}
+
+	private static Workflow createWorkflow() {
+		final DefaultLongbowFactory factory = new DefaultLongbowFactory();
+		factory.setRunnerClass(ForkJoinRunner.class.getName());
+		return factory.createWorkflow();
+	}
+}
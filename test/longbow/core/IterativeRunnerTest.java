@@ -0,0 +1,143 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import static junit.framework.Assert.*;
+import static longbow.core.CountingTransformation.*;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import longbow.TransformationContext;
+import longbow.Workflow;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class IterativeRunnerTest {
+
+	private Workflow workflow;
+
+	@Before
+	public void setUp() {
+		final DefaultLongbowFactory factory = new DefaultLongbowFactory();
+		factory.setRunnerClass(IterativeRunner.class.getName());
+		workflow = factory.createWorkflow();
+	}
+
+	@Test(timeout = 10000)
+	public void testMarkDuringExecution() throws Exception {
+		BlockingTransformation.assertKeepsMarkDuringExecution(workflow);
+	}
+
+	@Test
+	public void testFailedPrecursorRecovers() {
+		FailingTransformation.assertRecoversFromFailedPrecursor(workflow);
+	}
+
+	@Test
+	public void testFailedMarkedContextRecovers() {
+		FailingTransformation.assertRecoversFromFailedMarkedContext(workflow, 2);
+	}
+
+	@Test
+	public void testRuntimeExceptionRecovers() {
+		FailingTransformation.assertRecoversFromRuntimeException(workflow);
+	}
+
+	@Test
+	public void testDeepChain() {
+		final int depth = 100000;
+		final CountingTransformation[] chain = chain(workflow, depth);
+		assertTrue(workflow.execute());
+		final TransformationContext first = first();
+		final TransformationContext last = last();
+		last.sweep();
+		assertEquals(depth, chain[depth - 1].getSum());
+		first.mark();
+		last.sweep();
+		assertEquals(2, chain[0].getExecutions());
+		assertEquals(2, chain[depth - 1].getExecutions());
+		workflow.terminate();
+	}
+
+	/**
+	 * Marking two contexts with a common follower at once executes the
+	 * follower once.
+	 */
+	@Test
+	public void testMarkAll() {
+		final CountingTransformation top = new CountingTransformation(0, true);
+		final CountingTransformation middle = new CountingTransformation(1, true);
+		final CountingTransformation side = new CountingTransformation(0, true);
+		final CountingTransformation bottom = new CountingTransformation(2, false);
+		final TransformationContext topContext = workflow.add(top);
+		final TransformationContext middleContext = workflow.add(middle);
+		final TransformationContext sideContext = workflow.add(side);
+		final TransformationContext bottomContext = workflow.add(bottom);
+		assertTrue(workflow.connect(topContext, OUT, middleContext, in(0)));
+		assertTrue(workflow.connect(middleContext, OUT, bottomContext, in(0)));
+		assertTrue(workflow.connect(sideContext, OUT, bottomContext, in(1)));
+		assertTrue(workflow.execute());
+		bottomContext.sweep();
+		workflow.markAll(Arrays.asList(topContext, sideContext));
+		bottomContext.sweep();
+		assertEquals(2, top.getExecutions());
+		assertEquals(2, middle.getExecutions());
+		assertEquals(2, side.getExecutions());
+		assertEquals(2, bottom.getExecutions());
+		assertEquals(4, bottom.getSum());
+		workflow.terminate();
+	}
+
+	@Test
+	public void testSweepOnlyInvalidPart() {
+		final CountingTransformation[] chain = chain(workflow, 5);
+		assertTrue(workflow.execute());
+		final Iterator<TransformationContext> it = workflow.iterator();
+		it.next();
+		it.next();
+		final TransformationContext third = it.next();
+		last().sweep();
+		third.mark();
+		last().sweep();
+		final int[] expected = { 1, 1, 2, 2, 2 };
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], chain[i].getExecutions());
+		}
+		workflow.terminate();
+	}
+
+	private TransformationContext first() {
+		return workflow.iterator().next();
+	}
+
+	private TransformationContext last() {
+		TransformationContext last = null;
+		for (final TransformationContext context : workflow) {
+			last = context;
+		}
+		return last;
+	}
+}
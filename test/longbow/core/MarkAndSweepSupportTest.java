@@ -20,6 +20,10 @@ package longbow.core;
 
 import static junit.framework.Assert.*;
 import static org.easymock.EasyMock.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
 import longbow.MarkAndSweepEvent;
 import longbow.MarkAndSweepListener;
 import longbow.TransformationContext;
@@ -48,6 +52,32 @@ public class MarkAndSweepSupportTest {
 		mss.addMarkAndSweepListener(listener);
 	}
 
+	@Test
+	public void testAbandonMarksAgain() {
+		mss.setListenersEnabled(false);
+		final long epoch = mss.tryClaim();
+		assertTrue(epoch != MarkAndSweepSupport.NOT_CLAIMED);
+		mss.abandon(epoch);
+		assertFalse(mss.isValid());
+		assertFalse(mss.isValidating());
+		// the next sweep retries
+		assertEquals(epoch, mss.tryClaim());
+	}
+
+	@Test
+	public void testClaimOnlyOnce() {
+		mss.setListenersEnabled(false);
+		final long epoch = mss.tryClaim();
+		assertTrue(epoch != MarkAndSweepSupport.NOT_CLAIMED);
+		assertTrue(mss.isValidating());
+		assertEquals(MarkAndSweepSupport.NOT_CLAIMED, mss.tryClaim());
+		assertTrue(mss.swept(epoch));
+		assertTrue(mss.isValid());
+		// valid contexts are not claimed
+		assertEquals(MarkAndSweepSupport.NOT_CLAIMED, mss.tryClaim());
+		assertEquals(MarkAndSweepSupport.NOT_CLAIMED, mss.claim());
+	}
+
 	@Test
 	public void testDisableListeners() {
 		mss.setListenersEnabled(false);
@@ -59,6 +89,17 @@ public class MarkAndSweepSupportTest {
 		verify(listener);
 	}
 
+	@Test
+	public void testEventSource() {
+		final TransformationContext context = createNiceMock(TransformationContext.class);
+		final MarkAndSweepSupport support = new MarkAndSweepSupport(context);
+		final CountingListener counter = new CountingListener();
+		support.setListenersEnabled(true);
+		support.addMarkAndSweepListener(counter);
+		support.fireMarking();
+		assertSame(context, counter.last.getSource());
+	}
+
 	@Test
 	public void testInitiallyMarked() {
 		assertFalse(mss.isValid());
@@ -175,6 +216,42 @@ public class MarkAndSweepSupportTest {
 		mss.fireSwept();
 	}
 
+	@Test
+	public void testMarkOvertakesSweep() {
+		mss.setListenersEnabled(false);
+		final long sweep = mss.tryClaim();
+		final long mark = mss.beginMark();
+		assertTrue(mark != sweep);
+		// the running sweep still owns the context
+		assertEquals(MarkAndSweepSupport.NOT_CLAIMED, mss.tryClaim());
+		mss.endMark(mark);
+		assertFalse(mss.swept(sweep));
+		assertFalse(mss.isValid());
+		// the next sweep validates the new epoch
+		assertEquals(mark, mss.tryClaim());
+		assertTrue(mss.swept(mark));
+		assertTrue(mss.isValid());
+	}
+
+	@Test
+	public void testMarkingCanBeClaimed() {
+		mss.setListenersEnabled(false);
+		final long mark = mss.beginMark();
+		assertEquals(mark, mss.tryClaim());
+		// the sweep moved on, ending the mark does nothing
+		mss.endMark(mark);
+		assertTrue(mss.isValidating());
+		assertTrue(mss.swept(mark));
+	}
+
+	@Test
+	public void testRemovedListenerIsNotNotified() {
+		replay(listener);
+		mss.removeMarkAndSweepListener(listener);
+		mss.fireMarking();
+		verify(listener);
+	}
+
 	@Test
 	public void testSetUpAndTearDown() {
 		// fails only if setUp or tearDown fail.
@@ -263,4 +340,117 @@ public class MarkAndSweepSupportTest {
 		mss.fireSwept();
 	}
 
+	@Test
+	public void testWaitForRunningSweep() throws Exception {
+		mss.setListenersEnabled(false);
+		final long epoch = mss.tryClaim();
+		final Thread sweeper = new Thread() {
+
+			@Override
+			public void run() {
+				mss.swept(epoch);
+			}
+		};
+		sweeper.start();
+		// returns once the other thread validated the context
+		assertEquals(MarkAndSweepSupport.NOT_CLAIMED, mss.claim());
+		assertTrue(mss.isValid());
+		sweeper.join();
+	}
+
+	/**
+	 * An interrupted thread that waits for a running sweep parks until the
+	 * sweep ends, instead of spinning, and it is still interrupted afterwards.
+	 */
+	@Test(timeout = 10000)
+	public void testInterruptedWaiterParks() throws Exception {
+		mss.setListenersEnabled(false);
+		final long epoch = mss.tryClaim();
+		final long[] claimed = new long[1];
+		final boolean[] interrupted = new boolean[1];
+		final Thread waiter = new Thread() {
+
+			@Override
+			public void run() {
+				interrupt();
+				claimed[0] = mss.claim();
+				interrupted[0] = isInterrupted();
+			}
+		};
+		waiter.start();
+		while (waiter.getState() != Thread.State.WAITING) {
+			Thread.sleep(1L);
+		}
+		assertTrue(mss.swept(epoch));
+		waiter.join();
+		assertEquals(MarkAndSweepSupport.NOT_CLAIMED, claimed[0]);
+		assertTrue(interrupted[0]);
+	}
+
+	/**
+	 * Once the listeners are registered, mark and sweep cycles allocate
+	 * nothing.
+	 */
+	@Test
+	public void testSteadyStateAllocatesNothing() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return;
+		}
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+			return;
+		}
+		final MarkAndSweepSupport support = new MarkAndSweepSupport(createNiceMock(TransformationContext.class));
+		final CountingListener counter = new CountingListener();
+		support.setListenersEnabled(true);
+		support.addMarkAndSweepListener(counter);
+		final int cycles = 100000;
+		cycle(support, cycles);
+		final long before = threads.getCurrentThreadAllocatedBytes();
+		cycle(support, cycles);
+		final long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+		// less than one object for every thousand cycles
+		assertTrue("allocated " + allocated + " bytes", allocated < 1024L);
+		assertEquals(8 * cycles, counter.events);
+	}
+
+	private static void cycle(final MarkAndSweepSupport support, final int cycles) {
+		for (int i = 0; i < cycles; i++) {
+			support.fireMarking();
+			support.fireMarked();
+			support.fireSweeping();
+			support.fireSwept();
+		}
+	}
+
+	/**
+	 * Counts events without allocating anything.
+	 */
+	private static class CountingListener implements MarkAndSweepListener {
+
+		int events;
+
+		MarkAndSweepEvent last;
+
+		public void marked(final MarkAndSweepEvent event) {
+			events++;
+			last = event;
+		}
+
+		public void marking(final MarkAndSweepEvent event) {
+			events++;
+			last = event;
+		}
+
+		public void sweeping(final MarkAndSweepEvent event) {
+			events++;
+			last = event;
+		}
+
+		public void swept(final MarkAndSweepEvent event) {
+			events++;
+			last = event;
+		}
+	}
 }
@@ -20,8 +20,13 @@ package longbow.core;
 
 import static junit.framework.Assert.*;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Before;
@@ -148,6 +153,179 @@ public class PartialOrderTest {
 		checkOrder(5);
 	}
 
+	/**
+	 * Every connection must lead forward in the order of the iterator, also
+	 * after connections that contradict the order in which elements were
+	 * added.
+	 */
+	@Test
+	public void testOrderAfterRandomConnects() {
+		final int size = 200;
+		final Random random = new Random(2008);
+		for (int i = 0; i < size; i++) {
+			porder.add(i);
+		}
+		final int[][] connections = new int[1000][];
+		int count = 0;
+		for (int i = 0; i < connections.length; i++) {
+			final int former = random.nextInt(size);
+			final int latter = random.nextInt(size);
+			if (former != latter && porder.connect(former, latter)) {
+				connections[count++] = new int[] { former, latter };
+			}
+		}
+		assertTrue(count > 0);
+		checkConnections(connections, count);
+		// removing elements keeps the remaining order intact
+		for (int i = 0; i < size; i += 7) {
+			assertTrue(porder.remove(i));
+		}
+		int remaining = 0;
+		for (int i = 0; i < count; i++) {
+			if (connections[i][0] % 7 != 0 && connections[i][1] % 7 != 0) {
+				connections[remaining++] = connections[i];
+			}
+		}
+		checkConnections(connections, remaining);
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		for (int i = 0; i < 4; i++) {
+			porder.add(i);
+		}
+		assertTrue(porder.connect(3, 0));
+		final Iterator<Integer> it = porder.iterator();
+		assertEquals(3, it.next().intValue());
+		it.remove();
+		assertFalse(porder.contains(3));
+		int visited = 0;
+		while (it.hasNext()) {
+			it.next();
+			visited++;
+		}
+		assertEquals(3, visited);
+		assertEquals(3, porder.size());
+	}
+
+	/**
+	 * A long ladder of diamonds has exponentially many paths from top to
+	 * bottom; searching for a path must not enumerate them.
+	 */
+	@Test(timeout = 10000)
+	public void testFollowsOnDiamonds() {
+		final int diamonds = 500;
+		porder.add(0);
+		for (int i = 0; i < diamonds; i++) {
+			final int top = 3 * i;
+			porder.add(top + 1);
+			porder.add(top + 2);
+			porder.add(top + 3);
+			// connect against the order of addition first
+			assertTrue(porder.connect(top + 2, top + 3));
+			assertTrue(porder.connect(top + 1, top + 3));
+			assertTrue(porder.connect(top, top + 1));
+			assertTrue(porder.connect(top, top + 2));
+		}
+		final int bottom = 3 * diamonds;
+		assertTrue(porder.follows(0, bottom));
+		assertFalse(porder.follows(bottom, 0));
+		assertFalse(porder.follows(1, 2));
+		assertFalse("no cycles", porder.connect(bottom, 0));
+		assertFalse(porder.connect(bottom - 1, 1));
+		assertTrue(porder.follows(1, bottom - 1));
+		// the element in the middle is the only connection between both halves
+		assertTrue(porder.remove(bottom / 2));
+		assertFalse(porder.follows(0, bottom));
+		assertTrue(porder.follows(bottom / 2 + 1, bottom));
+		assertTrue(porder.connect(bottom, 0));
+	}
+
+	/**
+	 * The reachability index agrees with a search of the graph after
+	 * connections, disconnections and removals.
+	 */
+	@Test
+	public void testFollowsAfterRandomChanges() {
+		final int size = 60;
+		final Random random = new Random(2009);
+		for (int i = 0; i < size; i++) {
+			porder.add(i);
+		}
+		for (int round = 0; round < 20; round++) {
+			for (int i = 0; i < 30; i++) {
+				porder.connect(random.nextInt(size), random.nextInt(size));
+			}
+			for (int i = 0; i < 5; i++) {
+				final int former = random.nextInt(size);
+				final List<Integer> followers = porder.getFollowers(former);
+				if (!followers.isEmpty()) {
+					assertTrue(porder.disconnect(former, followers.get(0)));
+				}
+			}
+			final int removed = random.nextInt(size);
+			porder.remove(removed);
+			porder.add(removed);
+			for (final Integer former : porder) {
+				for (final Integer latter : porder) {
+					if (!former.equals(latter)) {
+						assertEquals(reaches(former, latter), porder.follows(former, latter));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRemoveDoubleConnected() {
+		porder.add(1);
+		porder.add(2);
+		porder.add(3);
+		assertTrue(porder.connect(1, 2));
+		assertTrue(porder.connect(1, 2));
+		assertTrue(porder.connect(2, 3));
+		assertTrue(porder.connect(2, 3));
+		assertTrue(porder.remove(2));
+		assertTrue(porder.getFollowers(1).isEmpty());
+		assertTrue(porder.getPrecursors(3).isEmpty());
+		assertFalse(porder.follows(1, 3));
+	}
+
+	/**
+	 * @return whether a path leads from former to latter, by searching the
+	 *         followers
+	 */
+	private boolean reaches(final Integer former, final Integer latter) {
+		final Set<Integer> visited = new HashSet<Integer>();
+		final LinkedList<Integer> work = new LinkedList<Integer>();
+		work.add(former);
+		while (!work.isEmpty()) {
+			for (final Integer follower : porder.getFollowers(work.removeFirst())) {
+				if (follower.equals(latter)) {
+					return true;
+				}
+				if (visited.add(follower)) {
+					work.add(follower);
+				}
+			}
+		}
+		return false;
+	}
+
+	private void checkConnections(final int[][] connections, final int count) {
+		final Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+		int position = 0;
+		for (final Integer element : porder) {
+			positions.put(element, position++);
+		}
+		assertEquals(porder.size(), positions.size());
+		for (int i = 0; i < count; i++) {
+			final int former = positions.get(connections[i][0]);
+			final int latter = positions.get(connections[i][1]);
+			assertTrue("connection must lead forward", former < latter);
+		}
+	}
+
 	/**
 	 * Test adding unordered elements
 	 */
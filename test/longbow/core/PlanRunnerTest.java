@@ -0,0 +1,196 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import static junit.framework.Assert.*;
+import static longbow.core.CountingTransformation.*;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import longbow.TransformationContext;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class PlanRunnerTest {
+
+	private DefaultWorkflow workflow;
+
+	@Before
+	public void setUp() {
+		final DefaultLongbowFactory factory = new DefaultLongbowFactory();
+		factory.setRunnerClass(PlanRunner.class.getName());
+		workflow = new DefaultWorkflow(factory);
+	}
+
+	@Test
+	public void testDeepChain() {
+		final int depth = 100000;
+		final CountingTransformation[] chain = chain(workflow, depth);
+		assertTrue(workflow.execute());
+		final TransformationContext first = workflow.iterator().next();
+		final TransformationContext last = last();
+		last.sweep();
+		assertEquals(depth, chain[depth - 1].getSum());
+		first.mark();
+		last.sweep();
+		assertEquals(2, chain[0].getExecutions());
+		assertEquals(2, chain[depth - 1].getExecutions());
+		workflow.terminate();
+	}
+
+	@Test
+	public void testSweepOnlyInvalidPart() {
+		final CountingTransformation[] chain = chain(workflow, 5);
+		assertTrue(workflow.execute());
+		final Iterator<TransformationContext> it = workflow.iterator();
+		it.next();
+		it.next();
+		final TransformationContext third = it.next();
+		last().sweep();
+		third.mark();
+		last().sweep();
+		final int[] expected = { 1, 1, 2, 2, 2 };
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], chain[i].getExecutions());
+		}
+		workflow.terminate();
+	}
+
+	@Test
+	public void testFailedPrecursorRecovers() {
+		FailingTransformation.assertRecoversFromFailedPrecursor(workflow);
+	}
+
+	@Test
+	public void testFailedMarkedContextRecovers() {
+		FailingTransformation.assertRecoversFromFailedMarkedContext(workflow, 2);
+	}
+
+	@Test
+	public void testRuntimeExceptionRecovers() {
+		FailingTransformation.assertRecoversFromRuntimeException(workflow);
+	}
+
+	@Test
+	public void testDiamond() {
+		final CountingTransformation top = new CountingTransformation(0, true);
+		final CountingTransformation left = new CountingTransformation(1, true);
+		final CountingTransformation right = new CountingTransformation(1, true);
+		final CountingTransformation bottom = new CountingTransformation(2, false);
+		final TransformationContext topContext = workflow.add(top);
+		final TransformationContext leftContext = workflow.add(left);
+		final TransformationContext rightContext = workflow.add(right);
+		final TransformationContext bottomContext = workflow.add(bottom);
+		assertTrue(workflow.connect(topContext, OUT, leftContext, in(0)));
+		assertTrue(workflow.connect(topContext, OUT, rightContext, in(0)));
+		assertTrue(workflow.connect(leftContext, OUT, bottomContext, in(0)));
+		assertTrue(workflow.connect(rightContext, OUT, bottomContext, in(1)));
+		assertTrue(workflow.execute());
+
+		leftContext.sweep();
+		assertEquals(1, top.getExecutions());
+		assertEquals(1, left.getExecutions());
+		assertEquals(0, right.getExecutions());
+		bottomContext.sweep();
+		assertEquals(1, right.getExecutions());
+		assertEquals(5, bottom.getSum());
+
+		rightContext.mark();
+		bottomContext.sweep();
+		assertEquals(1, top.getExecutions());
+		assertEquals(1, left.getExecutions());
+		assertEquals(2, right.getExecutions());
+		assertEquals(2, bottom.getExecutions());
+		workflow.terminate();
+	}
+
+	/**
+	 * Marking two contexts with a common follower at once executes the
+	 * follower once.
+	 */
+	@Test
+	public void testMarkAll() {
+		final CountingTransformation top = new CountingTransformation(0, true);
+		final CountingTransformation middle = new CountingTransformation(1, true);
+		final CountingTransformation side = new CountingTransformation(0, true);
+		final CountingTransformation bottom = new CountingTransformation(2, false);
+		final TransformationContext topContext = workflow.add(top);
+		final TransformationContext middleContext = workflow.add(middle);
+		final TransformationContext sideContext = workflow.add(side);
+		final TransformationContext bottomContext = workflow.add(bottom);
+		assertTrue(workflow.connect(topContext, OUT, middleContext, in(0)));
+		assertTrue(workflow.connect(middleContext, OUT, bottomContext, in(0)));
+		assertTrue(workflow.connect(sideContext, OUT, bottomContext, in(1)));
+		assertTrue(workflow.execute());
+		bottomContext.sweep();
+		workflow.markAll(Arrays.asList(topContext, sideContext));
+		bottomContext.sweep();
+		assertEquals(2, top.getExecutions());
+		assertEquals(2, middle.getExecutions());
+		assertEquals(2, side.getExecutions());
+		assertEquals(2, bottom.getExecutions());
+		assertEquals(4, bottom.getSum());
+		workflow.terminate();
+	}
+
+	/**
+	 * The plan numbers contexts in partial order, is shared with the runner
+	 * and only exists while the workflow runs.
+	 */
+	@Test
+	public void testExecutionPlan() {
+		chain(workflow, 4);
+		assertNull(workflow.getExecutionPlan());
+		assertTrue(workflow.execute());
+		final ExecutionPlan plan = workflow.getExecutionPlan();
+		assertNotNull(plan);
+		assertEquals(4, plan.size());
+		int index = 0;
+		for (final TransformationContext context : workflow) {
+			assertSame(context, plan.getContext(index));
+			assertEquals(index, plan.indexOf(context));
+			index++;
+		}
+		assertEquals(0, plan.getPrecursors(0).length);
+		assertEquals(0, plan.getFollowers(3).length);
+		for (int i = 1; i < 4; i++) {
+			assertEquals(1, plan.getPrecursors(i).length);
+			assertEquals(i - 1, plan.getPrecursors(i)[0]);
+			assertEquals(i, plan.getFollowers(i - 1)[0]);
+		}
+		assertEquals(-1, plan.indexOf(new DefaultTransformationContext(workflow, new DefaultLongbowFactory())));
+		workflow.terminate();
+		assertNull(workflow.getExecutionPlan());
+	}
+
+	private TransformationContext last() {
+		TransformationContext last = null;
+		for (final TransformationContext context : workflow) {
+			last = context;
+		}
+		return last;
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.core;
+
+
+import static junit.framework.Assert.*;
+import static longbow.core.CountingTransformation.*;
+import static org.easymock.EasyMock.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import longbow.TransformationContext;
+import longbow.Workflow;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class VirtualThreadRunnerTest {
+
+	private static final int WIDTH = 500;
+
+	private Workflow workflow;
+
+	private BlockingTransformation[] middle;
+
+	private CountingTransformation sink;
+
+	private TransformationContext sourceContext;
+
+	private TransformationContext sinkContext;
+
+	/**
+	 * A source, many blocking transformations that depend on it, and a sink
+	 * that depends on all of them
+	 */
+	@Before
+	public void setUp() {
+		final DefaultLongbowFactory factory = new DefaultLongbowFactory();
+		factory.setRunnerClass(VirtualThreadRunner.class.getName());
+		workflow = factory.createWorkflow();
+		sourceContext = workflow.add(new CountingTransformation(0, true));
+		sink = new CountingTransformation(WIDTH, false);
+		sinkContext = workflow.add(sink);
+		middle = new BlockingTransformation[WIDTH];
+		for (int i = 0; i < WIDTH; i++) {
+			middle[i] = new BlockingTransformation();
+			final TransformationContext context = workflow.add(middle[i]);
+			assertTrue(workflow.connect(sourceContext, OUT, context, in(0)));
+			assertTrue(workflow.connect(context, OUT, sinkContext, in(i)));
+		}
+		BlockingTransformation.reset(null, 0L);
+		assertTrue(workflow.execute());
+	}
+
+	@After
+	public void tearDown() {
+		workflow.terminate();
+	}
+
+	@Test(timeout = 10000)
+	public void testFailedPrecursorRecovers() {
+		FailingTransformation.assertRecoversFromFailedPrecursor(createWorkflow());
+	}
+
+	@Test
+	public void testFailedMarkedContextRecovers() {
+		FailingTransformation.assertRecoversFromFailedMarkedContext(createWorkflow(), 2);
+	}
+
+	@Test(timeout = 10000)
+	public void testRuntimeExceptionRecovers() {
+		FailingTransformation.assertRecoversFromRuntimeException(createWorkflow());
+	}
+
+	/**
+	 * Every blocking transformation waits until all of them are executing,
+	 * which only works if they are all in flight at the same time.
+	 */
+	@Test
+	public void testBlockingPrecursorsRunConcurrently() {
+		BlockingTransformation.reset(new CountDownLatch(WIDTH), 0L);
+		sourceContext.mark();
+		sinkContext.sweep();
+		assertEquals(0, BlockingTransformation.timeouts.get());
+		assertEquals(WIDTH, BlockingTransformation.maximum.get());
+		assertEquals(2 * WIDTH + 1, sink.getSum());
+		for (final BlockingTransformation transformation : middle) {
+			assertEquals(1, transformation.getExecutions());
+		}
+	}
+
+	@Test
+	public void testConcurrencyLimit() {
+		final VirtualThreadRunner runner = (VirtualThreadRunner) sinkContext.getRunner();
+		assertEquals(0, runner.getConcurrency(BlockingTransformation.class));
+		runner.setConcurrency(BlockingTransformation.class, 3);
+		assertEquals(3, runner.getConcurrency(BlockingTransformation.class));
+		BlockingTransformation.reset(null, 2L);
+		sourceContext.mark();
+		sinkContext.sweep();
+		assertTrue(BlockingTransformation.maximum.get() <= 3);
+		assertEquals(2 * WIDTH + 1, sink.getSum());
+		runner.setConcurrency(BlockingTransformation.class, 0);
+		assertEquals(0, runner.getConcurrency(BlockingTransformation.class));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeConcurrency() {
+		((VirtualThreadRunner) sinkContext.getRunner()).setConcurrency(BlockingTransformation.class, -1);
+	}
+
+	@Test
+	public void testExecutor() {
+		assertNotSame(ForkJoinPool.commonPool(), sinkContext.getRunner().getExecutor());
+	}
+
+	/**
+	 * Contexts of other implementations are executed through the interface.
+	 */
+	@Test
+	public void testExecuteOtherContext() {
+		final TransformationContext other = createMock(TransformationContext.class);
+		other.executeTransformation();
+		replay(other);
+		((VirtualThreadRunner) sinkContext.getRunner()).execute(other);
+		verify(other);
+	}
+
+	private static Workflow createWorkflow() {
+		final DefaultLongbowFactory factory = new DefaultLongbowFactory();
+		factory.setRunnerClass(VirtualThreadRunner.class.getName());
+		return factory.createWorkflow();
+	}
+
+	/**
+	 * Counts how many instances execute at the same time. Waits at the gate,
+	 * if there is one, or sleeps a while.
+	 */
+	private static class BlockingTransformation extends CountingTransformation {
+
+		static final AtomicInteger running = new AtomicInteger();
+
+		static final AtomicInteger maximum = new AtomicInteger();
+
+		static final AtomicInteger timeouts = new AtomicInteger();
+
+		static volatile CountDownLatch gate;
+
+		static volatile long sleep;
+
+		BlockingTransformation() {
+			super(1, true);
+		}
+
+		static void reset(final CountDownLatch gate, final long sleep) {
+			running.set(0);
+			maximum.set(0);
+			timeouts.set(0);
+			BlockingTransformation.gate = gate;
+			BlockingTransformation.sleep = sleep;
+		}
+
+		@Override
+		public void processData() {
+			final int now = running.incrementAndGet();
+			int max;
+			do {
+				max = maximum.get();
+			} while (now > max && !maximum.compareAndSet(max, now));
+			try {
+				final CountDownLatch g = gate;
+				if (g != null) {
+					g.countDown();
+					if (!g.await(10, TimeUnit.SECONDS)) {
+						timeouts.incrementAndGet();
+					}
+				} else if (sleep > 0L) {
+					Thread.sleep(sleep);
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				running.decrementAndGet();
+			}
+			super.processData();
+		}
+	}
+}
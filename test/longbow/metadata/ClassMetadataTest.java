@@ -2,6 +2,10 @@ package longbow.metadata;
 
 
 import static junit.framework.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import longbow.Metadata;
 
 import org.junit.Before;
@@ -30,6 +34,31 @@ public class ClassMetadataTest {
 		otherMedal = MedalMetadata.parse("class is java.lang.String");
 	}
 
+	/**
+	 * More classes than fit in the inline cache, checked more than once.
+	 */
+	@Test
+	public void testAcceptsData() {
+		final Object[] accepted = { 1, 2L, 3.0, 4.0f, (short) 5, (byte) 6, new BigDecimal(7), new AtomicInteger(8) };
+		final Object[] rejected = { "1", new Object(), 'c', Boolean.TRUE, new int[0] };
+		for (int round = 0; round < 3; round++) {
+			for (final Object data : accepted) {
+				assertTrue(data.getClass().getName(), wide.acceptsData(data));
+			}
+			for (final Object data : rejected) {
+				assertFalse(data.getClass().getName(), wide.acceptsData(data));
+			}
+			assertTrue(wide.acceptsData(null));
+		}
+		final ClassMetadata comparable = new ClassMetadata(Comparable.class);
+		for (int round = 0; round < 3; round++) {
+			assertTrue(comparable.acceptsData("string"));
+			assertTrue(comparable.acceptsData(1));
+			assertFalse(comparable.acceptsData(new Object()));
+			assertFalse(comparable.acceptsData(new int[0]));
+		}
+	}
+
 	@Test
 	public void testAcceptClassMedal() {
 		assertTrue(wide.acceptsMetadata(narrowMedal));
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.metadata;
+
+
+import static junit.framework.Assert.*;
+import longbow.Metadata;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class CompatibilityCacheTest {
+
+	private CompatibilityCache cache;
+
+	private int checks;
+
+	@Before
+	public void setUp() {
+		cache = new CompatibilityCache(2);
+		checks = 0;
+	}
+
+	@Test
+	public void testHitsAndMisses() {
+		final Metadata input = counting(true);
+		final Metadata output = counting(true);
+		assertTrue(cache.accepts(input, output));
+		assertTrue(cache.accepts(input, output));
+		assertTrue(cache.accepts(input, output));
+		assertEquals(1, checks);
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testPairsAreOrdered() {
+		final Metadata former = counting(false);
+		final Metadata latter = counting(false);
+		assertFalse(cache.accepts(former, latter));
+		assertFalse(cache.accepts(latter, former));
+		assertEquals(2, checks);
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		final Metadata a = counting(true);
+		final Metadata b = counting(true);
+		final Metadata c = counting(true);
+		cache.accepts(a, a);
+		cache.accepts(b, b);
+		cache.accepts(a, a);
+		cache.accepts(c, c);
+		assertEquals(2, cache.size());
+		assertEquals(3, checks);
+		cache.accepts(a, a);
+		assertEquals(3, checks);
+		cache.accepts(b, b);
+		assertEquals(4, checks);
+	}
+
+	@Test
+	public void testClear() {
+		final Metadata a = counting(true);
+		cache.accepts(a, a);
+		cache.accepts(a, a);
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHits());
+		assertEquals(0, cache.getMisses());
+		cache.accepts(a, a);
+		assertEquals(2, checks);
+	}
+
+	@Test
+	public void testMedalMetadata() {
+		final Metadata former = MedalMetadata.parse("type is java.lang.Integer or not null");
+		final Metadata latter = MedalMetadata.parse("type is java.lang.Integer and not null");
+		assertFalse(cache.accepts(latter, former));
+		assertTrue(cache.accepts(former, latter));
+		assertFalse(cache.accepts(latter, former));
+		assertTrue(cache.accepts(former, latter));
+		assertEquals(2, cache.getHits());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCapacity() {
+		new CompatibilityCache(0);
+	}
+
+	private Metadata counting(final boolean accepts) {
+		return new Metadata() {
+
+			public boolean acceptsData(final Object data) {
+				return accepts;
+			}
+
+			public boolean acceptsMetadata(final Metadata other) {
+				checks++;
+				return accepts;
+			}
+		};
+	}
+}
@@ -20,6 +20,10 @@ package longbow.metadata;
 
 import static junit.framework.Assert.*;
 import static longbow.metadata.MedalMetadata.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
 import longbow.LongbowException;
 import longbow.Metadata;
 import longbow.TransformationContext;
@@ -112,6 +116,44 @@ public class MedalMetadataTest {
 		assertTrue(b.acceptsData(true));
 	}
 
+	/**
+	 * Compiled and parsed Medal must agree on every data value and metadata.
+	 */
+	@Test
+	public void testCompiledMedal() {
+		final String[] scripts = { "type is java.lang.Integer or not null", "type is java.lang.Integer and not null", "not type is java.lang.Number", "type is java.lang.Number nand type is java.lang.Integer",
+				"not null nor type is java.lang.String", "type is java.lang.String xor (not null and not type is java.lang.Integer)", "allow all", "allow none" };
+		final Object[] data = { null, 1, 1.5, "hello", new Object() };
+		final Metadata[] others = { acceptAll(), acceptNone(), notNull(), subClassOf(Number.class), parse(scripts[0]), compile(scripts[1]) };
+		for (final String script : scripts) {
+			final MedalMetadata parsed = parse(script);
+			final MedalMetadata compiled = compile(script);
+			for (final Object d : data) {
+				assertEquals(script + " accepts " + d, parsed.acceptsData(d), compiled.acceptsData(d));
+			}
+			for (final Metadata other : others) {
+				assertEquals(script + " accepts " + other, parsed.acceptsMetadata(other), compiled.acceptsMetadata(other));
+				assertEquals(script + " is accepted by " + other, parsed.isAcceptedBy(other), compiled.isAcceptedBy(other));
+			}
+			assertFalse(compiled.acceptsMetadata(null));
+		}
+	}
+
+	/**
+	 * Threads that share one metadata object must never see each other's
+	 * data.
+	 */
+	@Test
+	public void testConcurrentAcceptsData() throws Exception {
+		assertConcurrentAcceptsData(parse("type is java.lang.Integer and not null"));
+		assertConcurrentAcceptsData(compile("type is java.lang.Integer and not null"));
+	}
+
+	@Test(expected = LongbowException.class)
+	public void testCompileEmptyMedalSource() {
+		compile("  \t  \n\n\r");
+	}
+
 	@Test(expected = LongbowException.class)
 	public void testEmptyMedalSource() {
 		parse("  \t  \n\n\r");
@@ -320,6 +362,43 @@ public class MedalMetadataTest {
 
 	private void assertBooleanOperation(final String medalScript, final boolean expected) {
 		assertBooleanOperation(parse(medalScript), expected);
+		assertBooleanOperation(compile(medalScript), expected);
+	}
+
+	private void assertConcurrentAcceptsData(final Metadata metadata) throws Exception {
+		final int threads = 8;
+		final int rounds = 2000;
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			final boolean integers = i % 2 == 0;
+			workers[i] = new Thread() {
+
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int r = 0; r < rounds; r++) {
+							final Object data = integers ? (Object) Integer.valueOf(r) : String.valueOf(r);
+							if (metadata.acceptsData(data) != integers) {
+								throw new AssertionError("Wrong result for " + data);
+							}
+						}
+					} catch (final Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			};
+			workers[i].start();
+		}
+		start.countDown();
+		for (final Thread worker : workers) {
+			worker.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
 	}
 
 	private void assertToString(final Metadata metadata, final String expected) throws AssertionError {
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.transformations;
+
+
+import static junit.framework.Assert.*;
+import static longbow.core.CountingTransformation.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import longbow.TransformationContext;
+import longbow.core.BlockingTransformation;
+import longbow.core.CountingTransformation;
+import longbow.core.DefaultWorkflow;
+import longbow.metadata.MedalMetadata;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class ExtractionTest {
+
+	private DefaultWorkflow workflow;
+
+	private Setter first;
+
+	private Setter second;
+
+	private Getter firstGetter;
+
+	private Getter secondGetter;
+
+	/**
+	 * Two independent branches from a setter through a transformation that
+	 * adds one to a getter
+	 */
+	@Before
+	public void setUp() {
+		workflow = new DefaultWorkflow();
+		first = new Setter(MedalMetadata.subClassOf(Integer.class));
+		second = new Setter(MedalMetadata.subClassOf(Integer.class));
+		firstGetter = new Getter();
+		secondGetter = new Getter();
+		branch(first, firstGetter);
+		branch(second, secondGetter);
+		first.inject(0);
+		second.inject(0);
+	}
+
+	@Test
+	public void testExtract() {
+		assertTrue(workflow.execute());
+		final Extraction extraction = new Extraction();
+		assertEquals(0, extraction.add(firstGetter));
+		assertEquals(1, extraction.add(secondGetter));
+		assertEquals(2, extraction.size());
+		assertTrue(new Injection().put(first, 3).put(second, 5).commit());
+		final Object[] data = extraction.extract();
+		assertEquals(4, data[0]);
+		assertEquals(6, data[1]);
+		assertEquals(workflow.getGeneration(), extraction.getGeneration());
+		workflow.terminate();
+	}
+
+	/**
+	 * Getters that don't run can't change
+	 */
+	@Test
+	public void testExtractInDesignMode() {
+		final Extraction extraction = new Extraction();
+		extraction.add(firstGetter);
+		assertNull(extraction.extract()[0]);
+		assertEquals(-1L, extraction.getGeneration());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExtractFromSeveralWorkflows() {
+		final DefaultWorkflow other = new DefaultWorkflow();
+		final Setter setter = new Setter();
+		final Getter stranger = new Getter();
+		assertTrue(other.connect(other.add(setter), Setter.OUT_DATA, other.add(stranger), Getter.IN_DATA));
+		setter.inject(1);
+		assertTrue(other.execute());
+		assertTrue(workflow.execute());
+		final Extraction extraction = new Extraction();
+		extraction.add(firstGetter);
+		extraction.add(stranger);
+		extraction.extract();
+	}
+
+	/**
+	 * The generation is odd only while data is injected.
+	 */
+	@Test
+	public void testGeneration() {
+		assertTrue(workflow.execute());
+		final long generation = workflow.getGeneration();
+		assertEquals(0x0L, generation & 0x1L);
+		first.inject(1);
+		assertEquals(generation + 2L, workflow.getGeneration());
+		assertTrue(new Injection().put(first, 2).put(second, 2).commit());
+		assertEquals(generation + 4L, workflow.getGeneration());
+		workflow.terminate();
+	}
+
+	/**
+	 * Both setters always get the same value in one injection, so both
+	 * getters must extract the same data, unless the snapshot mixes
+	 * generations.
+	 */
+	@Test
+	public void testSnapshotsAreConsistent() throws InterruptedException {
+		assertTrue(workflow.execute());
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicInteger snapshots = new AtomicInteger();
+		final AtomicInteger wrong = new AtomicInteger();
+		final Thread[] readers = new Thread[2];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Thread() {
+
+				@Override
+				public void run() {
+					final Extraction extraction = new Extraction();
+					extraction.add(firstGetter);
+					extraction.add(secondGetter);
+					while (!done.get()) {
+						final Object[] data = extraction.extract();
+						if (!data[0].equals(data[1])) {
+							wrong.incrementAndGet();
+						}
+						snapshots.incrementAndGet();
+					}
+				}
+			};
+			readers[i].start();
+		}
+		final Injection injection = new Injection();
+		for (int i = 1; i <= 20000; i++) {
+			assertTrue(injection.put(first, i).put(second, i).commit());
+		}
+		done.set(true);
+		for (final Thread reader : readers) {
+			reader.join();
+		}
+		assertEquals(0, wrong.get());
+		assertTrue(snapshots.get() > 0);
+		workflow.terminate();
+	}
+
+	/**
+	 * An extraction first waits for an injection in progress. Data can then
+	 * be injected while it sweeps, and the extraction reads again and returns
+	 * the result of the new data.
+	 */
+	@Test(timeout = 10000)
+	public void testInjectWhileExtracting() throws Exception {
+		final DefaultWorkflow blocked = new DefaultWorkflow();
+		final Setter setter = new Setter();
+		final BlockingTransformation blocking = new BlockingTransformation();
+		final Getter getter = new Getter();
+		final TransformationContext context = blocked.add(blocking);
+		assertTrue(blocked.connect(blocked.add(setter), Setter.OUT_DATA, context, in(0)));
+		assertTrue(blocked.connect(context, OUT, blocked.add(getter), Getter.IN_DATA));
+		setter.inject(1);
+		assertTrue(blocked.execute());
+		final Extraction extraction = new Extraction();
+		extraction.add(getter);
+		final AtomicReference<Object[]> extracted = new AtomicReference<Object[]>();
+		final Thread reader = new Thread() {
+
+			@Override
+			public void run() {
+				extracted.set(extraction.extract());
+			}
+		};
+		final ReentrantReadWriteLock lock = (ReentrantReadWriteLock) blocked.getInjectionLock();
+		lock.writeLock().lock();
+		blocked.beginInjection();
+		reader.start();
+		while (!lock.hasQueuedThread(reader)) {
+			Thread.sleep(1L);
+		}
+		blocked.endInjection();
+		lock.writeLock().unlock();
+		blocking.awaitProcessed();
+		final Thread injector = new Thread() {
+
+			@Override
+			public void run() {
+				setter.inject(100);
+			}
+		};
+		injector.start();
+		injector.join(5000);
+		final boolean injected = !injector.isAlive();
+		blocking.release();
+		assertTrue(injected);
+		reader.join();
+		assertEquals(101, extracted.get()[0]);
+		assertEquals(blocked.getGeneration(), extraction.getGeneration());
+		blocked.terminate();
+	}
+
+	private void branch(final Setter setter, final Getter getter) {
+		final TransformationContext context = workflow.add(new CountingTransformation(1, true));
+		assertTrue(workflow.connect(workflow.add(setter), Setter.OUT_DATA, context, in(0)));
+		assertTrue(workflow.connect(context, OUT, workflow.add(getter), Getter.IN_DATA));
+	}
+}
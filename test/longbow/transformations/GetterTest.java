@@ -0,0 +1,203 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.transformations;
+
+
+import static junit.framework.Assert.*;
+import static longbow.core.CountingTransformation.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+import longbow.TransformationContext;
+import longbow.core.CountingTransformation;
+import longbow.core.DefaultWorkflow;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class GetterTest {
+
+	private DefaultWorkflow workflow;
+
+	private Setter setter;
+
+	private GatedTransformation gated;
+
+	private Getter getter;
+
+	/**
+	 * A setter, a transformation that adds one and can be held up, and a
+	 * getter
+	 */
+	@Before
+	public void setUp() {
+		workflow = new DefaultWorkflow();
+		setter = new Setter();
+		gated = new GatedTransformation();
+		getter = new Getter();
+		final TransformationContext context = workflow.add(gated);
+		assertTrue(workflow.connect(workflow.add(setter), Setter.OUT_DATA, context, in(0)));
+		assertTrue(workflow.connect(context, OUT, workflow.add(getter), Getter.IN_DATA));
+		setter.inject(0);
+	}
+
+	@Test
+	public void testExtractAsync() throws Exception {
+		assertTrue(workflow.execute());
+		setter.inject(2);
+		assertEquals(3, getter.extractAsync().get());
+		workflow.terminate();
+	}
+
+	@Test
+	public void testExtractAsyncInDesignMode() throws Exception {
+		final CompletableFuture<Object> future = getter.extractAsync();
+		assertTrue(future.isDone());
+		assertNull(future.get());
+	}
+
+	/**
+	 * Requests for an invalid context that is already being swept share the
+	 * sweep.
+	 */
+	@Test
+	public void testConcurrentRequestsCollapse() throws Exception {
+		assertTrue(workflow.execute());
+		assertEquals(1, getter.extract());
+		final int executions = gated.getExecutions();
+		setter.inject(4);
+		gated.gate = new CountDownLatch(1);
+		final CompletableFuture<Object> first = getter.extractAsync();
+		final CompletableFuture<Object> second = getter.extractAsync();
+		assertSame(first, second);
+		assertFalse(first.isDone());
+		gated.gate.countDown();
+		assertEquals(5, first.get());
+		assertEquals(executions + 1, gated.getExecutions());
+		// a finished extraction isn't shared
+		assertNotSame(first, getter.extractAsync());
+		workflow.terminate();
+	}
+
+	/**
+	 * An extraction that fails with an error completes its future, so later
+	 * requests don't wait for it.
+	 */
+	@Test(timeout = 10000)
+	public void testExtractAsyncFails() throws Exception {
+		assertTrue(workflow.execute());
+		assertEquals(1, getter.extract());
+		gated.failure = new AssertionError("expected");
+		setter.inject(6);
+		try {
+			getter.extractAsync().get();
+			fail();
+		} catch (final ExecutionException e) {
+			assertSame(gated.failure, e.getCause());
+		}
+		gated.failure = null;
+		assertEquals(7, getter.extractAsync().get());
+		workflow.terminate();
+	}
+
+	/**
+	 * Data can be injected while an extraction sweeps. The extraction then
+	 * sweeps again and returns the result of the new data.
+	 */
+	@Test(timeout = 10000)
+	public void testInjectDuringExtraction() throws Exception {
+		assertTrue(workflow.execute());
+		assertEquals(1, getter.extract());
+		gated.gate = new CountDownLatch(1);
+		setter.inject(4);
+		final CompletableFuture<Object> future = getter.extractAsync();
+		gated.waiting.await();
+		final Thread injector = new Thread() {
+
+			@Override
+			public void run() {
+				setter.inject(8);
+			}
+		};
+		injector.start();
+		injector.join(5000);
+		final boolean injected = !injector.isAlive();
+		gated.gate.countDown();
+		assertTrue(injected);
+		assertEquals(9, future.get());
+		workflow.terminate();
+	}
+
+	@Test
+	public void testFanOut() throws Exception {
+		final Setter otherSetter = new Setter();
+		final Getter other = new Getter();
+		final TransformationContext context = workflow.add(new CountingTransformation(1, true));
+		assertTrue(workflow.connect(workflow.add(otherSetter), Setter.OUT_DATA, context, in(0)));
+		assertTrue(workflow.connect(context, OUT, workflow.add(other), Getter.IN_DATA));
+		otherSetter.inject(10);
+		assertTrue(workflow.execute());
+		final CompletableFuture<Object> first = getter.extractAsync();
+		final CompletableFuture<Object> second = other.extractAsync();
+		CompletableFuture.allOf(first, second).get();
+		assertEquals(1, first.get());
+		assertEquals(11, second.get());
+		workflow.terminate();
+	}
+
+	/**
+	 * Waits at the gate, if there is one, before it adds one.
+	 */
+	private static class GatedTransformation extends CountingTransformation {
+
+		volatile CountDownLatch gate;
+
+		final CountDownLatch waiting = new CountDownLatch(1);
+
+		volatile Error failure;
+
+		GatedTransformation() {
+			super(1, true);
+		}
+
+		@Override
+		public void processData() {
+			final CountDownLatch g = gate;
+			if (g != null) {
+				waiting.countDown();
+				try {
+					g.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			final Error f = failure;
+			if (f != null) {
+				throw f;
+			}
+			super.processData();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.transformations;
+
+
+import static junit.framework.Assert.*;
+import static longbow.core.CountingTransformation.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import longbow.TransformationContext;
+import longbow.core.CountingTransformation;
+import longbow.core.DefaultLongbowFactory;
+import longbow.core.DefaultWorkflow;
+import longbow.core.PlanRunner;
+import longbow.metadata.MedalMetadata;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class InjectionTest {
+
+	private DefaultWorkflow workflow;
+
+	private Setter first;
+
+	private Setter second;
+
+	private CountingTransformation sum;
+
+	private Getter getter;
+
+	/**
+	 * Two setters, a sum of both and a getter of the sum
+	 */
+	@Before
+	public void setUp() {
+		final DefaultLongbowFactory factory = new DefaultLongbowFactory();
+		factory.setRunnerClass(PlanRunner.class.getName());
+		workflow = new DefaultWorkflow(factory);
+		first = new Setter(MedalMetadata.subClassOf(Integer.class));
+		second = new Setter(MedalMetadata.subClassOf(Integer.class));
+		sum = new CountingTransformation(2, true);
+		getter = new Getter();
+		final TransformationContext sumContext = workflow.add(sum);
+		assertTrue(workflow.connect(workflow.add(first), Setter.OUT_DATA, sumContext, in(0)));
+		assertTrue(workflow.connect(workflow.add(second), Setter.OUT_DATA, sumContext, in(1)));
+		assertTrue(workflow.connect(sumContext, OUT, workflow.add(getter), Getter.IN_DATA));
+		first.inject(0);
+		second.inject(0);
+	}
+
+	@Test
+	public void testCommit() {
+		assertTrue(workflow.execute());
+		assertEquals(1, getter.extract());
+		final Injection injection = new Injection();
+		assertTrue(injection.put(first, 1).put(second, 2).commit());
+		assertEquals(0, injection.size());
+		assertEquals(4, getter.extract());
+		assertEquals(2, sum.getExecutions());
+		workflow.terminate();
+	}
+
+	/**
+	 * Nothing is injected if any setter rejects its data.
+	 */
+	@Test
+	public void testCommitRejected() {
+		assertTrue(workflow.execute());
+		final Injection injection = new Injection();
+		assertFalse(injection.put(first, 1).put(second, "two").commit());
+		assertEquals(2, injection.size());
+		assertEquals(1, getter.extract());
+		assertEquals(1, sum.getExecutions());
+		workflow.terminate();
+	}
+
+	/**
+	 * Before the workflow runs, data is only injected.
+	 */
+	@Test
+	public void testCommitInDesignMode() {
+		assertTrue(new Injection().put(first, 3).put(second, 4).commit());
+		assertTrue(workflow.execute());
+		assertEquals(8, getter.extract());
+		workflow.terminate();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCommitToSeveralWorkflows() {
+		final DefaultWorkflow other = new DefaultWorkflow();
+		final Setter stranger = new Setter();
+		other.add(stranger);
+		new Injection().put(first, 1).put(stranger, 2).commit();
+	}
+
+	/**
+	 * The injected values always add up to zero, so the sum is always one,
+	 * unless a getter sees a half applied injection.
+	 */
+	@Test
+	public void testReadersSeeWholeInjections() throws InterruptedException {
+		assertTrue(workflow.execute());
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicInteger wrong = new AtomicInteger();
+		final Thread reader = new Thread() {
+
+			@Override
+			public void run() {
+				while (!done.get()) {
+					if (!Integer.valueOf(1).equals(getter.extract())) {
+						wrong.incrementAndGet();
+					}
+				}
+			}
+		};
+		reader.start();
+		final Injection injection = new Injection();
+		for (int i = 1; i <= 20000; i++) {
+			assertTrue(injection.put(first, i).put(second, -i).commit());
+		}
+		done.set(true);
+		reader.join();
+		assertEquals(0, wrong.get());
+		workflow.terminate();
+	}
+}
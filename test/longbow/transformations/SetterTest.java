@@ -0,0 +1,96 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.transformations;
+
+
+import static junit.framework.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import longbow.Validation;
+import longbow.metadata.MedalMetadata;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class SetterTest {
+
+	private Setter setter;
+
+	@Before
+	public void setUp() {
+		setter = new Setter(MedalMetadata.subClassOf(Integer.class));
+	}
+
+	@Test
+	public void testInject() {
+		assertTrue(setter.inject(1));
+		assertFalse(setter.inject("one"));
+		assertTrue(setter.isExecutable());
+	}
+
+	@Test
+	public void testInjectTrusted() {
+		setter.setValidation(Validation.TRUSTED);
+		assertTrue(setter.inject("one"));
+		// the setter itself still knows that it can't run with this data
+		assertFalse(setter.isExecutable());
+	}
+
+	@Test
+	public void testInjectSampled() {
+		setter.setValidation(Validation.sampled(2));
+		assertFalse(setter.inject("zero"));
+		assertTrue(setter.inject("one"));
+		assertTrue(setter.inject(2));
+	}
+
+	/**
+	 * Concurrent injections are counted once each, so exactly every other
+	 * value is checked.
+	 */
+	@Test
+	public void testInjectSampledConcurrently() throws InterruptedException {
+		setter.setValidation(Validation.sampled(2));
+		final AtomicInteger rejected = new AtomicInteger();
+		final Thread[] injectors = new Thread[4];
+		for (int i = 0; i < injectors.length; i++) {
+			injectors[i] = new Thread() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						if (!setter.inject("wrong")) {
+							rejected.incrementAndGet();
+						}
+					}
+				}
+			};
+			injectors[i].start();
+		}
+		for (final Thread injector : injectors) {
+			injector.join();
+		}
+		assertEquals(20000, rejected.get());
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.util;
+
+
+import static junit.framework.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+@SuppressWarnings("nls")
+public class LruCacheTest {
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		final LruCache<String, Integer> cache = new LruCache<String, Integer>(2);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		// a is used more recently than b
+		assertEquals(Integer.valueOf(1), cache.get("a"));
+		cache.put("c", 3);
+		assertEquals(2, cache.size());
+		assertNull(cache.get("b"));
+		assertEquals(Integer.valueOf(1), cache.get("a"));
+		assertEquals(Integer.valueOf(3), cache.get("c"));
+		assertEquals(1, cache.getEvictions());
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0.75, cache.getHitRate(), 0.0);
+	}
+
+	@Test
+	public void testWeightBudget() {
+		final LruCache<String, String> cache = new LruCache<String, String>(10, new LruCache.Weigher<String, String>() {
+
+			public long weigh(final String key, final String value) {
+				return value.length();
+			}
+		});
+		cache.put("a", "xxxx");
+		cache.put("b", "xxxx");
+		assertEquals(8, cache.getWeight());
+		cache.put("c", "xxxx");
+		assertEquals(8, cache.getWeight());
+		assertNull(cache.get("a"));
+		// replacing an entry replaces its weight
+		cache.put("b", "x");
+		assertEquals(5, cache.getWeight());
+		// too heavy to cache at all
+		cache.put("d", "xxxxxxxxxxx");
+		assertNull(cache.get("d"));
+		assertEquals(2, cache.size());
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+		assertEquals(0, cache.getMisses());
+		assertEquals(0.0, cache.getHitRate(), 0.0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullValue() {
+		new LruCache<String, String>(1).put("a", null);
+	}
+}
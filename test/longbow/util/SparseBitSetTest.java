@@ -0,0 +1,139 @@
+/*
+ * Copyright 2008 Philip van Oosten (Mentoring Systems BVBA)
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ * 
+ */
+
+package longbow.util;
+
+
+import static junit.framework.Assert.*;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Compares {@link SparseBitSet} with {@link BitSet}.
+ * 
+ * @author Philip van Oosten
+ * 
+ */
+public class SparseBitSetTest {
+
+	/**
+	 * covers three blocks
+	 */
+	private static final int RANGE = 3 << 16;
+
+	private Random random;
+
+	@Before
+	public void setUp() {
+		random = new Random(2008);
+	}
+
+	@Test
+	public void testSetGet() {
+		final SparseBitSet sparse = new SparseBitSet();
+		assertEquals(-1, sparse.nextSetBit(0));
+		sparse.set(3);
+		sparse.set(70000);
+		sparse.set(4);
+		assertTrue(sparse.get(3));
+		assertTrue(sparse.get(4));
+		assertFalse(sparse.get(5));
+		assertTrue(sparse.get(70000));
+		assertEquals(3, sparse.nextSetBit(0));
+		assertEquals(70000, sparse.nextSetBit(5));
+		assertEquals(-1, sparse.nextSetBit(70001));
+	}
+
+	@Test
+	public void testRandomOperations() {
+		for (int round = 0; round < 50; round++) {
+			final BitSet a = randomBitSet();
+			final BitSet b = randomBitSet();
+			final SparseBitSet sa = toSparse(a);
+			final SparseBitSet sb = toSparse(b);
+			check(a, sa);
+
+			final BitSet or = (BitSet) a.clone();
+			or.or(b);
+			final SparseBitSet sor = sa.clone();
+			sor.or(sb);
+			check(or, sor);
+
+			// changing a clone leaves the original untouched
+			check(a, sa);
+			check(b, sb);
+		}
+	}
+
+	@Test
+	public void testGetWord() {
+		for (int round = 0; round < 10; round++) {
+			final BitSet bits = randomBitSet();
+			final SparseBitSet sparse = toSparse(bits);
+			final long[] words = new long[RANGE >>> 6];
+			for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+				words[i >>> 6] |= 1L << i;
+			}
+			for (int w = 0; w < words.length; w++) {
+				assertEquals(words[w], sparse.getWord(w));
+			}
+		}
+	}
+
+	private void check(final BitSet expected, final SparseBitSet actual) {
+		int j = actual.nextSetBit(0);
+		for (int i = expected.nextSetBit(0); i >= 0; i = expected.nextSetBit(i + 1)) {
+			assertEquals(i, j);
+			assertTrue(actual.get(i));
+			j = actual.nextSetBit(j + 1);
+		}
+		assertEquals(-1, j);
+	}
+
+	/**
+	 * @return a mix of scattered bits, long runs and dense random blocks
+	 */
+	private BitSet randomBitSet() {
+		final BitSet bits = new BitSet();
+		for (int i = random.nextInt(100); i > 0; i--) {
+			bits.set(random.nextInt(RANGE));
+		}
+		for (int i = random.nextInt(5); i > 0; i--) {
+			final int from = random.nextInt(RANGE);
+			bits.set(from, Math.min(RANGE, from + random.nextInt(RANGE / 4)));
+		}
+		if (random.nextBoolean()) {
+			final int block = random.nextInt(3) << 16;
+			for (int i = 0; i < 20000; i++) {
+				bits.flip(block + random.nextInt(1 << 16));
+			}
+		}
+		return bits;
+	}
+
+	private SparseBitSet toSparse(final BitSet bits) {
+		final SparseBitSet sparse = new SparseBitSet();
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+			sparse.set(i);
+		}
+		return sparse;
+	}
+}